@@ -11,6 +11,7 @@ public class ForwarderConstants {
     public static final ErrorCorrectionLevel DEFAULT_ERROR_CORRECTION_LEVEL = ErrorCorrectionLevel.M;
 
     public static final int MAX_LOG_MESSAGES_OUTPUT = 100;
+    public static final long CHANNEL_MEMBERS_PUBLISH_INTERVAL_MS = 1000;
 
     /**
      * Meshtastic Radio Config
@@ -0,0 +1,69 @@
+package com.paulmandal.atak.forwarder.channel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of the channel members at one point in time, ATAK users first and then trackers. Carries what changed
+ * since the previous snapshot: either the membership / order changed, or only the rows at changedPositions did.
+ */
+public class ChannelMembersSnapshot {
+    private static final int[] NO_CHANGED_POSITIONS = new int[0];
+
+    public static final ChannelMembersSnapshot EMPTY = new ChannelMembersSnapshot(0, Collections.emptyList(), false, NO_CHANGED_POSITIONS);
+
+    public final long version;
+    public final List<UserInfo> members;
+    public final boolean membershipChanged;
+    public final int[] changedPositions;
+
+    private ChannelMembersSnapshot(long version, List<UserInfo> members, boolean membershipChanged, int[] changedPositions) {
+        this.version = version;
+        this.members = members;
+        this.membershipChanged = membershipChanged;
+        this.changedPositions = changedPositions;
+    }
+
+    static ChannelMembersSnapshot next(ChannelMembersSnapshot previous, List<UserInfo> atakUsers, List<TrackerUserInfo> trackers) {
+        List<UserInfo> members = new ArrayList<>(atakUsers.size() + trackers.size());
+        for (UserInfo userInfo : atakUsers) {
+            members.add(userInfo.clone());
+        }
+        for (TrackerUserInfo trackerUserInfo : trackers) {
+            members.add(trackerUserInfo.clone());
+        }
+
+        List<UserInfo> previousMembers = previous.members;
+        boolean membershipChanged = members.size() != previousMembers.size();
+        int[] changedPositions = NO_CHANGED_POSITIONS;
+        if (!membershipChanged) {
+            int[] positions = new int[members.size()];
+            int changedCount = 0;
+            for (int i = 0; i < members.size(); i++) {
+                UserInfo member = members.get(i);
+                UserInfo previousMember = previousMembers.get(i);
+                if (!member.equals(previousMember) || member.getClass() != previousMember.getClass()) {
+                    membershipChanged = true;
+                    break;
+                }
+                if (!member.contentEquals(previousMember)) {
+                    positions[changedCount++] = i;
+                }
+            }
+            if (!membershipChanged && changedCount > 0) {
+                changedPositions = new int[changedCount];
+                System.arraycopy(positions, 0, changedPositions, 0, changedCount);
+            }
+        }
+
+        return new ChannelMembersSnapshot(previous.version + 1,
+                Collections.unmodifiableList(members),
+                membershipChanged,
+                membershipChanged ? NO_CHANGED_POSITIONS : changedPositions);
+    }
+
+    public boolean hasChanges() {
+        return membershipChanged || changedPositions.length > 0;
+    }
+}
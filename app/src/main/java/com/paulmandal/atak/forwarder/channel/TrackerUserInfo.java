@@ -54,4 +54,27 @@ public class TrackerUserInfo extends UserInfo {
             this.lastSeenTime = updatedUserInfo.lastSeenTime;
         }
     }
+
+    @Override
+    public boolean contentEquals(UserInfo other) {
+        if (!super.contentEquals(other)) {
+            return false;
+        }
+
+        TrackerUserInfo otherTracker = (TrackerUserInfo) other;
+        return lat == otherTracker.lat
+                && lon == otherTracker.lon
+                && altitude == otherTracker.altitude
+                && gpsValid == otherTracker.gpsValid
+                && Objects.equals(shortName, otherTracker.shortName)
+                && lastSeenTime == otherTracker.lastSeenTime;
+    }
+
+    @Override
+    @SuppressWarnings("MethodDoesntCallSuperMethod")
+    public TrackerUserInfo clone() {
+        TrackerUserInfo trackerUserInfo = new TrackerUserInfo(callsign, meshId, batteryPercentage, lat, lon, altitude, gpsValid, shortName, lastSeenTime);
+        trackerUserInfo.atakUid = atakUid;
+        return trackerUserInfo;
+    }
 }
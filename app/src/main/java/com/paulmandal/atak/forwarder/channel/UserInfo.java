@@ -39,6 +39,17 @@ public class UserInfo implements Cloneable {
         }
     }
 
+    /**
+     * True if every field matches, unlike equals() which only compares meshId
+     */
+    public boolean contentEquals(UserInfo other) {
+        return getClass() == other.getClass()
+                && meshId.equals(other.meshId)
+                && Objects.equals(callsign, other.callsign)
+                && Objects.equals(atakUid, other.atakUid)
+                && Objects.equals(batteryPercentage, other.batteryPercentage);
+    }
+
     @SuppressWarnings("MethodDoesntCallSuperMethod")
     public UserInfo clone() {
         return new UserInfo(this.callsign, this.meshId, this.atakUid, this.batteryPercentage);
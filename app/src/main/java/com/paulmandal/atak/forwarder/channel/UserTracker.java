@@ -2,6 +2,7 @@ package com.paulmandal.atak.forwarder.channel;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.widget.Toast;
 
 import com.atakmap.coremap.cot.event.CotDetail;
@@ -13,8 +14,10 @@ import com.paulmandal.atak.forwarder.handlers.InboundMessageHandler;
 import com.paulmandal.atak.forwarder.helpers.Logger;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 
@@ -27,7 +30,10 @@ public class UserTracker implements DiscoveryBroadcastEventHandler.DiscoveryBroa
     private static final String KEY_BATTERY = "battery";
 
     public interface ChannelMembersUpdateListener {
-        void onChannelMembersUpdated(List<UserInfo> atakUsers, List<TrackerUserInfo> trackers);
+        /**
+         * Called on the UI thread, at most once per publish interval
+         */
+        void onChannelMembersUpdated(ChannelMembersSnapshot snapshot);
     }
 
     public interface TrackerUpdateListener {
@@ -39,21 +45,36 @@ public class UserTracker implements DiscoveryBroadcastEventHandler.DiscoveryBroa
     private final Context mAtakContext;
     private final Handler mUiThreadHandler;
     private final Logger mLogger;
+    private final long mPublishIntervalMs;
 
     private final List<UserInfo> mAtakUsers = new CopyOnWriteArrayList<>();
     private final List<TrackerUserInfo> mTrackers = new CopyOnWriteArrayList<>();
 
+    // Lookup indexes over the lists above, every add / remove / atakUid change has to go through both
+    private final Map<String, UserInfo> mAtakUsersByMeshId = new ConcurrentHashMap<>();
+    private final Map<String, UserInfo> mAtakUsersByAtakUid = new ConcurrentHashMap<>();
+    private final Map<String, TrackerUserInfo> mTrackersByMeshId = new ConcurrentHashMap<>();
+
     private final Set<ChannelMembersUpdateListener> mChannelMembersUpdateListeners = new CopyOnWriteArraySet<>();
     private final Set<TrackerUpdateListener> mTrackerUpdateListener = new CopyOnWriteArraySet<>();
 
+    // Member changes only mark the snapshot dirty, publishing is debounced onto the UI thread
+    private final Object mPublishLock = new Object();
+    private final Runnable mPublishRunnable = this::publishChannelMembers;
+    private boolean mPublishScheduled;
+    private long mLastPublishTime;
+    private ChannelMembersSnapshot mSnapshot = ChannelMembersSnapshot.EMPTY;
+
     public UserTracker(Context atakContext,
                        Handler uiThreadHandler,
                        Logger logger,
                        DiscoveryBroadcastEventHandler discoveryBroadcastEventHandler,
-                       TrackerEventHandler trackerEventHandler) {
+                       TrackerEventHandler trackerEventHandler,
+                       long publishIntervalMs) {
         mAtakContext = atakContext;
         mUiThreadHandler = uiThreadHandler;
         mLogger = logger;
+        mPublishIntervalMs = publishIntervalMs;
 
         discoveryBroadcastEventHandler.setListener(this);
         trackerEventHandler.addListener(this);
@@ -64,38 +85,34 @@ public class UserTracker implements DiscoveryBroadcastEventHandler.DiscoveryBroa
         mLogger.v(TAG, "onUserDiscoveryBroadcastReceived, callsign: " + callsign + ", meshId: " + meshId + ", atakUid: " + atakUid);
 
         // Check for user
-        boolean foundInAtakUsers = false;
-        for (UserInfo user : mAtakUsers) {
-            if (user.meshId.equals(meshId)) {
-                if (user.atakUid == null || !user.atakUid.equals(atakUid)) {
-                    user.callsign = callsign;
-                    user.atakUid = atakUid;
+        UserInfo user = mAtakUsersByMeshId.get(meshId);
+        boolean foundInAtakUsers = user != null;
+        if (foundInAtakUsers) {
+            if (user.atakUid == null || !user.atakUid.equals(atakUid)) {
+                if (user.atakUid != null) {
+                    mAtakUsersByAtakUid.remove(user.atakUid);
                 }
-                foundInAtakUsers = true;
-                mLogger.v(TAG, "  found: " + callsign + " in ATAK users list with atakUid: " + atakUid);
-                break;
+                user.callsign = callsign;
+                user.atakUid = atakUid;
+                indexAtakUid(user);
             }
+            mLogger.v(TAG, "  found: " + callsign + " in ATAK users list with atakUid: " + atakUid);
         }
 
         // Remove user from Trackers list if present
-        TrackerUserInfo trackerUserInfo = null;
-        for (TrackerUserInfo user : mTrackers) {
-            if (user.meshId.equals(meshId)) {
-                trackerUserInfo = user;
-                mLogger.v(TAG, "  found: " + callsign + " in Tracker user list with meshId: " + meshId);
-                break;
-            }
-        }
-
+        TrackerUserInfo trackerUserInfo = mTrackersByMeshId.remove(meshId);
         if (trackerUserInfo != null) {
-            mLogger.v(TAG, "  removing callsign: " + callsign + " from Tracker users");
+            mLogger.v(TAG, "  found: " + callsign + " in Tracker user list with meshId: " + meshId + ", removing from Tracker users");
             mTrackers.remove(trackerUserInfo);
         }
 
         // Add user to ATAK users list and notify listeners
         if (!foundInAtakUsers) {
             mLogger.v(TAG, "  Adding new user from discovery broadcast: " + callsign + ", atakUid: " + atakUid);
-            mAtakUsers.add(new UserInfo(callsign, meshId, atakUid, null));
+            UserInfo userInfo = new UserInfo(callsign, meshId, atakUid, null);
+            mAtakUsers.add(userInfo);
+            mAtakUsersByMeshId.put(meshId, userInfo);
+            indexAtakUid(userInfo);
 
             notifyChannelMembersUpdateListeners();
         }
@@ -114,24 +131,26 @@ public class UserTracker implements DiscoveryBroadcastEventHandler.DiscoveryBroa
             return;
         }
 
-        boolean alreadyKnowAboutStation = mTrackers.contains(trackerUserInfo);
-        mLogger.v(TAG, "  alreadyKnowAboutStation: " + alreadyKnowAboutStation);
-        if (alreadyKnowAboutStation) {
-            updateTracker(trackerUserInfo);
+        TrackerUserInfo knownTracker = mTrackersByMeshId.get(trackerUserInfo.meshId);
+        mLogger.v(TAG, "  alreadyKnowAboutStation: {}", knownTracker != null);
+        if (knownTracker != null) {
+            updateTracker(knownTracker, trackerUserInfo);
         } else {
+            knownTracker = trackerUserInfo;
             mTrackers.add(trackerUserInfo);
+            mTrackersByMeshId.put(trackerUserInfo.meshId, trackerUserInfo);
         }
 
         // Notify listeners
         if (trackerUserInfo.gpsValid) {
-            notifyTrackerUpdateListeners(trackerUserInfo);
+            notifyTrackerUpdateListeners(knownTracker);
         }
         notifyChannelMembersUpdateListeners();
     }
 
     @Override
     public void onInboundPli(CotEvent cotEvent) {
-        mLogger.v(TAG, "onInboundPli: " + cotEvent);
+        mLogger.v(TAG, "onInboundPli: {}", cotEvent);
 
         CotDetail cotDetail = cotEvent.getDetail();
         if (cotDetail == null) {
@@ -156,23 +175,17 @@ public class UserTracker implements DiscoveryBroadcastEventHandler.DiscoveryBroa
         }
 
         String atakUid = cotEvent.getUID();
-        for (UserInfo userInfo : mAtakUsers) {
-            if (userInfo.atakUid != null && userInfo.atakUid.equals(atakUid)) {
-                mLogger.v(TAG, "  updating UID: " + atakUid + ", batteryLevel: " + batteryLevel);
-                userInfo.batteryPercentage = batteryLevel;
-                notifyChannelMembersUpdateListeners();
-                break;
-            }
+        UserInfo userInfo = atakUid != null ? mAtakUsersByAtakUid.get(atakUid) : null;
+        if (userInfo != null) {
+            mLogger.v(TAG, "  updating UID: {}, batteryLevel: {}", atakUid, batteryLevel);
+            userInfo.batteryPercentage = batteryLevel;
+            notifyChannelMembersUpdateListeners();
         }
     }
 
     public String getMeshIdForUid(String atakUid) {
-        for (UserInfo userInfo : mAtakUsers) {
-            if (userInfo.atakUid != null && userInfo.atakUid.equals(atakUid)) {
-                return userInfo.meshId;
-            }
-        }
-        return USER_NOT_FOUND;
+        UserInfo userInfo = atakUid != null ? mAtakUsersByAtakUid.get(atakUid) : null;
+        return userInfo != null ? userInfo.meshId : USER_NOT_FOUND;
     }
 
     public void addUpdateListener(ChannelMembersUpdateListener listener) {
@@ -194,29 +207,32 @@ public class UserTracker implements DiscoveryBroadcastEventHandler.DiscoveryBroa
     public void clearData() {
         mAtakUsers.clear();
         mTrackers.clear();
+        mAtakUsersByMeshId.clear();
+        mAtakUsersByAtakUid.clear();
+        mTrackersByMeshId.clear();
         notifyChannelMembersUpdateListeners();
     }
 
     private boolean maybeUpdateUserBatteryPercentage(TrackerUserInfo trackerUserInfo) {
-        boolean userExistsInAtakUserList = false;
+        UserInfo user = mAtakUsersByMeshId.get(trackerUserInfo.meshId);
+        if (user == null) {
+            return false;
+        }
 
-        for (UserInfo user : mAtakUsers) {
-            if (user.meshId.equals(trackerUserInfo.meshId)) {
-                userExistsInAtakUserList = true;
+        if (trackerUserInfo.batteryPercentage != null && !Objects.equals(user.batteryPercentage, trackerUserInfo.batteryPercentage)) {
+            user.batteryPercentage = trackerUserInfo.batteryPercentage;
+        }
 
-                if (trackerUserInfo.batteryPercentage != null && !Objects.equals(user.batteryPercentage, trackerUserInfo.batteryPercentage)) {
-                    user.batteryPercentage = trackerUserInfo.batteryPercentage;
-                }
+        return true;
+    }
 
-                break;
-            }
+    private void indexAtakUid(UserInfo userInfo) {
+        if (userInfo.atakUid != null) {
+            mAtakUsersByAtakUid.put(userInfo.atakUid, userInfo);
         }
-
-        return userExistsInAtakUserList;
     }
 
-    private void updateTracker(TrackerUserInfo trackerUserInfo) {
-        TrackerUserInfo userInfo = mTrackers.get(mTrackers.indexOf(trackerUserInfo));
+    private void updateTracker(TrackerUserInfo userInfo, TrackerUserInfo trackerUserInfo) {
 
         mLogger.v(TAG, "updateTracker, updating with data from: " + trackerUserInfo.callsign + ", meshId: " + trackerUserInfo.meshId + ", lat: " + trackerUserInfo.lat + ", lon: " + trackerUserInfo.lon + ", alt: " + trackerUserInfo.altitude + ", batteryPercentage: " + trackerUserInfo.batteryPercentage + ", lastSeenTime: " + trackerUserInfo.lastSeenTime);
         mLogger.v(TAG, "  possibly overwriting: " + userInfo.callsign + ", meshId: " + trackerUserInfo.meshId + ", lat: " + userInfo.lat + ", lon: " + userInfo.lon + ", alt: " + userInfo.altitude + ", batteryPercentage: " + userInfo.batteryPercentage + ", lastSeenTime: " + userInfo.lastSeenTime);
@@ -225,16 +241,37 @@ public class UserTracker implements DiscoveryBroadcastEventHandler.DiscoveryBroa
     }
 
     private void notifyTrackerUpdateListeners(TrackerUserInfo trackerUserInfo) {
-        TrackerUserInfo userInfo = mTrackers.get(mTrackers.indexOf(trackerUserInfo));
-
         for (TrackerUpdateListener listener : mTrackerUpdateListener) {
-            mUiThreadHandler.post(() -> listener.trackerUpdated(userInfo));
+            mUiThreadHandler.post(() -> listener.trackerUpdated(trackerUserInfo));
         }
     }
 
     private void notifyChannelMembersUpdateListeners() {
+        synchronized (mPublishLock) {
+            if (mPublishScheduled) {
+                return;
+            }
+
+            mPublishScheduled = true;
+            long delayMs = Math.max(0, mLastPublishTime + mPublishIntervalMs - SystemClock.uptimeMillis());
+            mUiThreadHandler.postDelayed(mPublishRunnable, delayMs);
+        }
+    }
+
+    private void publishChannelMembers() {
+        synchronized (mPublishLock) {
+            mPublishScheduled = false;
+            mLastPublishTime = SystemClock.uptimeMillis();
+        }
+
+        ChannelMembersSnapshot snapshot = ChannelMembersSnapshot.next(mSnapshot, mAtakUsers, mTrackers);
+        if (!snapshot.hasChanges()) {
+            return;
+        }
+
+        mSnapshot = snapshot;
         for (ChannelMembersUpdateListener channelMembersUpdateListener : mChannelMembersUpdateListeners) {
-            mUiThreadHandler.post(() -> channelMembersUpdateListener.onChannelMembersUpdated(mAtakUsers, mTrackers));
+            channelMembersUpdateListener.onChannelMembersUpdated(snapshot);
         }
     }
 }
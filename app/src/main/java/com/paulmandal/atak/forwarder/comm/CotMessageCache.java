@@ -10,15 +10,53 @@ import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
 import com.paulmandal.atak.forwarder.plugin.Destroyable;
 import com.paulmandal.atak.forwarder.plugin.DestroyableSharedPrefsListener;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.List;
 
+/**
+ * Cached events are indexed by CotFingerprinter fingerprint, with CotComparer only used to confirm a fingerprint match.
+ * The index is a hash table keyed directly on the long fingerprint with the entries chained through themselves, so
+ * lookups don't box keys or allocate.
+ *
+ * Every non-PLI event shares the same TTL so they expire in the order they were cached, which lets a FIFO queue stand
+ * in for a timer wheel: purging only ever looks at the head of the queue. PLIs don't need to be compared at all (any
+ * recent PLI suppresses the next one) so they are tracked with a single timestamp.
+ */
 public class CotMessageCache extends DestroyableSharedPrefsListener {
     private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + CotMessageCache.class.getSimpleName();
 
+    public interface Listener {
+        void onCacheStatsUpdated(CacheStats cacheStats);
+    }
+
+    public static class CacheStats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+
+        public CacheStats(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+    }
+
+    private static final long NO_PLI_CACHED = -1;
+    private static final int INITIAL_BUCKET_COUNT = 64;
+
     private final CotComparer mCotComparer;
 
-    private final List<CachedCotEvent> mCachedEvents = new ArrayList<>();
+    private final Object mSyncLock = new Object();
+    private CachedCotEvent[] mBuckets = new CachedCotEvent[INITIAL_BUCKET_COUNT];
+    private int mCachedEventCount;
+    private final ArrayDeque<CachedCotEvent> mExpiryQueue = new ArrayDeque<>();
+    private long mLastPliCachedTime = NO_PLI_CACHED;
+
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    private Listener mListener;
 
     private int mDuplicateMessagesTtlMs;
     private int mPliMaxFrequencyMs;
@@ -36,58 +74,148 @@ public class CotMessageCache extends DestroyableSharedPrefsListener {
         mCotComparer = cotComparer;
     }
 
-    public boolean checkIfRecentlySent(CotEvent cotEvent) {
-        purgeCacheOfStaleEvents();
-
+    /**
+     * @param fingerprint the event's CotFingerprinter fingerprint, ignored for PLIs
+     */
+    public boolean checkIfRecentlySent(CotEvent cotEvent, long fingerprint) {
         boolean isPli = MessageType.fromCotEventType(cotEvent.getType()) == MessageType.PLI;
+        long currentTime = System.currentTimeMillis();
 
-        synchronized (mCachedEvents) {
-            for (CachedCotEvent cachedCotEvent : mCachedEvents) {
-                if (isPli && MessageType.fromCotEventType(cachedCotEvent.cotEvent.getType()) == MessageType.PLI) {
-                    // Don't compare PLIs
-                    return true;
-                } else if (mCotComparer.areCotEventsEqual(cotEvent, cachedCotEvent.cotEvent)) {
-                    return true;
+        boolean recentlySent = false;
+        long hits;
+        long misses;
+        long evictions;
+        synchronized (mSyncLock) {
+            purgeCacheOfStaleEvents(currentTime);
+
+            if (isPli) {
+                // Don't compare PLIs
+                recentlySent = mLastPliCachedTime != NO_PLI_CACHED;
+            } else {
+                for (CachedCotEvent cachedCotEvent = mBuckets[bucketIndex(fingerprint, mBuckets.length)]; cachedCotEvent != null; cachedCotEvent = cachedCotEvent.nextInBucket) {
+                    if (cachedCotEvent.fingerprint == fingerprint
+                            && mCotComparer.areCotEventsEqual(cotEvent, fingerprint, cachedCotEvent.cotEvent, cachedCotEvent.fingerprint)) {
+                        recentlySent = true;
+                        break;
+                    }
                 }
             }
+
+            if (recentlySent) {
+                mHits++;
+            } else {
+                mMisses++;
+            }
+
+            hits = mHits;
+            misses = mMisses;
+            evictions = mEvictions;
         }
 
-        return false;
+        notifyListener(hits, misses, evictions);
+
+        return recentlySent;
     }
 
-    public void cacheEvent(CotEvent cotEvent) {
-        synchronized (mCachedEvents) {
-            mCachedEvents.add(new CachedCotEvent(cotEvent, System.currentTimeMillis()));
+    /**
+     * @param fingerprint the event's CotFingerprinter fingerprint, ignored for PLIs
+     */
+    public void cacheEvent(CotEvent cotEvent, long fingerprint) {
+        long currentTime = System.currentTimeMillis();
+
+        if (MessageType.fromCotEventType(cotEvent.getType()) == MessageType.PLI) {
+            synchronized (mSyncLock) {
+                mLastPliCachedTime = currentTime;
+            }
+            return;
+        }
+
+        CachedCotEvent cachedCotEvent = new CachedCotEvent(cotEvent, fingerprint, currentTime);
+        synchronized (mSyncLock) {
+            if (mCachedEventCount >= mBuckets.length - (mBuckets.length >> 2)) {
+                resize();
+            }
+            int index = bucketIndex(fingerprint, mBuckets.length);
+            cachedCotEvent.nextInBucket = mBuckets[index];
+            mBuckets[index] = cachedCotEvent;
+            mCachedEventCount++;
+            mExpiryQueue.add(cachedCotEvent);
         }
     }
 
     public void clearData() {
-        synchronized (mCachedEvents) {
-            mCachedEvents.clear();
+        synchronized (mSyncLock) {
+            mBuckets = new CachedCotEvent[INITIAL_BUCKET_COUNT];
+            mCachedEventCount = 0;
+            mExpiryQueue.clear();
+            mLastPliCachedTime = NO_PLI_CACHED;
         }
     }
 
-    private void purgeCacheOfStaleEvents() {
-        long currentTime = System.currentTimeMillis();
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
 
-        List<CachedCotEvent> purgeEvents = new ArrayList<>();
+    private void purgeCacheOfStaleEvents(long currentTime) {
+        if (mLastPliCachedTime != NO_PLI_CACHED && currentTime - mLastPliCachedTime > mPliMaxFrequencyMs) {
+            mLastPliCachedTime = NO_PLI_CACHED;
+            mEvictions++;
+        }
 
-        synchronized (mCachedEvents) {
+        CachedCotEvent oldestCachedCotEvent = mExpiryQueue.peek();
+        while (oldestCachedCotEvent != null && currentTime - oldestCachedCotEvent.lastSentTime > mDuplicateMessagesTtlMs) {
+            mExpiryQueue.poll();
 
-            for (CachedCotEvent cachedCotEvent : mCachedEvents) {
-                int purgeTimeMs = mDuplicateMessagesTtlMs;
-                if (MessageType.fromCotEventType(cachedCotEvent.cotEvent.getType()) == MessageType.PLI) {
-                    purgeTimeMs = mPliMaxFrequencyMs;
-                }
-                if (currentTime - cachedCotEvent.lastSentTime > purgeTimeMs) {
-                    purgeEvents.add(cachedCotEvent);
+            removeFromBucket(oldestCachedCotEvent);
+            mEvictions++;
+
+            oldestCachedCotEvent = mExpiryQueue.peek();
+        }
+    }
+
+    private void removeFromBucket(CachedCotEvent cachedCotEvent) {
+        int index = bucketIndex(cachedCotEvent.fingerprint, mBuckets.length);
+        CachedCotEvent previous = null;
+        for (CachedCotEvent current = mBuckets[index]; current != null; current = current.nextInBucket) {
+            if (current == cachedCotEvent) {
+                if (previous == null) {
+                    mBuckets[index] = current.nextInBucket;
+                } else {
+                    previous.nextInBucket = current.nextInBucket;
                 }
+                current.nextInBucket = null;
+                mCachedEventCount--;
+                return;
             }
+            previous = current;
+        }
+    }
 
-            for (CachedCotEvent purgeableCotEvent : purgeEvents) {
-                mCachedEvents.remove(purgeableCotEvent);
+    private void resize() {
+        CachedCotEvent[] oldBuckets = mBuckets;
+        CachedCotEvent[] newBuckets = new CachedCotEvent[oldBuckets.length * 2];
+        for (CachedCotEvent cachedCotEvent : oldBuckets) {
+            while (cachedCotEvent != null) {
+                CachedCotEvent next = cachedCotEvent.nextInBucket;
+                int index = bucketIndex(cachedCotEvent.fingerprint, newBuckets.length);
+                cachedCotEvent.nextInBucket = newBuckets[index];
+                newBuckets[index] = cachedCotEvent;
+                cachedCotEvent = next;
             }
         }
+        mBuckets = newBuckets;
+    }
+
+    private static int bucketIndex(long fingerprint, int bucketCount) {
+        int hash = (int) (fingerprint ^ (fingerprint >>> 32));
+        return (hash ^ (hash >>> 16)) & (bucketCount - 1);
+    }
+
+    private void notifyListener(long hits, long misses, long evictions) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onCacheStatsUpdated(new CacheStats(hits, misses, evictions));
+        }
     }
 
     @Override
@@ -103,10 +231,14 @@ public class CotMessageCache extends DestroyableSharedPrefsListener {
 
     private static class CachedCotEvent {
         public final CotEvent cotEvent;
+        public final long fingerprint;
         public final long lastSentTime;
 
-        public CachedCotEvent(CotEvent cotEvent, long lastSentTime) {
+        public CachedCotEvent nextInBucket;
+
+        public CachedCotEvent(CotEvent cotEvent, long fingerprint, long lastSentTime) {
             this.cotEvent = cotEvent;
+            this.fingerprint = fingerprint;
             this.lastSentTime = lastSentTime;
         }
     }
@@ -0,0 +1,159 @@
+package com.paulmandal.atak.forwarder.comm;
+
+import android.content.Context;
+
+import com.atakmap.android.maps.MapView;
+import com.paulmandal.atak.forwarder.ForwarderConstants;
+import com.paulmandal.atak.forwarder.helpers.Logger;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared, bounded pool for inbound work (unparcelling mesh Intents, decoding and dispatching CoT).
+ *
+ * Once QUEUE_CAPACITY tasks are waiting new droppable tasks (e.g. a position update that will be superseded by the
+ * next one) are discarded, and other tasks take the place of a queued droppable one or spill into a small overflow.
+ * Tasks never run on the submitting thread, which is usually the main thread. Only when the overflow is full too is a
+ * task that isn't droppable lost.
+ */
+public class InboundExecutor implements Destroyable {
+    private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + InboundExecutor.class.getSimpleName();
+
+    public interface Listener {
+        void onInboundStatsUpdated(int maxQueueDepth, int droppedTasks);
+    }
+
+    private static final int MIN_THREADS = 2;
+    private static final int MAX_THREADS = 4;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int OVERFLOW_CAPACITY = 192;
+    private static final int KEEP_ALIVE_SECS = 30;
+
+    private final Logger mLogger;
+    private final ThreadPoolExecutor mExecutor;
+    private final BlockingQueue<Runnable> mQueue = new LinkedBlockingQueue<>(QUEUE_CAPACITY + OVERFLOW_CAPACITY);
+
+    private final AtomicInteger mThreadsCreated = new AtomicInteger();
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+    private final AtomicInteger mDroppedTasks = new AtomicInteger();
+
+    private Listener mListener;
+
+    public InboundExecutor(List<Destroyable> destroyables, Logger logger) {
+        mLogger = logger;
+
+        int threads = Math.max(MIN_THREADS, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+        mExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECS, TimeUnit.SECONDS, mQueue, (Runnable r) -> {
+            Thread thread = new Thread(r);
+            thread.setName("InboundExecutor.Worker-" + mThreadsCreated.incrementAndGet());
+            return thread;
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+
+        destroyables.add(this);
+    }
+
+    public void execute(Runnable task) {
+        submit(new InboundTask(task, false));
+    }
+
+    /**
+     * For work that can be skipped under load because newer data will replace it
+     */
+    public void executeDroppable(Runnable task) {
+        submit(new InboundTask(task, true));
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void onDestroy(Context context, MapView mapView) {
+        mExecutor.shutdownNow();
+    }
+
+    private void submit(InboundTask inboundTask) {
+        if (mExecutor.isShutdown()) {
+            return;
+        }
+
+        if (mQueue.size() >= QUEUE_CAPACITY) {
+            if (inboundTask.droppable) {
+                recordDroppedTask("Inbound queue full, dropped droppable task");
+                return;
+            }
+
+            dropOneQueuedDroppableTask();
+        }
+
+        try {
+            mExecutor.execute(inboundTask);
+            recordQueueDepth();
+        } catch (RejectedExecutionException e) {
+            if (!mExecutor.isShutdown()) {
+                recordDroppedTask("Inbound queue and overflow full, dropped task, threads created: " + mThreadsCreated.get());
+            }
+        }
+    }
+
+    private boolean dropOneQueuedDroppableTask() {
+        Iterator<Runnable> iterator = mQueue.iterator();
+        while (iterator.hasNext()) {
+            InboundTask queuedTask = (InboundTask) iterator.next();
+            if (queuedTask.droppable && mQueue.remove(queuedTask)) {
+                recordDroppedTask("Inbound queue full, dropped queued droppable task");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void recordDroppedTask(String reason) {
+        int dropped = mDroppedTasks.incrementAndGet();
+        mLogger.e(TAG, reason + ", total dropped: " + dropped);
+        notifyListener();
+    }
+
+    private void recordQueueDepth() {
+        int queueDepth = mQueue.size();
+        int maxQueueDepth = mMaxQueueDepth.get();
+        while (queueDepth > maxQueueDepth) {
+            if (mMaxQueueDepth.compareAndSet(maxQueueDepth, queueDepth)) {
+                notifyListener();
+                return;
+            }
+            maxQueueDepth = mMaxQueueDepth.get();
+        }
+    }
+
+    private void notifyListener() {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onInboundStatsUpdated(mMaxQueueDepth.get(), mDroppedTasks.get());
+        }
+    }
+
+    private static class InboundTask implements Runnable {
+        public final Runnable task;
+        public final boolean droppable;
+
+        public InboundTask(Runnable task, boolean droppable) {
+            this.task = task;
+            this.droppable = droppable;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+}
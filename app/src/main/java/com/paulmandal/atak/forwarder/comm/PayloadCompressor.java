@@ -0,0 +1,163 @@
+package com.paulmandal.atak.forwarder.comm;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+
+import com.atakmap.android.maps.MapView;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+import com.paulmandal.atak.forwarder.plugin.DestroyableSharedPrefsListener;
+import com.paulmandal.atak.forwarder.preferences.PreferencesDefaults;
+import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional Deflate stage between CotShrinker and the MeshSender. Our payloads are a few hundred bytes at most, too
+ * short for Deflate to find repeats within a single message, so both sides prime it with a preset dictionary of the
+ * strings that survive shrinking (UID prefixes, iconset paths, chat room names, ...).
+ *
+ * Compressed payloads start with COMPRESSED_TYPE (0xf7, wire type 7 is invalid so it can't start CotShrinker output)
+ * followed by raw Deflate. Payloads that don't get smaller are sent as-is, and decompression always works regardless
+ * of the preference so a device with it off can still read everyone else's messages.
+ */
+public class PayloadCompressor extends DestroyableSharedPrefsListener {
+    public static final byte COMPRESSED_TYPE = (byte) 0xf7;
+
+    private static final int MIN_COMPRESSIBLE_LENGTH = 32;
+    private static final int MAX_DECOMPRESSED_LENGTH = 16 * 1024;
+
+    /**
+     * Recurring strings from shrunk map markers, PLIs, GeoChat, routes and drawings. Deflate reaches the end of the
+     * dictionary with the shortest distances, so the most common strings go last. Changing this breaks compatibility
+     * with every deployed version, a new dictionary needs a new type byte.
+     */
+    static final byte[] PRESET_DICTIONARY = (
+            "b-m-p-wb-m-p-cb-m-ru-d-fu-d-rrt-wp-rt-cp-Route" +
+            "DTED2GPSUSER*:-1:stcpATAK-CIVSAMSUNGGOOGLE PIXELTeam MemberTeam Lead" +
+            "COT_MAPPING_SPOTMAP/b-m-p-s-m/COT_MAPPING_2525B/a-f/a-f-G" +
+            "COT_MAPPING_2525B/a-u/a-u-GCOT_MAPPING_2525B/a-h/a-h-GCOT_MAPPING_2525B/a-n/a-n-G" +
+            "RootContactGroupBAO.F.ATAK.ANDROID-GeoChat.ANDROID-All Chat Rooms" +
+            "0123456789abcdef-ANDROID-"
+    ).getBytes(Charset.forName("US-ASCII"));
+
+    private final Deflater mDeflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    private final Inflater mInflater = new Inflater(true);
+
+    private boolean mEnabled;
+    private boolean mDestroyed;
+
+    public PayloadCompressor(List<Destroyable> destroyables, SharedPreferences sharedPreferences) {
+        super(destroyables,
+                sharedPreferences,
+                new String[]{
+                        PreferencesKeys.KEY_PAYLOAD_COMPRESSION
+                },
+                new String[]{});
+    }
+
+    public static boolean isCompressed(byte[] message) {
+        return message.length > 0 && message[0] == COMPRESSED_TYPE;
+    }
+
+    /**
+     * @return the compressed payload, or message itself if compression is off or wouldn't save anything
+     */
+    public byte[] compress(byte[] message) {
+        if (!mEnabled || message.length < MIN_COMPRESSIBLE_LENGTH) {
+            return message;
+        }
+
+        // Only worth it if the type byte plus compressed data comes out at least a byte shorter
+        int capacity = message.length - 2;
+        byte[] buffer = new byte[message.length - 1];
+        buffer[0] = COMPRESSED_TYPE;
+        int length = 0;
+        synchronized (mDeflater) {
+            if (mDestroyed) {
+                return message;
+            }
+            mDeflater.reset();
+            mDeflater.setDictionary(PRESET_DICTIONARY);
+            mDeflater.setInput(message);
+            mDeflater.finish();
+            while (!mDeflater.finished()) {
+                if (length == capacity) {
+                    return message;
+                }
+                length += mDeflater.deflate(buffer, 1 + length, capacity - length);
+            }
+        }
+        return Arrays.copyOf(buffer, 1 + length);
+    }
+
+    /**
+     * @return the original payload, or null if message isn't valid compressed data
+     */
+    @Nullable
+    public byte[] decompress(byte[] message) {
+        // Raw inflate wants an extra byte past the end of the input
+        byte[] input = Arrays.copyOfRange(message, 1, message.length + 1);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(message.length * 3);
+        byte[] buffer = new byte[512];
+        synchronized (mInflater) {
+            if (mDestroyed) {
+                return null;
+            }
+            mInflater.reset();
+            mInflater.setDictionary(PRESET_DICTIONARY);
+            mInflater.setInput(input);
+            try {
+                while (!mInflater.finished()) {
+                    int length = mInflater.inflate(buffer);
+                    if (length == 0 && (mInflater.needsInput() || mInflater.needsDictionary())) {
+                        return null;
+                    }
+                    outputStream.write(buffer, 0, length);
+                    if (outputStream.size() > MAX_DECOMPRESSED_LENGTH) {
+                        return null;
+                    }
+                }
+            } catch (DataFormatException e) {
+                return null;
+            }
+
+            // A complete stream ends inside its own last byte, a truncated one can read the padding byte as end-of-block
+            if (mInflater.getRemaining() != 1) {
+                return null;
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    @Override
+    public void onDestroy(Context context, MapView mapView) {
+        super.onDestroy(context, mapView);
+        // Free zlib's native buffers now rather than whenever these get finalized
+        synchronized (mDeflater) {
+            synchronized (mInflater) {
+                mDestroyed = true;
+                mDeflater.end();
+                mInflater.end();
+            }
+        }
+    }
+
+    @Override
+    protected void updateSettings(SharedPreferences sharedPreferences) {
+        mEnabled = sharedPreferences.getBoolean(PreferencesKeys.KEY_PAYLOAD_COMPRESSION, PreferencesDefaults.DEFAULT_PAYLOAD_COMPRESSION);
+    }
+
+    @Override
+    protected void complexUpdate(SharedPreferences sharedPreferences, String key) {
+        // Do nothing
+    }
+}
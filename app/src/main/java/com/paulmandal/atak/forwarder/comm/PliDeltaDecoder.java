@@ -0,0 +1,119 @@
+package com.paulmandal.atak.forwarder.comm;
+
+import androidx.annotation.Nullable;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotPoint;
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+import com.paulmandal.atak.libcotshrink.pub.api.CotShrinker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rebuilds PLIs sent by PliDeltaEncoder. Remembers the last keyframe received per UID and applies deltas to a fresh
+ * decode of it, deltas whose keyframe we missed are dropped until the sender's next keyframe arrives.
+ */
+public class PliDeltaDecoder {
+    private static final int MAX_KEYFRAMES = 256;
+
+    private final CotShrinker mCotShrinker;
+
+    private final Map<Integer, ReceivedKeyframe> mKeyframesByUidHash = new LinkedHashMap<Integer, ReceivedKeyframe>(MAX_KEYFRAMES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ReceivedKeyframe> eldest) {
+            return size() > MAX_KEYFRAMES;
+        }
+    };
+
+    public PliDeltaDecoder(CotShrinker cotShrinker) {
+        mCotShrinker = cotShrinker;
+    }
+
+    public static boolean isDelta(byte[] message) {
+        return message.length > 0 && message[0] == PliDeltaEncoder.PLI_DELTA_TYPE;
+    }
+
+    public void onKeyframe(CotEvent cotEvent, byte[] message) {
+        String uid = cotEvent.getUID();
+        if (uid == null || !PliDeltaEncoder.hasPointAndTimes(cotEvent)) {
+            return;
+        }
+
+        synchronized (mKeyframesByUidHash) {
+            mKeyframesByUidHash.put(PliDeltaEncoder.uidHash(uid), new ReceivedKeyframe(PliDeltaEncoder.keyframeTag(message), message));
+        }
+    }
+
+    /**
+     * @return the PLI, or null if the delta is malformed or we don't have the keyframe it was taken against
+     */
+    @Nullable
+    public CotEvent decode(byte[] message) {
+        if (message.length < PliDeltaEncoder.HEADER_LENGTH) {
+            return null;
+        }
+
+        int uidHash = ((message[1] & 0xff) << 24) | ((message[2] & 0xff) << 16) | ((message[3] & 0xff) << 8) | (message[4] & 0xff);
+        int tag = ((message[5] & 0xff) << 8) | (message[6] & 0xff);
+
+        ReceivedKeyframe keyframe;
+        synchronized (mKeyframesByUidHash) {
+            keyframe = mKeyframesByUidHash.get(uidHash);
+        }
+        if (keyframe == null || keyframe.tag != tag) {
+            return null;
+        }
+
+        long[] deltas = new long[6];
+        int position = PliDeltaEncoder.HEADER_LENGTH;
+        for (int i = 0; i < deltas.length; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            while (true) {
+                if (position >= message.length || shift > 63) {
+                    return null;
+                }
+                byte b = message[position++];
+                zigzag |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+                shift += 7;
+            }
+            deltas[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        // Decode the keyframe again rather than sharing one CotEvent, ATAK keeps the events we dispatch
+        CotEvent cotEvent = mCotShrinker.toCotEvent(keyframe.message);
+        if (cotEvent == null || !PliDeltaEncoder.hasPointAndTimes(cotEvent)) {
+            return null;
+        }
+
+        CotPoint point = cotEvent.getCotPoint();
+        cotEvent.setPoint(new CotPoint(point.getLat() + deltas[0] / PliDeltaEncoder.LAT_LON_SCALE,
+                point.getLon() + deltas[1] / PliDeltaEncoder.LAT_LON_SCALE,
+                point.getHae() + deltas[2] / PliDeltaEncoder.HAE_SCALE,
+                point.getCe(),
+                point.getLe()));
+
+        long keyframeTime = cotEvent.getTime().getMilliseconds();
+        long time = keyframeTime + deltas[3] * PliDeltaEncoder.TIME_UNIT_MS;
+        long startOffset = cotEvent.getStart().getMilliseconds() - keyframeTime + deltas[4] * PliDeltaEncoder.TIME_UNIT_MS;
+        long staleOffset = cotEvent.getStale().getMilliseconds() - keyframeTime + deltas[5] * PliDeltaEncoder.TIME_UNIT_MS;
+        cotEvent.setTime(new CoordinatedTime(time));
+        cotEvent.setStart(new CoordinatedTime(time + startOffset));
+        cotEvent.setStale(new CoordinatedTime(time + staleOffset));
+        return cotEvent;
+    }
+
+    private static class ReceivedKeyframe {
+        public final int tag;
+        public final byte[] message;
+
+        public ReceivedKeyframe(int tag, byte[] message) {
+            this.tag = tag;
+            this.message = message;
+        }
+    }
+}
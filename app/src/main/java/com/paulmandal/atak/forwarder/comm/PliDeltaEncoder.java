@@ -0,0 +1,247 @@
+package com.paulmandal.atak.forwarder.comm;
+
+import android.content.SharedPreferences;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotPoint;
+import com.paulmandal.atak.forwarder.comm.meshtastic.ChunkFramer;
+import com.paulmandal.atak.forwarder.cotutils.CotComparer;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+import com.paulmandal.atak.forwarder.plugin.DestroyableSharedPrefsListener;
+import com.paulmandal.atak.forwarder.preferences.PreferencesDefaults;
+import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
+import com.paulmandal.atak.libcotshrink.pub.api.CotShrinker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces channel PLIs with a few bytes of deltas against the last full PLI (keyframe) sent for the same UID. Runs
+ * as messages are handed to the radio, so the keyframe a delta refers to has always gone out before it, even when the
+ * CommandQueue coalesced PLIs in between.
+ *
+ * A delta is only sent when nothing but the point and times changed since the keyframe, and every KEYFRAME_INTERVAL
+ * PLIs a full one goes out anyway so receivers that missed a keyframe catch up. A keyframe whose message the
+ * MeshSender gives up on is forgotten so the next PLI goes out in full.
+ *
+ * Delta format, after the type byte (0xfe, which can't start CotShrinker protobuf output as wire type 6 is invalid):
+ *   4 bytes UID hash, 2 bytes keyframe tag, then zigzag varints: lat, lon (1e-7 deg), hae (dm) relative to the
+ *   keyframe, time relative to the keyframe's time, start and stale offsets from time relative to the keyframe's (100ms)
+ */
+public class PliDeltaEncoder extends DestroyableSharedPrefsListener {
+    public static final byte PLI_DELTA_TYPE = (byte) 0xfe;
+
+    static final int HEADER_LENGTH = 7;
+    static final double LAT_LON_SCALE = 1e7;
+    static final double HAE_SCALE = 10;
+    static final long TIME_UNIT_MS = 100;
+
+    private static final int KEYFRAME_INTERVAL = 8;
+    private static final long KEYFRAME_MAX_AGE_MS = 600000;
+    private static final int DELTA_FIELDS = 6;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private final CotShrinker mCotShrinker;
+    private final CotComparer mCotComparer;
+
+    private final Map<String, Keyframe> mKeyframesByUid = new HashMap<>();
+
+    private boolean mEnabled;
+    private long mKeyframesSent;
+    private long mDeltasSent;
+
+    public PliDeltaEncoder(List<Destroyable> destroyables,
+                           SharedPreferences sharedPreferences,
+                           CotShrinker cotShrinker,
+                           CotComparer cotComparer) {
+        super(destroyables,
+                sharedPreferences,
+                new String[]{
+                        PreferencesKeys.KEY_PLI_DELTA_ENCODING
+                },
+                new String[]{});
+        mCotShrinker = cotShrinker;
+        mCotComparer = cotComparer;
+    }
+
+    /**
+     * @param fullMessage the CotShrinker output for cotEvent
+     * @return fullMessage, or a delta against the last keyframe if one can stand in for it
+     */
+    public synchronized byte[] encode(CotEvent cotEvent, byte[] fullMessage) {
+        String uid = cotEvent.getUID();
+        if (!mEnabled || uid == null || !hasPointAndTimes(cotEvent)) {
+            return fullMessage;
+        }
+
+        Keyframe keyframe = mKeyframesByUid.get(uid);
+        if (keyframe != null && keyframe.deltasSent < KEYFRAME_INTERVAL - 1 && canEncodeAsDelta(keyframe, cotEvent)) {
+            keyframe.deltasSent++;
+            mDeltasSent++;
+            return encodeDelta(keyframe, cotEvent);
+        }
+
+        // Deltas are taken against what receivers decode, which CotShrinker may have rounded
+        CotEvent decodedKeyframe = mCotShrinker.toCotEvent(fullMessage);
+        if (decodedKeyframe == null || !hasPointAndTimes(decodedKeyframe)) {
+            mKeyframesByUid.remove(uid);
+        } else {
+            mKeyframesByUid.put(uid, new Keyframe(cotEvent, decodedKeyframe, keyframeTag(fullMessage)));
+        }
+        mKeyframesSent++;
+        return fullMessage;
+    }
+
+    /**
+     * Ties the keyframe encode() just recorded for cotEvent to the MeshSender message carrying it, a no-op for deltas
+     *
+     * @param messageId the MeshSender's id for the message, ChunkFramer.NO_MESSAGE_ID if it was dropped
+     */
+    public synchronized void onMessageQueued(CotEvent cotEvent, int messageId) {
+        String uid = cotEvent.getUID();
+        Keyframe keyframe = uid != null ? mKeyframesByUid.get(uid) : null;
+        if (keyframe == null || keyframe.cotEvent != cotEvent || keyframe.queued) {
+            return;
+        }
+
+        if (messageId == ChunkFramer.NO_MESSAGE_ID) {
+            mKeyframesByUid.remove(uid);
+            return;
+        }
+        keyframe.messageId = messageId;
+        keyframe.queued = true;
+    }
+
+    /**
+     * Forgets any keyframe that went out in messageId, receivers may never have seen it
+     */
+    public synchronized void onMessageFailed(int messageId) {
+        Iterator<Keyframe> iterator = mKeyframesByUid.values().iterator();
+        while (iterator.hasNext()) {
+            Keyframe keyframe = iterator.next();
+            if (keyframe.queued && keyframe.messageId == messageId) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized long getKeyframesSent() {
+        return mKeyframesSent;
+    }
+
+    public synchronized long getDeltasSent() {
+        return mDeltasSent;
+    }
+
+    @Override
+    protected void updateSettings(SharedPreferences sharedPreferences) {
+        boolean enabled = sharedPreferences.getBoolean(PreferencesKeys.KEY_PLI_DELTA_ENCODING, PreferencesDefaults.DEFAULT_PLI_DELTA_ENCODING);
+        synchronized (this) {
+            mEnabled = enabled;
+            // mKeyframesByUid is still null when this is called from the super constructor
+            if (!enabled && mKeyframesByUid != null) {
+                mKeyframesByUid.clear();
+            }
+        }
+    }
+
+    @Override
+    protected void complexUpdate(SharedPreferences sharedPreferences, String key) {
+        // Do nothing
+    }
+
+    private boolean canEncodeAsDelta(Keyframe keyframe, CotEvent cotEvent) {
+        long timeSinceKeyframe = cotEvent.getTime().getMilliseconds() - keyframe.time;
+        if (timeSinceKeyframe < 0 || timeSinceKeyframe > KEYFRAME_MAX_AGE_MS) {
+            return false;
+        }
+
+        // CotComparer already ignores time/start/stale, with the point swapped in anything it still sees changed needs a keyframe
+        CotEvent withKeyframePoint = new CotEvent(cotEvent);
+        withKeyframePoint.setPoint(keyframe.cotEvent.getCotPoint());
+        return mCotComparer.areCotEventsEqual(withKeyframePoint, keyframe.cotEvent);
+    }
+
+    private byte[] encodeDelta(Keyframe keyframe, CotEvent cotEvent) {
+        CotPoint point = cotEvent.getCotPoint();
+        long time = cotEvent.getTime().getMilliseconds();
+        long startOffset = cotEvent.getStart().getMilliseconds() - time;
+        long staleOffset = cotEvent.getStale().getMilliseconds() - time;
+
+        byte[] buffer = new byte[HEADER_LENGTH + DELTA_FIELDS * MAX_VARINT_BYTES];
+        buffer[0] = PLI_DELTA_TYPE;
+        int position = writeHeader(buffer, 1, keyframe.uidHash, keyframe.tag);
+        position = writeZigzagVarint(buffer, position, Math.round((point.getLat() - keyframe.lat) * LAT_LON_SCALE));
+        position = writeZigzagVarint(buffer, position, Math.round((point.getLon() - keyframe.lon) * LAT_LON_SCALE));
+        position = writeZigzagVarint(buffer, position, Math.round((point.getHae() - keyframe.hae) * HAE_SCALE));
+        position = writeZigzagVarint(buffer, position, Math.round((time - keyframe.time) / (double) TIME_UNIT_MS));
+        position = writeZigzagVarint(buffer, position, Math.round((startOffset - keyframe.startOffset) / (double) TIME_UNIT_MS));
+        position = writeZigzagVarint(buffer, position, Math.round((staleOffset - keyframe.staleOffset) / (double) TIME_UNIT_MS));
+        return Arrays.copyOf(buffer, position);
+    }
+
+    static boolean hasPointAndTimes(CotEvent cotEvent) {
+        return cotEvent.getCotPoint() != null && cotEvent.getTime() != null && cotEvent.getStart() != null && cotEvent.getStale() != null;
+    }
+
+    static int uidHash(String uid) {
+        return uid.hashCode();
+    }
+
+    static int keyframeTag(byte[] keyframe) {
+        return Arrays.hashCode(keyframe) & 0xffff;
+    }
+
+    static int writeHeader(byte[] buffer, int position, int uidHash, int tag) {
+        buffer[position++] = (byte) (uidHash >>> 24);
+        buffer[position++] = (byte) (uidHash >>> 16);
+        buffer[position++] = (byte) (uidHash >>> 8);
+        buffer[position++] = (byte) uidHash;
+        buffer[position++] = (byte) (tag >>> 8);
+        buffer[position++] = (byte) tag;
+        return position;
+    }
+
+    private static int writeZigzagVarint(byte[] buffer, int position, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7fL) != 0) {
+            buffer[position++] = (byte) ((zigzag & 0x7f) | 0x80);
+            zigzag >>>= 7;
+        }
+        buffer[position++] = (byte) zigzag;
+        return position;
+    }
+
+    private static class Keyframe {
+        public final CotEvent cotEvent;
+        public final int uidHash;
+        public final int tag;
+        public final double lat;
+        public final double lon;
+        public final double hae;
+        public final long time;
+        public final long startOffset;
+        public final long staleOffset;
+
+        public int deltasSent;
+        public boolean queued;
+        public int messageId;
+
+        public Keyframe(CotEvent cotEvent, CotEvent decodedKeyframe, int tag) {
+            this.cotEvent = cotEvent;
+            this.uidHash = uidHash(cotEvent.getUID());
+            this.tag = tag;
+
+            CotPoint point = decodedKeyframe.getCotPoint();
+            this.lat = point.getLat();
+            this.lon = point.getLon();
+            this.hae = point.getHae();
+            this.time = decodedKeyframe.getTime().getMilliseconds();
+            this.startOffset = decodedKeyframe.getStart().getMilliseconds() - time;
+            this.staleOffset = decodedKeyframe.getStale().getMilliseconds() - time;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.paulmandal.atak.forwarder.comm.meshtastic;
+
+import android.content.SharedPreferences;
+
+import com.geeksville.mesh.ConfigProtos;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+import com.paulmandal.atak.forwarder.plugin.DestroyableSharedPrefsListener;
+import com.paulmandal.atak.forwarder.preferences.PreferencesDefaults;
+import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Estimates LoRa time-on-air for outgoing chunks from the configured modem preset and keeps our transmissions inside a
+ * rolling one minute airtime budget. The budget is the smaller of the user's airtime budget setting and the region's
+ * duty cycle limit (e.g. 10% for EU_868).
+ */
+public class AirtimeScheduler extends DestroyableSharedPrefsListener {
+    private static final long BUDGET_WINDOW_MS = 60000;
+
+    // Meshtastic firmware defaults
+    private static final int PREAMBLE_SYMBOLS = 16;
+    private static final int MESH_PACKET_OVERHEAD_BYTES = 22; // 16 byte radio header + Data protobuf framing
+
+    private static final int DUTY_CYCLE_LIMITED_PERCENT = 10;
+    private static final int UNLIMITED_PERCENT = 100;
+
+    private final Deque<Transmission> mTransmissions = new ArrayDeque<>();
+
+    private double mBandwidthKhz;
+    private int mSpreadingFactor;
+    private int mCodingRate;
+    private long mBudgetMs;
+    private long mAirtimeUsedMs;
+
+    public AirtimeScheduler(List<Destroyable> destroyables,
+                            SharedPreferences sharedPreferences) {
+        super(destroyables,
+                sharedPreferences,
+                new String[]{
+                        PreferencesKeys.KEY_REGION,
+                        PreferencesKeys.KEY_CHANNEL_MODE,
+                        PreferencesKeys.KEY_AIRTIME_BUDGET_PERCENT
+                },
+                new String[]{});
+    }
+
+    public synchronized long estimateAirtimeMs(int payloadLength) {
+        double symbolTimeMs = Math.pow(2, mSpreadingFactor) / mBandwidthKhz;
+        int lowDataRateOptimize = symbolTimeMs > 16 ? 1 : 0;
+        int packetLength = payloadLength + MESH_PACKET_OVERHEAD_BYTES;
+
+        // Semtech SX127x time-on-air, explicit header, CRC on
+        double payloadSymbols = 8 + Math.max(Math.ceil((8.0 * packetLength - 4 * mSpreadingFactor + 28 + 16) / (4.0 * (mSpreadingFactor - 2 * lowDataRateOptimize))) * (mCodingRate + 4), 0);
+        double preambleMs = (PREAMBLE_SYMBOLS + 4.25) * symbolTimeMs;
+        return (long) Math.ceil(preambleMs + payloadSymbols * symbolTimeMs);
+    }
+
+    /**
+     * @return 0 if a chunk with this payload length fits in the budget now, otherwise how long until it will
+     */
+    public synchronized long getDelayUntilSendMs(int payloadLength, long currentTime) {
+        expireTransmissions(currentTime);
+
+        long airtimeMs = estimateAirtimeMs(payloadLength);
+        // A chunk longer than the whole budget (very slow presets in duty cycle regions) goes out once the window is clear
+        long allowedUsageMs = Math.max(0, mBudgetMs - airtimeMs);
+        long usedMs = mAirtimeUsedMs;
+        if (usedMs <= allowedUsageMs) {
+            return 0;
+        }
+
+        for (Transmission transmission : mTransmissions) {
+            usedMs -= transmission.airtimeMs;
+            if (usedMs <= allowedUsageMs) {
+                return transmission.time + BUDGET_WINDOW_MS - currentTime;
+            }
+        }
+        return BUDGET_WINDOW_MS;
+    }
+
+    public synchronized void recordTransmission(int payloadLength, long currentTime) {
+        long airtimeMs = estimateAirtimeMs(payloadLength);
+        mTransmissions.add(new Transmission(currentTime, airtimeMs));
+        mAirtimeUsedMs += airtimeMs;
+    }
+
+    public synchronized long getAirtimeUsedMs(long currentTime) {
+        expireTransmissions(currentTime);
+        return mAirtimeUsedMs;
+    }
+
+    public synchronized long getAirtimeBudgetMs() {
+        return mBudgetMs;
+    }
+
+    @Override
+    protected synchronized void updateSettings(SharedPreferences sharedPreferences) {
+        ConfigProtos.Config.LoRaConfig.RegionCode regionCode = ConfigProtos.Config.LoRaConfig.RegionCode.forNumber(Integer.parseInt(sharedPreferences.getString(PreferencesKeys.KEY_REGION, PreferencesDefaults.DEFAULT_REGION)));
+        ConfigProtos.Config.LoRaConfig.ModemPreset modemPreset = ConfigProtos.Config.LoRaConfig.ModemPreset.forNumber(Integer.parseInt(sharedPreferences.getString(PreferencesKeys.KEY_CHANNEL_MODE, PreferencesDefaults.DEFAULT_CHANNEL_MODE)));
+        int budgetPercent = Integer.parseInt(sharedPreferences.getString(PreferencesKeys.KEY_AIRTIME_BUDGET_PERCENT, PreferencesDefaults.DEFAULT_AIRTIME_BUDGET_PERCENT));
+
+        setModemPreset(modemPreset);
+
+        int dutyCyclePercent = getDutyCyclePercent(regionCode);
+        budgetPercent = Math.max(1, Math.min(budgetPercent, dutyCyclePercent));
+        mBudgetMs = BUDGET_WINDOW_MS * budgetPercent / 100;
+    }
+
+    @Override
+    protected void complexUpdate(SharedPreferences sharedPreferences, String key) {
+        // Do nothing
+    }
+
+    private void setModemPreset(ConfigProtos.Config.LoRaConfig.ModemPreset modemPreset) {
+        // Coding rate is stored as the x in 4/(4 + x)
+        if (modemPreset == null) {
+            modemPreset = ConfigProtos.Config.LoRaConfig.ModemPreset.LONG_FAST;
+        }
+
+        switch (modemPreset) {
+            case SHORT_FAST:
+                setRadioParams(250, 7, 1);
+                break;
+            case SHORT_SLOW:
+                setRadioParams(250, 8, 1);
+                break;
+            case MEDIUM_FAST:
+                setRadioParams(250, 9, 1);
+                break;
+            case MEDIUM_SLOW:
+                setRadioParams(250, 10, 1);
+                break;
+            case LONG_SLOW:
+                setRadioParams(125, 12, 4);
+                break;
+            case VERY_LONG_SLOW:
+                setRadioParams(62.5, 12, 4);
+                break;
+            case LONG_FAST:
+            default:
+                setRadioParams(250, 11, 1);
+                break;
+        }
+    }
+
+    private void setRadioParams(double bandwidthKhz, int spreadingFactor, int codingRate) {
+        mBandwidthKhz = bandwidthKhz;
+        mSpreadingFactor = spreadingFactor;
+        mCodingRate = codingRate;
+    }
+
+    private int getDutyCyclePercent(ConfigProtos.Config.LoRaConfig.RegionCode regionCode) {
+        if (regionCode == ConfigProtos.Config.LoRaConfig.RegionCode.EU_433 || regionCode == ConfigProtos.Config.LoRaConfig.RegionCode.EU_868) {
+            return DUTY_CYCLE_LIMITED_PERCENT;
+        }
+        return UNLIMITED_PERCENT;
+    }
+
+    private void expireTransmissions(long currentTime) {
+        Transmission oldest = mTransmissions.peek();
+        while (oldest != null && currentTime - oldest.time >= BUDGET_WINDOW_MS) {
+            mTransmissions.poll();
+            mAirtimeUsedMs -= oldest.airtimeMs;
+            oldest = mTransmissions.peek();
+        }
+    }
+
+    private static class Transmission {
+        public final long time;
+        public final long airtimeMs;
+
+        public Transmission(long time, long airtimeMs) {
+            this.time = time;
+            this.airtimeMs = airtimeMs;
+        }
+    }
+}
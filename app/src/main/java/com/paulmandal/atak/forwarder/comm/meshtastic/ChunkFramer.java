@@ -0,0 +1,166 @@
+package com.paulmandal.atak.forwarder.comm.meshtastic;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Splits messages into header-prefixed chunks and puts them back together. Each payload byte is copied exactly once in
+ * each direction: straight from the message into its packet on send, and straight from the packet into the re-assembled
+ * message on receive.
+ *
+ * Two header formats are understood:
+ *   legacy:   1 byte, index << 4 | count, count is always 1-15
+ *   extended: 1 byte version << 4 with a zero count nibble, then varint message id, varint index, varint count
+ *
+ * Messages that fit in MAX_LEGACY_CHUNKS keep using the legacy header so older plugin versions can still read them.
+ */
+public class ChunkFramer {
+    public static final int MAX_LEGACY_CHUNKS = 15;
+    public static final int MAX_CHUNKS = 128;
+    public static final int NO_MESSAGE_ID = -1;
+
+    public static final int LEGACY_HEADER_LENGTH = 1;
+
+    private static final int SINGLE_CHUNK_HEADER = 0 << 4 | 1;
+    private static final int EXTENDED_HEADER_VERSION = 1;
+    private static final int MESSAGE_ID_MASK = 0xffff;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    /**
+     * @return the number of chunks needed to carry message, may be more than MAX_CHUNKS
+     */
+    public int getChunkCount(byte[] message, int chunkPayloadLength) {
+        return (message.length + chunkPayloadLength - 1) / chunkPayloadLength;
+    }
+
+    /**
+     * @return packets ready to hand to the mesh service, each one header + payload slice
+     */
+    public byte[][] frame(int messageId, byte[] message, int chunkPayloadLength) {
+        int chunks = getChunkCount(message, chunkPayloadLength);
+        boolean extended = chunks > MAX_LEGACY_CHUNKS;
+        int wireMessageId = messageId & MESSAGE_ID_MASK;
+
+        byte[][] packets = new byte[chunks][];
+        for (int i = 0; i < chunks; i++) {
+            int start = i * chunkPayloadLength;
+            int length = Math.min(chunkPayloadLength, message.length - start);
+
+            int headerLength = extended ? 1 + varintLength(wireMessageId) + varintLength(i) + varintLength(chunks) : LEGACY_HEADER_LENGTH;
+            byte[] packet = new byte[headerLength + length];
+            if (extended) {
+                int position = 0;
+                packet[position++] = (byte) (EXTENDED_HEADER_VERSION << 4);
+                position = writeVarint(packet, position, wireMessageId);
+                position = writeVarint(packet, position, i);
+                writeVarint(packet, position, chunks);
+            } else {
+                packet[0] = (byte) (i << 4 | chunks);
+            }
+            System.arraycopy(message, start, packet, headerLength, length);
+            packets[i] = packet;
+        }
+        return packets;
+    }
+
+    /**
+     * Wraps a received packet without copying, the payload starts after the header
+     *
+     * @return null if the header is malformed or from a newer, unknown version
+     */
+    @Nullable
+    public InboundMessageChunk toMessageChunk(byte[] packet) {
+        if (packet.length < 1) {
+            return null;
+        }
+
+        int firstByte = packet[0] & 0xff;
+        int legacyCount = firstByte & 0x0f;
+        if (legacyCount != 0) {
+            int index = firstByte >> 4;
+            if (index >= legacyCount) {
+                return null;
+            }
+            return new InboundMessageChunk(NO_MESSAGE_ID, index, legacyCount, packet, LEGACY_HEADER_LENGTH, packet.length - LEGACY_HEADER_LENGTH);
+        }
+
+        if (firstByte >> 4 != EXTENDED_HEADER_VERSION) {
+            return null;
+        }
+
+        int[] position = {1};
+        int messageId = readVarint(packet, position);
+        int index = readVarint(packet, position);
+        int count = readVarint(packet, position);
+        if (messageId < 0 || index < 0 || count < 1 || count > MAX_CHUNKS || index >= count) {
+            return null;
+        }
+
+        int headerLength = position[0];
+        return new InboundMessageChunk(messageId, index, count, packet, headerLength, packet.length - headerLength);
+    }
+
+    /**
+     * @param pieces every chunk of the message, ordered by index
+     */
+    public byte[] reassemble(MessageChunk[] pieces) {
+        int totalLength = 0;
+        for (MessageChunk piece : pieces) {
+            totalLength += piece.length;
+        }
+
+        byte[] message = new byte[totalLength];
+        int position = 0;
+        for (MessageChunk piece : pieces) {
+            System.arraycopy(piece.chunk, piece.offset, message, position, piece.length);
+            position += piece.length;
+        }
+        return message;
+    }
+
+    /**
+     * Classifies the packet from the first payload byte without decoding it. Discovery messages always fit in one chunk
+     * so they always carry the single-chunk legacy header, any other header means the payload byte belongs to some
+     * other message's data (e.g. Deflate output or an extended header's message id).
+     */
+    public boolean isDiscoveryMessage(byte[] packet) {
+        return packet.length > LEGACY_HEADER_LENGTH
+                && (packet[0] & 0xff) == SINGLE_CHUNK_HEADER
+                && DiscoveryMessageCodec.isDiscoveryPayload(packet, LEGACY_HEADER_LENGTH);
+    }
+
+    private int varintLength(int value) {
+        int length = 1;
+        while ((value >>>= 7) != 0) {
+            length++;
+        }
+        return length;
+    }
+
+    private int writeVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * @return the decoded value, or -1 if the varint runs off the end of the buffer or is too long
+     */
+    private int readVarint(byte[] buffer, int[] position) {
+        int value = 0;
+        for (int shift = 0, i = 0; i < MAX_VARINT_BYTES; shift += 7, i++) {
+            if (position[0] >= buffer.length) {
+                return -1;
+            }
+
+            int b = buffer[position[0]++] & 0xff;
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+}
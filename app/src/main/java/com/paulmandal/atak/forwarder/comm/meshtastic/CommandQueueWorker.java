@@ -4,62 +4,115 @@ import android.content.Context;
 
 import com.atakmap.android.maps.MapView;
 import com.paulmandal.atak.forwarder.ForwarderConstants;
+import com.paulmandal.atak.forwarder.comm.MessageType;
+import com.paulmandal.atak.forwarder.comm.PayloadCompressor;
+import com.paulmandal.atak.forwarder.comm.PliDeltaEncoder;
 import com.paulmandal.atak.forwarder.comm.queue.CommandQueue;
 import com.paulmandal.atak.forwarder.comm.queue.commands.BroadcastDiscoveryCommand;
+import com.paulmandal.atak.forwarder.comm.queue.commands.CommandType;
 import com.paulmandal.atak.forwarder.comm.queue.commands.QueuedCommand;
 import com.paulmandal.atak.forwarder.comm.queue.commands.SendMessageCommand;
 import com.paulmandal.atak.forwarder.plugin.Destroyable;
 
 import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-
-public class CommandQueueWorker implements Destroyable, ConnectionStateHandler.Listener {
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drains the CommandQueue into the MeshSender. Instead of polling, a drain is scheduled whenever a command is queued,
+ * the sender frees up room in its send window, or the device connects. Signals that arrive while a drain is already
+ * scheduled are coalesced into it.
+ */
+public class CommandQueueWorker implements Destroyable,
+        ConnectionStateHandler.Listener,
+        CommandQueue.CommandQueuedListener,
+        MeshSender.SendCapacityListener,
+        MeshSender.MessageFailedListener {
     private static final String TAG =  ForwarderConstants.DEBUG_TAG_PREFIX + CommandQueueWorker.class.getSimpleName();
 
-    private static final int CHECK_MESSAGE_QUEUE_INTERVAL_MS = 300;
-
     private final ScheduledExecutorService mExecutor;
     private final CommandQueue mCommandQueue;
     private final MeshSender mMeshSender;
+    private final PliDeltaEncoder mPliDeltaEncoder;
+    private final PayloadCompressor mPayloadCompressor;
+
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean(false);
 
-    private ConnectionStateHandler.ConnectionState mConnectionState;
-    private boolean mDestroyed = false;
+    private volatile ConnectionStateHandler.ConnectionState mConnectionState;
+    private volatile boolean mDestroyed = false;
 
     public CommandQueueWorker(List<Destroyable> destroyables,
                               ConnectionStateHandler connectionStateHandler,
                               CommandQueue commandQueue,
                               MeshSender meshSender,
+                              PliDeltaEncoder pliDeltaEncoder,
+                              PayloadCompressor payloadCompressor,
                               ScheduledExecutorService scheduledExecutorService) {
         mExecutor = scheduledExecutorService;
         mCommandQueue = commandQueue;
         mMeshSender = meshSender;
+        mPliDeltaEncoder = pliDeltaEncoder;
+        mPayloadCompressor = payloadCompressor;
 
         destroyables.add(this);
         connectionStateHandler.addListener(this);
+        commandQueue.setCommandQueuedListener(this);
+        meshSender.addSendCapacityListener(this);
+        meshSender.addMessageFailedListener(this);
 
         mConnectionState = ConnectionStateHandler.ConnectionState.NO_SERVICE_CONNECTION;
-
-        startWorker();
     }
 
     @Override
     public void onDestroy(Context context, MapView mapView) {
-        mExecutor.shutdown();
         mDestroyed = true;
+        mExecutor.shutdown();
     }
 
     @Override
     public void onConnectionStateChanged(ConnectionStateHandler.ConnectionState connectionState) {
         mConnectionState = connectionState;
+
+        if (connectionState == ConnectionStateHandler.ConnectionState.DEVICE_CONNECTED) {
+            scheduleDrain();
+        }
     }
 
-    private void startWorker() {
-        mExecutor.scheduleAtFixedRate(() -> {
-            if (mDestroyed || mMeshSender.isSendingMessage() || mConnectionState != ConnectionStateHandler.ConnectionState.DEVICE_CONNECTED) {
-                return;
-            }
+    @Override
+    public void onCommandQueued() {
+        scheduleDrain();
+    }
+
+    @Override
+    public void onSendCapacityAvailable() {
+        scheduleDrain();
+    }
+
+    @Override
+    public void onMessageFailed(int messageId) {
+        if (mDestroyed) {
+            return;
+        }
+
+        // Runs after any drain in progress, so the encoder has already heard which message its keyframe went out in
+        mExecutor.execute(() -> mPliDeltaEncoder.onMessageFailed(messageId));
+    }
 
+    private void scheduleDrain() {
+        if (mDestroyed) {
+            return;
+        }
+
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(this::drainQueue);
+        }
+    }
+
+    private void drainQueue() {
+        // Clear the flag before looking at the queue so a signal that arrives mid-drain schedules another pass
+        mDrainScheduled.set(false);
+
+        while (!mDestroyed && mConnectionState == ConnectionStateHandler.ConnectionState.DEVICE_CONNECTED && mMeshSender.hasSendCapacity()) {
             QueuedCommand queuedCommand = mCommandQueue.popHighestPriorityCommand(true);
 
             if (queuedCommand == null) {
@@ -72,9 +125,22 @@ public class CommandQueueWorker implements Destroyable, ConnectionStateHandler.L
                     break;
                 case SEND_TO_CHANNEL:
                 case SEND_TO_INDIVIDUAL:
-                    mMeshSender.sendMessage((SendMessageCommand) queuedCommand);
+                    sendMessage((SendMessageCommand) queuedCommand);
                     break;
             }
-        }, 0, CHECK_MESSAGE_QUEUE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void sendMessage(SendMessageCommand sendMessageCommand) {
+        boolean channelPli = sendMessageCommand.commandType == CommandType.SEND_TO_CHANNEL && sendMessageCommand.messageType == MessageType.PLI;
+        if (channelPli) {
+            // Encoded here rather than when queued so a delta never refers to a keyframe the queue overwrote
+            sendMessageCommand.message = mPliDeltaEncoder.encode(sendMessageCommand.cotEvent, sendMessageCommand.message);
+        }
+        sendMessageCommand.message = mPayloadCompressor.compress(sendMessageCommand.message);
+        int messageId = mMeshSender.sendMessage(sendMessageCommand);
+        if (channelPli) {
+            mPliDeltaEncoder.onMessageQueued(sendMessageCommand.cotEvent, messageId);
+        }
     }
 }
@@ -1,19 +1,13 @@
 package com.paulmandal.atak.forwarder.comm.meshtastic;
 
-import android.content.Context;
-import android.content.Intent;
 import android.os.RemoteException;
 
-import com.geeksville.mesh.DataPacket;
 import com.paulmandal.atak.forwarder.ForwarderConstants;
 import com.paulmandal.atak.forwarder.comm.queue.CommandQueue;
 import com.paulmandal.atak.forwarder.comm.queue.commands.QueuedCommandFactory;
 import com.paulmandal.atak.forwarder.helpers.Logger;
-import com.paulmandal.atak.forwarder.plugin.Destroyable;
 
-import java.util.List;
-
-public class DiscoveryBroadcastEventHandler extends MeshEventHandler implements ConnectionStateHandler.Listener {
+public class DiscoveryBroadcastEventHandler implements ConnectionStateHandler.Listener, MeshEventDispatcher.DiscoveryPacketHandler {
     public interface DiscoveryBroadcastListener {
         void onUserDiscoveryBroadcastReceived(String callsign, String meshId, String atakUid);
     }
@@ -21,50 +15,46 @@ public class DiscoveryBroadcastEventHandler extends MeshEventHandler implements
     private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + DiscoveryBroadcastEventHandler.class.getSimpleName();
 
     private DiscoveryBroadcastListener mDiscoveryBroadcastListener;
+    private final Logger mLogger;
     private final CommandQueue mCommandQueue;
     private final QueuedCommandFactory mQueuedCommandFactory;
     private final MeshServiceController mMeshServiceController;
+    private final DiscoveryMessageCodec mDiscoveryMessageCodec;
 
     private String mMeshId;
     private final String mAtakUid;
     private final String mCallsign;
     private boolean mInitialDiscoveryBroadcastSent = false;
 
-    public DiscoveryBroadcastEventHandler(Context atakContext,
-                                          Logger logger,
+    public DiscoveryBroadcastEventHandler(Logger logger,
                                           CommandQueue commandQueue,
                                           QueuedCommandFactory queuedCommandFactory,
-                                          List<Destroyable> destroyables,
                                           ConnectionStateHandler connectionStateHandler,
+                                          MeshEventDispatcher meshEventDispatcher,
                                           MeshServiceController meshServiceController,
+                                          DiscoveryMessageCodec discoveryMessageCodec,
                                           String atakUid,
                                           String callsign) {
-        super(atakContext,
-                logger,
-                new String[]{
-                        MeshServiceConstants.ACTION_RECEIVED_ATAK_FORWARDER
-                },
-                destroyables,
-                connectionStateHandler);
-
+        mLogger = logger;
         mCommandQueue = commandQueue;
         mQueuedCommandFactory = queuedCommandFactory;
         mMeshServiceController = meshServiceController;
+        mDiscoveryMessageCodec = discoveryMessageCodec;
         mAtakUid = atakUid;
         mCallsign = callsign;
 
         mMeshId = "";
 
         connectionStateHandler.addListener(this);
+        meshEventDispatcher.setDiscoveryPacketHandler(this);
     }
 
     public void broadcastDiscoveryMessage(boolean initialDiscoveryMessage) {
-        String broadcastData = ForwarderConstants.DISCOVERY_BROADCAST_MARKER + "," + mMeshId + "," + mAtakUid + "," + mCallsign + "," + (initialDiscoveryMessage ? 1 : 0);
+        DiscoveryMessage discoveryMessage = new DiscoveryMessage(mMeshId, mAtakUid, mCallsign, initialDiscoveryMessage);
 
-        String broadcastWithInitialDiscoveryUnset = broadcastData.replaceAll(",1$", ",0");
-        handleDiscoveryMessage(broadcastWithInitialDiscoveryUnset);
+        handleDiscoveryMessage(new DiscoveryMessage(mMeshId, mAtakUid, mCallsign, false));
 
-        mCommandQueue.queueCommand(mQueuedCommandFactory.createBroadcastDiscoveryCommand(broadcastData.getBytes()));
+        mCommandQueue.queueCommand(mQueuedCommandFactory.createBroadcastDiscoveryCommand(mDiscoveryMessageCodec.encode(discoveryMessage)));
     }
 
     public void setListener(DiscoveryBroadcastListener listener) {
@@ -73,8 +63,6 @@ public class DiscoveryBroadcastEventHandler extends MeshEventHandler implements
 
     @Override
     public void onConnectionStateChanged(ConnectionStateHandler.ConnectionState connectionState) {
-        super.onConnectionStateChanged(connectionState);
-
         if (connectionState == ConnectionStateHandler.ConnectionState.DEVICE_CONNECTED) {
             mMeshId = null;
             try {
@@ -92,33 +80,22 @@ public class DiscoveryBroadcastEventHandler extends MeshEventHandler implements
     }
 
     @Override
-    protected void handleReceive(Context context, Intent intent) {
-        DataPacket payload = intent.getParcelableExtra(MeshServiceConstants.EXTRA_PAYLOAD);
-
-        int dataType = payload.getDataType();
-
-        mLogger.v(TAG, "handleReceive(), dataType: " + dataType);
-        String message = new String(payload.getBytes()).substring(1);
-        if (!message.startsWith(ForwarderConstants.DISCOVERY_BROADCAST_MARKER)) {
+    public void onDiscoveryPacket(String from, byte[] packet) {
+        DiscoveryMessage discoveryMessage = mDiscoveryMessageCodec.decode(packet, ChunkFramer.LEGACY_HEADER_LENGTH);
+        if (discoveryMessage == null) {
+            mLogger.e(TAG, "Dropping malformed discovery broadcast from: {}", from);
             return;
         }
 
-        mLogger.d(TAG, "<--- Received broadcast: " + message);
+        mLogger.d(TAG, "<--- Received broadcast: {}", discoveryMessage);
 
-        handleDiscoveryMessage(message);
+        handleDiscoveryMessage(discoveryMessage);
     }
 
-    private void handleDiscoveryMessage(String message) {
-        String messageWithoutMarker = message.replace(ForwarderConstants.DISCOVERY_BROADCAST_MARKER + ",", "");
-        String[] messageSplit = messageWithoutMarker.split(",");
-        String meshId = messageSplit[0];
-        String atakUid = messageSplit[1];
-        String callsign = messageSplit[2];
-        boolean initialDiscoveryMessage = messageSplit[3].equals("1");
-
-        if (initialDiscoveryMessage && mInitialDiscoveryBroadcastSent) {
+    private void handleDiscoveryMessage(DiscoveryMessage discoveryMessage) {
+        if (discoveryMessage.initialDiscoveryMessage && mInitialDiscoveryBroadcastSent) {
             broadcastDiscoveryMessage(false);
         }
-        mDiscoveryBroadcastListener.onUserDiscoveryBroadcastReceived(callsign, meshId, atakUid);
+        mDiscoveryBroadcastListener.onUserDiscoveryBroadcastReceived(discoveryMessage.callsign, discoveryMessage.meshId, discoveryMessage.atakUid);
     }
 }
@@ -0,0 +1,20 @@
+package com.paulmandal.atak.forwarder.comm.meshtastic;
+
+public class DiscoveryMessage {
+    public final String meshId;
+    public final String atakUid;
+    public final String callsign;
+    public final boolean initialDiscoveryMessage;
+
+    public DiscoveryMessage(String meshId, String atakUid, String callsign, boolean initialDiscoveryMessage) {
+        this.meshId = meshId;
+        this.atakUid = atakUid;
+        this.callsign = callsign;
+        this.initialDiscoveryMessage = initialDiscoveryMessage;
+    }
+
+    @Override
+    public String toString() {
+        return "meshId: " + meshId + ", atakUid: " + atakUid + ", callsign: " + callsign + ", initial: " + initialDiscoveryMessage;
+    }
+}
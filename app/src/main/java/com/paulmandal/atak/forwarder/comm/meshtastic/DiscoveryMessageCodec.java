@@ -0,0 +1,284 @@
+package com.paulmandal.atak.forwarder.comm.meshtastic;
+
+import androidx.annotation.Nullable;
+
+import com.paulmandal.atak.forwarder.ForwarderConstants;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes discovery broadcasts in a compact binary form and decodes both that and the legacy
+ * "ATAKBCAST,meshId,atakUid,callsign,initial" CSV form.
+ *
+ * Binary layout, after the chunk header:
+ *   1 byte   BINARY_DISCOVERY_TYPE
+ *   1 byte   flags, FLAG_INITIAL | FLAG_MESH_ID_AS_STRING
+ *   meshId   4 byte big-endian node number, or varint length + UTF-8 if it isn't in the usual !xxxxxxxx form
+ *   atakUid  varint (prefix index << 1 | hex packed), varint length, bytes. The prefix comes from UID_PREFIXES, when the
+ *            rest of the UID is lowercase hex it is packed two digits to a byte
+ *   callsign varint length + UTF-8
+ *
+ * The type byte can never start CotShrinker output: its low 3 bits would be protobuf wire type 7, which doesn't exist.
+ */
+public class DiscoveryMessageCodec {
+    public static final byte BINARY_DISCOVERY_TYPE = (byte) 0xff;
+
+    private static final int FLAG_INITIAL = 0x01;
+    private static final int FLAG_MESH_ID_AS_STRING = 0x02;
+
+    private static final int MESH_ID_HEX_LENGTH = 8;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    // Append only, the index goes over the air
+    private static final String[] UID_PREFIXES = {
+            "",
+            "ANDROID-",
+            "S-1-5-21-",
+            "MESHTASTIC-"
+    };
+
+    private static final byte[] LEGACY_MARKER_BYTES = ForwarderConstants.DISCOVERY_BROADCAST_MARKER.getBytes(StandardCharsets.UTF_8);
+    private static final String LEGACY_SEPARATOR = ",";
+    private static final int LEGACY_FIELD_COUNT = 5;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Classifies a payload from its first byte, only the legacy form needs the rest of the marker compared
+     */
+    public static boolean isDiscoveryPayload(byte[] buffer, int offset) {
+        if (offset >= buffer.length) {
+            return false;
+        }
+
+        byte type = buffer[offset];
+        if (type == BINARY_DISCOVERY_TYPE) {
+            return true;
+        }
+
+        if (type != LEGACY_MARKER_BYTES[0] || buffer.length - offset < LEGACY_MARKER_BYTES.length) {
+            return false;
+        }
+
+        for (int i = 1; i < LEGACY_MARKER_BYTES.length; i++) {
+            if (buffer[offset + i] != LEGACY_MARKER_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public byte[] encode(DiscoveryMessage discoveryMessage) {
+        String meshId = discoveryMessage.meshId != null ? discoveryMessage.meshId : "";
+        boolean meshIdAsString = !isNodeNumberMeshId(meshId);
+
+        String atakUid = discoveryMessage.atakUid != null ? discoveryMessage.atakUid : "";
+        int prefixIndex = findUidPrefix(atakUid);
+        String uidRemainder = atakUid.substring(UID_PREFIXES[prefixIndex].length());
+        boolean hexPacked = isPackableHex(uidRemainder);
+        byte[] uidBytes = hexPacked ? packHex(uidRemainder) : uidRemainder.getBytes(StandardCharsets.UTF_8);
+
+        byte[] meshIdBytes = meshIdAsString ? meshId.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] callsignBytes = (discoveryMessage.callsign != null ? discoveryMessage.callsign : "").getBytes(StandardCharsets.UTF_8);
+        int uidHeader = prefixIndex << 1 | (hexPacked ? 1 : 0);
+
+        int length = 2
+                + (meshIdAsString ? varintLength(meshIdBytes.length) + meshIdBytes.length : 4)
+                + varintLength(uidHeader) + varintLength(uidBytes.length) + uidBytes.length
+                + varintLength(callsignBytes.length) + callsignBytes.length;
+
+        byte[] message = new byte[length];
+        int position = 0;
+        message[position++] = BINARY_DISCOVERY_TYPE;
+        message[position++] = (byte) ((discoveryMessage.initialDiscoveryMessage ? FLAG_INITIAL : 0) | (meshIdAsString ? FLAG_MESH_ID_AS_STRING : 0));
+
+        if (meshIdAsString) {
+            position = writeBytes(message, position, meshIdBytes);
+        } else {
+            long nodeNumber = Long.parseLong(meshId.substring(1), 16);
+            message[position++] = (byte) (nodeNumber >> 24);
+            message[position++] = (byte) (nodeNumber >> 16);
+            message[position++] = (byte) (nodeNumber >> 8);
+            message[position++] = (byte) nodeNumber;
+        }
+
+        position = writeVarint(message, position, uidHeader);
+        position = writeBytes(message, position, uidBytes);
+        writeBytes(message, position, callsignBytes);
+        return message;
+    }
+
+    /**
+     * @return null if the payload is truncated or malformed
+     */
+    @Nullable
+    public DiscoveryMessage decode(byte[] buffer, int offset) {
+        if (offset >= buffer.length) {
+            return null;
+        }
+
+        if (buffer[offset] == BINARY_DISCOVERY_TYPE) {
+            return decodeBinary(buffer, offset + 1);
+        }
+        return decodeLegacy(buffer, offset);
+    }
+
+    @Nullable
+    private DiscoveryMessage decodeBinary(byte[] buffer, int offset) {
+        if (offset >= buffer.length) {
+            return null;
+        }
+
+        int flags = buffer[offset] & 0xff;
+        int[] position = {offset + 1};
+
+        String meshId;
+        if ((flags & FLAG_MESH_ID_AS_STRING) != 0) {
+            meshId = readString(buffer, position);
+        } else {
+            if (position[0] + 4 > buffer.length) {
+                return null;
+            }
+            long nodeNumber = 0;
+            for (int i = 0; i < 4; i++) {
+                nodeNumber = nodeNumber << 8 | (buffer[position[0]++] & 0xff);
+            }
+            meshId = String.format("!%08x", nodeNumber);
+        }
+
+        int uidHeader = readVarint(buffer, position);
+        int uidLength = readVarint(buffer, position);
+        int prefixIndex = uidHeader >> 1;
+        if (meshId == null || uidHeader < 0 || uidLength < 0 || prefixIndex >= UID_PREFIXES.length || position[0] + uidLength > buffer.length) {
+            return null;
+        }
+        String uidRemainder = (uidHeader & 1) != 0
+                ? unpackHex(buffer, position[0], uidLength)
+                : new String(buffer, position[0], uidLength, StandardCharsets.UTF_8);
+        position[0] += uidLength;
+
+        String callsign = readString(buffer, position);
+        if (callsign == null) {
+            return null;
+        }
+
+        return new DiscoveryMessage(meshId, UID_PREFIXES[prefixIndex] + uidRemainder, callsign, (flags & FLAG_INITIAL) != 0);
+    }
+
+    @Nullable
+    private DiscoveryMessage decodeLegacy(byte[] buffer, int offset) {
+        String message = new String(buffer, offset, buffer.length - offset, StandardCharsets.UTF_8);
+        String[] messageSplit = message.split(LEGACY_SEPARATOR, -1);
+        if (messageSplit.length < LEGACY_FIELD_COUNT || !messageSplit[0].equals(ForwarderConstants.DISCOVERY_BROADCAST_MARKER)) {
+            return null;
+        }
+
+        return new DiscoveryMessage(messageSplit[1], messageSplit[2], messageSplit[3], messageSplit[4].equals("1"));
+    }
+
+    private boolean isNodeNumberMeshId(String meshId) {
+        if (meshId.length() != MESH_ID_HEX_LENGTH + 1 || meshId.charAt(0) != '!') {
+            return false;
+        }
+        return isLowercaseHex(meshId, 1);
+    }
+
+    private int findUidPrefix(String atakUid) {
+        int bestIndex = 0;
+        for (int i = 1; i < UID_PREFIXES.length; i++) {
+            if (atakUid.startsWith(UID_PREFIXES[i]) && UID_PREFIXES[i].length() > UID_PREFIXES[bestIndex].length()) {
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+
+    private boolean isPackableHex(String value) {
+        return value.length() > 0 && value.length() % 2 == 0 && isLowercaseHex(value, 0);
+    }
+
+    private boolean isLowercaseHex(String value, int start) {
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] packHex(String hex) {
+        byte[] packed = new byte[hex.length() / 2];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = (byte) (Character.digit(hex.charAt(i * 2), 16) << 4 | Character.digit(hex.charAt(i * 2 + 1), 16));
+        }
+        return packed;
+    }
+
+    private String unpackHex(byte[] buffer, int offset, int length) {
+        char[] hex = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = buffer[offset + i] & 0xff;
+            hex[i * 2] = HEX_DIGITS[b >> 4];
+            hex[i * 2 + 1] = HEX_DIGITS[b & 0x0f];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * @return null if the string runs off the end of the buffer
+     */
+    @Nullable
+    private String readString(byte[] buffer, int[] position) {
+        int length = readVarint(buffer, position);
+        if (length < 0 || position[0] + length > buffer.length) {
+            return null;
+        }
+
+        String value = new String(buffer, position[0], length, StandardCharsets.UTF_8);
+        position[0] += length;
+        return value;
+    }
+
+    private int writeBytes(byte[] buffer, int position, byte[] bytes) {
+        position = writeVarint(buffer, position, bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    private int varintLength(int value) {
+        int length = 1;
+        while ((value >>>= 7) != 0) {
+            length++;
+        }
+        return length;
+    }
+
+    private int writeVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * @return the decoded value, or -1 if the varint runs off the end of the buffer or is too long
+     */
+    private int readVarint(byte[] buffer, int[] position) {
+        int value = 0;
+        for (int shift = 0, i = 0; i < MAX_VARINT_BYTES; shift += 7, i++) {
+            if (position[0] >= buffer.length) {
+                return -1;
+            }
+
+            int b = buffer[position[0]++] & 0xff;
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+}
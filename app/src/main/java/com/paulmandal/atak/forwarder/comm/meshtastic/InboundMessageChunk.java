@@ -0,0 +1,14 @@
+package com.paulmandal.atak.forwarder.comm.meshtastic;
+
+public class InboundMessageChunk extends MessageChunk {
+    /**
+     * Sender-assigned id from an extended header, or ChunkFramer.NO_MESSAGE_ID for a legacy header
+     */
+    public final int messageId;
+
+    public InboundMessageChunk(int messageId, int index, int count, byte[] chunk, int offset, int length) {
+        super(index, count, chunk, offset, length);
+
+        this.messageId = messageId;
+    }
+}
@@ -0,0 +1,179 @@
+package com.paulmandal.atak.forwarder.comm.meshtastic;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import com.atakmap.android.maps.MapView;
+import com.geeksville.mesh.DataPacket;
+import com.geeksville.mesh.MessageStatus;
+import com.geeksville.mesh.Portnums;
+import com.paulmandal.atak.forwarder.ForwarderConstants;
+import com.paulmandal.atak.forwarder.comm.InboundExecutor;
+import com.paulmandal.atak.forwarder.helpers.Logger;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+
+import java.util.List;
+
+/**
+ * The plugin's only receiver for Meshtastic service Intents. Each Intent is unparcelled once on the inbound pool,
+ * classified by port number (and for forwarder packets by their first byte) and handed to the one handler for that
+ * kind of packet.
+ */
+public class MeshEventDispatcher extends BroadcastReceiver implements ConnectionStateHandler.Listener, Destroyable {
+    public interface ForwarderPacketHandler {
+        void onForwarderPacket(int packetId, String from, byte[] packet);
+    }
+
+    public interface DiscoveryPacketHandler {
+        void onDiscoveryPacket(String from, byte[] packet);
+    }
+
+    public interface TrackerPacketHandler {
+        void onTrackerPacket(int dataType, String from, byte[] packet);
+    }
+
+    public interface MessageStatusHandler {
+        void onMessageStatus(int packetId, MessageStatus status);
+    }
+
+    private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + MeshEventDispatcher.class.getSimpleName();
+
+    private final Context mAtakContext;
+    private final Logger mLogger;
+    private final InboundExecutor mInboundExecutor;
+    private final ChunkFramer mChunkFramer;
+    private final IntentFilter mIntentFilter;
+
+    private ForwarderPacketHandler mForwarderPacketHandler;
+    private DiscoveryPacketHandler mDiscoveryPacketHandler;
+    private TrackerPacketHandler mTrackerPacketHandler;
+    private MessageStatusHandler mMessageStatusHandler;
+
+    private ConnectionStateHandler.ConnectionState mConnectionState;
+    private boolean mReceiverRegistered;
+
+    public MeshEventDispatcher(Context atakContext,
+                               List<Destroyable> destroyables,
+                               Logger logger,
+                               ConnectionStateHandler connectionStateHandler,
+                               InboundExecutor inboundExecutor,
+                               ChunkFramer chunkFramer) {
+        mAtakContext = atakContext;
+        mLogger = logger;
+        mInboundExecutor = inboundExecutor;
+        mChunkFramer = chunkFramer;
+
+        IntentFilter intentFilter = new IntentFilter();
+        intentFilter.addAction(MeshServiceConstants.ACTION_RECEIVED_ATAK_FORWARDER);
+        intentFilter.addAction(MeshServiceConstants.ACTION_RECEIVED_POSITION_APP);
+        intentFilter.addAction(MeshServiceConstants.ACTION_RECEIVED_NODEINFO_APP);
+        intentFilter.addAction(MeshServiceConstants.ACTION_MESSAGE_STATUS);
+        mIntentFilter = intentFilter;
+
+        destroyables.add(this);
+        connectionStateHandler.addListener(this);
+    }
+
+    public void setForwarderPacketHandler(ForwarderPacketHandler handler) {
+        mForwarderPacketHandler = handler;
+    }
+
+    public void setDiscoveryPacketHandler(DiscoveryPacketHandler handler) {
+        mDiscoveryPacketHandler = handler;
+    }
+
+    public void setTrackerPacketHandler(TrackerPacketHandler handler) {
+        mTrackerPacketHandler = handler;
+    }
+
+    public void setMessageStatusHandler(MessageStatusHandler handler) {
+        mMessageStatusHandler = handler;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (mConnectionState != ConnectionStateHandler.ConnectionState.DEVICE_CONNECTED) {
+            return;
+        }
+
+        String action = intent.getAction();
+        if (action == null) {
+            return;
+        }
+
+        Runnable task = () -> dispatch(action, intent);
+        if (action.equals(MeshServiceConstants.ACTION_RECEIVED_POSITION_APP)) {
+            // Position updates are superseded by the next one
+            mInboundExecutor.executeDroppable(task);
+        } else {
+            mInboundExecutor.execute(task);
+        }
+    }
+
+    @Override
+    public void onConnectionStateChanged(ConnectionStateHandler.ConnectionState connectionState) {
+        mConnectionState = connectionState;
+
+        boolean connected = connectionState == ConnectionStateHandler.ConnectionState.DEVICE_CONNECTED;
+        if (!connected && mReceiverRegistered) {
+            mReceiverRegistered = false;
+            mAtakContext.unregisterReceiver(this);
+        } else if (connected && !mReceiverRegistered) {
+            mReceiverRegistered = true;
+            mAtakContext.registerReceiver(this, mIntentFilter);
+        }
+    }
+
+    @Override
+    public void onDestroy(Context context, MapView mapView) {
+        if (!mReceiverRegistered) {
+            return;
+        }
+        mReceiverRegistered = false;
+        mAtakContext.unregisterReceiver(this);
+    }
+
+    private void dispatch(String action, Intent intent) {
+        if (action.equals(MeshServiceConstants.ACTION_MESSAGE_STATUS)) {
+            int packetId = intent.getIntExtra(MeshServiceConstants.EXTRA_PACKET_ID, 0);
+            MessageStatus status = intent.getParcelableExtra(MeshServiceConstants.EXTRA_STATUS);
+            if (mMessageStatusHandler != null) {
+                mMessageStatusHandler.onMessageStatus(packetId, status);
+            }
+            return;
+        }
+
+        DataPacket payload = intent.getParcelableExtra(MeshServiceConstants.EXTRA_PAYLOAD);
+        if (payload == null) {
+            mLogger.e(TAG, "Dropping {} without a payload", action);
+            return;
+        }
+
+        int dataType = payload.getDataType();
+        byte[] packet = payload.getBytes();
+        if (packet == null) {
+            mLogger.e(TAG, "Dropping port {} packet without bytes from: {}", dataType, payload.getFrom());
+            return;
+        }
+
+        if (dataType == Portnums.PortNum.ATAK_FORWARDER_VALUE) {
+            if (mChunkFramer.isDiscoveryMessage(packet)) {
+                if (mDiscoveryPacketHandler != null) {
+                    mDiscoveryPacketHandler.onDiscoveryPacket(payload.getFrom(), packet);
+                }
+            } else if (mForwarderPacketHandler != null) {
+                mForwarderPacketHandler.onForwarderPacket(payload.getId(), payload.getFrom(), packet);
+            }
+        } else if (dataType == Portnums.PortNum.POSITION_APP_VALUE
+                || dataType == Portnums.PortNum.NODEINFO_APP_VALUE
+                || dataType == Portnums.PortNum.TELEMETRY_APP_VALUE) {
+            if (mTrackerPacketHandler != null) {
+                mTrackerPacketHandler.onTrackerPacket(dataType, payload.getFrom(), packet);
+            }
+        } else {
+            mLogger.v(TAG, "Ignoring packet on port: {}", dataType);
+        }
+    }
+}
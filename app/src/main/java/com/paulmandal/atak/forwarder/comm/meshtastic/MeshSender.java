@@ -1,7 +1,6 @@
 package com.paulmandal.atak.forwarder.comm.meshtastic;
 
 import android.content.Context;
-import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.RemoteException;
@@ -21,102 +20,174 @@ import com.paulmandal.atak.forwarder.plugin.Destroyable;
 import com.paulmandal.atak.forwarder.preferences.PreferencesDefaults;
 import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
 
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
-public class MeshSender extends MeshEventHandler implements ConnectionStateHandler.Listener, MeshServiceController.Listener, SharedPreferences.OnSharedPreferenceChangeListener {
+public class MeshSender implements ConnectionStateHandler.Listener, MeshServiceController.Listener, MeshEventDispatcher.MessageStatusHandler, SharedPreferences.OnSharedPreferenceChangeListener, Destroyable {
     public interface MessageAckNackListener {
         void onMessageAckNack(int messageId, boolean isAck);
         void onMessageTimedOut(int messageId);
     }
 
+    public interface SendCapacityListener {
+        /**
+         * Called with the sender's lock held, implementations should hand off any real work
+         */
+        void onSendCapacityAvailable();
+    }
+
+    public interface MessageFailedListener {
+        /**
+         * Called with the sender's lock held when a message is given up on or a chunk of it timed out waiting for a
+         * status, implementations should hand off any real work
+         *
+         * @param messageId the id returned by sendMessage()
+         */
+        void onMessageFailed(int messageId);
+    }
+
     private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + MeshSender.class.getSimpleName();
 
     private static final int WATCHDOG_TIMEOUT_MS = 900000; // 15 minutes
     private static final int WATCHDOG_RUN_INTERVAL_MINS = 1;
     private static final int REMOTE_EXCEPTION_RETRY_DELAY = 5000;
     private static final int DELAY_AFTER_SEND_ERROR_MS = 5000;
-    private static final int NO_ID = -1;
+    private static final int FULL_CHUNK_LENGTH = ForwarderConstants.MESHTASTIC_MESSAGE_CHUNK_LENGTH;
 
     private final SharedPreferences mSharedPreferences;
     private final Handler mUiThreadHandler;
+    private final Logger mLogger;
     private final MeshServiceController mMeshServiceController;
     private final UserTracker mUserTracker;
+    private final ChunkFramer mChunkFramer;
+    private final AirtimeScheduler mAirtimeScheduler;
     private final ScheduledExecutorService mExecutor;
 
     private final Set<MessageAckNackListener> mMessageAckNackListeners = new CopyOnWriteArraySet<>();
+    private final Set<SendCapacityListener> mSendCapacityListeners = new CopyOnWriteArraySet<>();
+    private final Set<MessageFailedListener> mMessageFailedListeners = new CopyOnWriteArraySet<>();
 
     private IMeshService mMeshService;
 
     private int mPliHopLimit;
     private int mChatHopLimit;
     private int mOtherHopLimit;
+    private int mSendWindowSize;
 
     private boolean mSendingMessage = false;
     private boolean mStateSaved = false;
+    private boolean mAirtimeRetryScheduled = false;
 
-    private final Queue<OutboundMessageChunk> mPendingMessageChunks = new LinkedList<>();
-    private final Queue<OutboundMessageChunk> mRestoreChunksAfterSuspend = new LinkedList<>();
+    private final Deque<OutboundMessageChunk> mPendingMessageChunks = new LinkedList<>();
+    private final Map<Integer, ChunkInFlight> mChunksInFlight = new LinkedHashMap<>();
 
     private final Object mSyncLock = new Object();
 
-    private long mLastMessageSentTime;
-    private int mPendingMessageId = NO_ID;
-    private OutboundMessageChunk mChunkInFlight;
+    private int mNextMessageId;
 
-    public MeshSender(Context atakContext,
-                      List<Destroyable> destroyables,
+    private long mMessagesSent;
+    private long mChunksSent;
+
+    public MeshSender(List<Destroyable> destroyables,
                       SharedPreferences sharedPreferences,
                       Handler uiThreadHandler,
                       Logger logger,
                       ConnectionStateHandler connectionStateHandler,
+                      MeshEventDispatcher meshEventDispatcher,
                       MeshServiceController meshServiceController,
                       UserTracker userTracker,
+                      ChunkFramer chunkFramer,
+                      AirtimeScheduler airtimeScheduler,
                       ScheduledExecutorService scheduledExecutorService) {
-        super(atakContext,
-                logger,
-                new String[]{
-                        MeshServiceConstants.ACTION_MESSAGE_STATUS
-                },
-                destroyables,
-                connectionStateHandler);
-
         mSharedPreferences = sharedPreferences;
         mUiThreadHandler = uiThreadHandler;
+        mLogger = logger;
         mMeshServiceController = meshServiceController;
         mUserTracker = userTracker;
+        mChunkFramer = chunkFramer;
+        mAirtimeScheduler = airtimeScheduler;
         mExecutor = scheduledExecutorService;
 
         sharedPreferences.registerOnSharedPreferenceChangeListener(this);
         meshServiceController.addListener(this);
         connectionStateHandler.addListener(this);
+        meshEventDispatcher.setMessageStatusHandler(this);
+        destroyables.add(this);
 
         startWatchdog();
 
         onSharedPreferenceChanged(sharedPreferences, PreferencesKeys.KEY_PLI_HOP_LIMIT);
+        onSharedPreferenceChanged(sharedPreferences, PreferencesKeys.KEY_SEND_WINDOW_SIZE);
     }
 
     public void addMessageAckNackListener(MessageAckNackListener listener) {
         mMessageAckNackListeners.add(listener);
     }
 
+    public void addSendCapacityListener(SendCapacityListener listener) {
+        mSendCapacityListeners.add(listener);
+    }
+
+    public void addMessageFailedListener(MessageFailedListener listener) {
+        mMessageFailedListeners.add(listener);
+    }
+
     public void sendDiscoveryMessage(BroadcastDiscoveryCommand broadcastDiscoveryCommand) {
         sendMessage(MessageType.PLI, broadcastDiscoveryCommand.discoveryMessage, null);
     }
 
-    public void sendMessage(SendMessageCommand sendMessageCommand) {
-        sendMessage(sendMessageCommand.messageType, sendMessageCommand.message, sendMessageCommand.toUIDs);
+    /**
+     * @return the id MessageFailedListeners will be called with, or ChunkFramer.NO_MESSAGE_ID if the message was dropped
+     */
+    public int sendMessage(SendMessageCommand sendMessageCommand) {
+        return sendMessage(sendMessageCommand.messageType, sendMessageCommand.message, sendMessageCommand.toUIDs);
     }
 
     public boolean isSendingMessage() {
         return mSendingMessage;
     }
 
+    /**
+     * @return true if a new message can be handed to the sender without waiting behind chunks that can't go out yet,
+     * while the airtime budget is used up commands stay in the CommandQueue where newer / higher priority ones can
+     * overtake them. Only one message is in flight at a time since legacy chunk headers don't say which message a
+     * chunk belongs to.
+     */
+    public boolean hasSendCapacity() {
+        synchronized (mSyncLock) {
+            return mPendingMessageChunks.isEmpty()
+                    && mChunksInFlight.isEmpty()
+                    && mAirtimeScheduler.getDelayUntilSendMs(FULL_CHUNK_LENGTH, System.currentTimeMillis()) == 0;
+        }
+    }
+
+    /**
+     * @return how many messages have been broken into chunks and queued for sending, counted once per recipient
+     */
+    public long getMessagesSent() {
+        synchronized (mSyncLock) {
+            return mMessagesSent;
+        }
+    }
+
+    /**
+     * @return how many chunks have been handed to the Meshtastic service, including retransmissions
+     */
+    public long getChunksSent() {
+        synchronized (mSyncLock) {
+            return mChunksSent;
+        }
+    }
+
     @Override
     public void onServiceConnectionStateChanged(MeshServiceController.ServiceConnectionState serviceConnectionState) {
         if (serviceConnectionState != MeshServiceController.ServiceConnectionState.CONNECTED) {
@@ -128,8 +199,6 @@ public class MeshSender extends MeshEventHandler implements ConnectionStateHandl
 
     @Override
     public void onConnectionStateChanged(ConnectionStateHandler.ConnectionState connectionState) {
-        super.onConnectionStateChanged(connectionState);
-
         if (connectionState != ConnectionStateHandler.ConnectionState.DEVICE_CONNECTED) {
             maybeSaveState();
         } else {
@@ -145,46 +214,63 @@ public class MeshSender extends MeshEventHandler implements ConnectionStateHandl
             mPliHopLimit = Integer.parseInt(sharedPreferences.getString(PreferencesKeys.KEY_PLI_HOP_LIMIT, PreferencesDefaults.DEFAULT_PLI_HOP_LIMIT));
             mChatHopLimit = Integer.parseInt(sharedPreferences.getString(PreferencesKeys.KEY_CHAT_HOP_LIMIT, PreferencesDefaults.DEFAULT_CHAT_HOP_LIMIT));
             mOtherHopLimit = Integer.parseInt(sharedPreferences.getString(PreferencesKeys.KEY_OTHER_HOP_LIMIT, PreferencesDefaults.DEFAULT_OTHER_HOP_LIMIT));
+        } else if (key.equals(PreferencesKeys.KEY_SEND_WINDOW_SIZE)) {
+            synchronized (mSyncLock) {
+                mSendWindowSize = Math.max(1, Integer.parseInt(sharedPreferences.getString(PreferencesKeys.KEY_SEND_WINDOW_SIZE, PreferencesDefaults.DEFAULT_SEND_WINDOW_SIZE)));
+                fillSendWindow();
+            }
         }
     }
 
     @Override
     public void onDestroy(Context context, MapView mapView) {
-        super.onDestroy(context, mapView);
         mExecutor.shutdown();
         mSharedPreferences.unregisterOnSharedPreferenceChangeListener(this);
     }
 
     @Override
-    protected void handleReceive(Context context, Intent intent) {
-        mLogger.v(TAG, "handleReceive: " + intent.getExtras().toString());
-        int id = intent.getIntExtra(MeshServiceConstants.EXTRA_PACKET_ID, 0);
-        MessageStatus status = intent.getParcelableExtra(MeshServiceConstants.EXTRA_STATUS);
-        handleMessageStatusChange(id, status);
+    public void onMessageStatus(int packetId, MessageStatus status) {
+        mLogger.v(TAG, "onMessageStatus(), id: {}, status: {}", packetId, status);
+        handleMessageStatusChange(packetId, status);
     }
 
     private void startWatchdog() {
         mLogger.v(TAG, "startWatchdog()");
         mExecutor.scheduleAtFixedRate(() -> {
             mLogger.v(TAG, "Watchdog checking for message status update timeout");
-            if (mPendingMessageId == NO_ID) {
-                mLogger.v(TAG, "  No pending message, exiting");
-                // Not waiting for a message status to change
-                return;
-            }
+            synchronized (mSyncLock) {
+                if (mChunksInFlight.isEmpty()) {
+                    mLogger.v(TAG, "  No pending messages, exiting");
+                    // Not waiting for a message status to change
+                    return;
+                }
+
+                long currentTime = System.currentTimeMillis();
+                List<Integer> timedOutIds = new ArrayList<>();
+                for (Map.Entry<Integer, ChunkInFlight> entry : mChunksInFlight.entrySet()) {
+                    long timeSinceLastSent = currentTime - entry.getValue().sentTime;
+                    mLogger.v(TAG, "  id: {}, time since last sent: {}", entry.getKey(), timeSinceLastSent);
+                    if (timeSinceLastSent > WATCHDOG_TIMEOUT_MS) {
+                        timedOutIds.add(entry.getKey());
+                    }
+                }
 
-            long timeSinceLastSent = System.currentTimeMillis() - mLastMessageSentTime;
-            mLogger.v(TAG, "  Time since last sent: " + timeSinceLastSent);
-            if (timeSinceLastSent > WATCHDOG_TIMEOUT_MS) {
-                mLogger.e(TAG, "Waiting over " + (WATCHDOG_TIMEOUT_MS / 60000) + " mins for a message status change, calling sendChunk() again");
-                sendChunk();
+                for (Integer id : timedOutIds) {
+                    ChunkInFlight chunkInFlight = mChunksInFlight.remove(id);
+                    mLogger.e(TAG, "Waiting over " + (WATCHDOG_TIMEOUT_MS / 60000) + " mins for a message status change for id: " + id + ", calling sendChunk() again");
+                    notifyMessageFailedListeners(chunkInFlight.chunk.messageId);
+                    if (!sendChunk(chunkInFlight.chunk)) {
+                        break;
+                    }
+                }
             }
         }, 0, WATCHDOG_RUN_INTERVAL_MINS, TimeUnit.MINUTES);
     }
 
     private void maybeSaveState() {
         synchronized (mSyncLock) {
-            if (mRestoreChunksAfterSuspend.size() > 0) {
+            requeueChunksInFlight();
+            if (mPendingMessageChunks.size() > 0) {
                 mStateSaved = true;
             }
         }
@@ -193,47 +279,44 @@ public class MeshSender extends MeshEventHandler implements ConnectionStateHandl
     private void maybeRestoreState() {
         synchronized (mSyncLock) {
             if (mStateSaved) {
-                mPendingMessageChunks.clear();
-                mPendingMessageChunks.addAll(mRestoreChunksAfterSuspend);
-                sendNextChunk();
                 mStateSaved = false;
+                fillSendWindow();
             }
         }
     }
 
-    private void sendMessage(MessageType messageType, byte[] message, String[] toUIDs) {
-        synchronized (mSyncLock) {
-            sendMessageInternal(messageType, message, toUIDs);
+    /**
+     * Puts every chunk that is still waiting for an ack back at the front of the pending queue, in the order they were sent
+     */
+    private void requeueChunksInFlight() {
+        List<ChunkInFlight> chunksInFlight = new ArrayList<>(mChunksInFlight.values());
+        mChunksInFlight.clear();
+
+        for (int i = chunksInFlight.size() - 1; i >= 0; i--) {
+            mPendingMessageChunks.addFirst(chunksInFlight.get(i).chunk);
         }
     }
 
-    private void sendMessageInternal(MessageType messageType, byte[] message, String[] toUIDs) {
-        mSendingMessage = true;
+    private int sendMessage(MessageType messageType, byte[] message, String[] toUIDs) {
+        synchronized (mSyncLock) {
+            return sendMessageInternal(messageType, message, toUIDs);
+        }
+    }
 
+    private int sendMessageInternal(MessageType messageType, byte[] message, String[] toUIDs) {
         int messageChunkLength = ForwarderConstants.MESHTASTIC_MESSAGE_CHUNK_LENGTH;
 
-        int chunks = (int) Math.ceil((double) message.length / (double) messageChunkLength);
+        int chunks = mChunkFramer.getChunkCount(message, messageChunkLength);
 
-        if (chunks > 15) {
-            mLogger.e(TAG, "Cannot break message into more than 15 pieces since we only have 1 byte for the header");
-            return;
+        if (chunks > ChunkFramer.MAX_CHUNKS) {
+            mLogger.e(TAG, "Cannot break message into more than " + ChunkFramer.MAX_CHUNKS + " pieces, dropping message of length: " + message.length);
+            return ChunkFramer.NO_MESSAGE_ID;
         }
 
-        mLogger.i(TAG, "sendMessageInternal(), message length: " + message.length + " chunks: " + chunks);
+        mLogger.i(TAG, "sendMessageInternal(), message length: {} chunks: {}", message.length, chunks);
 
-        byte[][] messages = new byte[chunks][];
-        for (int i = 0; i < chunks; i++) {
-            int start = i * messageChunkLength;
-            int end = Math.min((i + 1) * messageChunkLength, message.length);
-            int length = end - start;
-
-            messages[i] = new byte[length + 1];
-            messages[i][0] = (byte) (i << 4 | chunks);
-
-            for (int idx = 1, j = start; j < end; j++, idx++) {
-                messages[i][idx] = message[j];
-            }
-        }
+        int messageId = mNextMessageId++;
+        byte[][] messages = mChunkFramer.frame(messageId, message, messageChunkLength);
 
         if (toUIDs != null) {
             for (String uid : toUIDs) {
@@ -243,49 +326,90 @@ public class MeshSender extends MeshEventHandler implements ConnectionStateHandl
                     continue;
                 }
 
-                addChunksToQueues(messageType, messages, meshId);
+                addChunksToQueues(messageId, messageType, messages, meshId);
             }
         } else {
-            addChunksToQueues(messageType, messages, DataPacket.ID_BROADCAST);
+            addChunksToQueues(messageId, messageType, messages, DataPacket.ID_BROADCAST);
         }
 
-        sendNextChunk();
+        mSendingMessage = true;
+        fillSendWindow();
+        return messageId;
     }
 
-    private void addChunksToQueues(MessageType messageType, byte[][] chunks, String targetUid) {
+    private void addChunksToQueues(int messageId, MessageType messageType, byte[][] chunks, String targetUid) {
         int chunksLength = chunks.length;
         for (int i = 0; i < chunksLength; i++) {
             byte[] message = chunks[i];
-            OutboundMessageChunk outboundMessageChunk = new OutboundMessageChunk(messageType, i, chunksLength, message, targetUid);
+            OutboundMessageChunk outboundMessageChunk = new OutboundMessageChunk(messageId, messageType, i, chunksLength, message, targetUid);
             mPendingMessageChunks.add(outboundMessageChunk);
-            mRestoreChunksAfterSuspend.add(outboundMessageChunk);
         }
+        mMessagesSent++;
     }
 
-    private void sendNextChunk() {
-        mLogger.d(TAG, "  sendNextChunk()");
-        OutboundMessageChunk outboundMessageChunk = mPendingMessageChunks.poll();
+    /**
+     * Sends pending chunks until the send window is full, the next chunk belongs to a message other than the one in
+     * flight, or there is nothing left to send
+     */
+    private void fillSendWindow() {
+        mLogger.d(TAG, "  fillSendWindow(), in flight: {}/{}, pending: {}", mChunksInFlight.size(), mSendWindowSize, mPendingMessageChunks.size());
+        while (!mStateSaved && mChunksInFlight.size() < mSendWindowSize) {
+            OutboundMessageChunk outboundMessageChunk = mPendingMessageChunks.peek();
+
+            if (outboundMessageChunk == null || !canSendWithChunksInFlight(outboundMessageChunk)) {
+                break;
+            }
+
+            long airtimeDelayMs = mAirtimeScheduler.getDelayUntilSendMs(outboundMessageChunk.chunk.length, System.currentTimeMillis());
+            if (airtimeDelayMs > 0) {
+                scheduleAirtimeRetry(airtimeDelayMs);
+                return;
+            }
+
+            mPendingMessageChunks.poll();
+            if (!sendChunk(outboundMessageChunk)) {
+                break;
+            }
+        }
 
-        if (outboundMessageChunk == null) {
+        if (mSendingMessage && mPendingMessageChunks.isEmpty() && mChunksInFlight.isEmpty()) {
             // Done sending
-            mRestoreChunksAfterSuspend.clear();
             mSendingMessage = false;
             mLogger.i(TAG, "Done sending message");
-            return;
         }
 
-        mChunkInFlight = outboundMessageChunk;
+        if (!mStateSaved && mPendingMessageChunks.isEmpty() && mChunksInFlight.isEmpty()) {
+            long airtimeDelayMs = mAirtimeScheduler.getDelayUntilSendMs(FULL_CHUNK_LENGTH, System.currentTimeMillis());
+            if (airtimeDelayMs > 0) {
+                scheduleAirtimeRetry(airtimeDelayMs);
+            } else {
+                notifySendCapacityListeners();
+            }
+        }
+    }
+
+    private void scheduleAirtimeRetry(long delayMs) {
+        if (mAirtimeRetryScheduled) {
+            return;
+        }
 
-        sendChunk();
+        mLogger.i(TAG, "Airtime budget used up (" + mAirtimeScheduler.getAirtimeUsedMs(System.currentTimeMillis()) + "/" + mAirtimeScheduler.getAirtimeBudgetMs() + "ms), holding sends for " + delayMs + "ms");
+        mAirtimeRetryScheduled = true;
+        mExecutor.schedule(() -> {
+            synchronized (mSyncLock) {
+                mAirtimeRetryScheduled = false;
+                fillSendWindow();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
     }
 
-    private void sendChunk() {
+    private boolean sendChunk(OutboundMessageChunk outboundMessageChunk) {
         mLogger.d(TAG, "  sendChunk()");
 
-        int hopLimit = getHopLimit(mChunkInFlight.messageType);
+        int hopLimit = getHopLimit(outboundMessageChunk.messageType);
 
-        DataPacket dataPacket = new DataPacket(mChunkInFlight.targetUid,
-                mChunkInFlight.chunk,
+        DataPacket dataPacket = new DataPacket(outboundMessageChunk.targetUid,
+                outboundMessageChunk.chunk,
                 Portnums.PortNum.ATAK_FORWARDER.getNumber(),
                 DataPacket.ID_LOCAL,
                 System.currentTimeMillis(),
@@ -296,18 +420,24 @@ public class MeshSender extends MeshEventHandler implements ConnectionStateHandl
 
         try {
             mMeshService.send(dataPacket);
-            mLastMessageSentTime = System.currentTimeMillis();
-            mPendingMessageId = dataPacket.getId();
-            OutboundMessageChunk chunkInFlight = mChunkInFlight;
-
-            String chunkAsStr = new String(chunkInFlight.chunk).replace("\n", "").replace("\r", "");
-            mLogger.i(TAG, "---> Sent packet: " + chunkAsStr);
-            mLogger.i(TAG, "        messageChunk: " + (chunkInFlight.index + 1) + "/" + chunkInFlight.count + " to: " + chunkInFlight.targetUid + ", waiting for ack/nack id: " + mPendingMessageId);
+            int packetId = dataPacket.getId();
+            mAirtimeScheduler.recordTransmission(outboundMessageChunk.chunk.length, System.currentTimeMillis());
+            mChunksSent++;
+            mChunksInFlight.put(packetId, new ChunkInFlight(outboundMessageChunk, System.currentTimeMillis()));
+
+            if (mLogger.isLoggable(Logger.LOG_LEVEL_INFO)) {
+                String chunkAsStr = new String(outboundMessageChunk.chunk).replace("\n", "").replace("\r", "");
+                mLogger.i(TAG, "---> Sent packet: " + chunkAsStr);
+                mLogger.i(TAG, "        messageChunk: " + (outboundMessageChunk.index + 1) + "/" + outboundMessageChunk.count + " to: " + outboundMessageChunk.targetUid + ", waiting for ack/nack id: " + packetId);
+            }
+            return true;
         } catch (RemoteException e) {
+            mPendingMessageChunks.addFirst(outboundMessageChunk);
             maybeSaveState();
             mUiThreadHandler.postDelayed(this::maybeRestoreState, REMOTE_EXCEPTION_RETRY_DELAY);
             mLogger.e(TAG, "sendChunk(), RemoteException: " + e.getMessage());
             e.printStackTrace();
+            return false;
         }
     }
 
@@ -316,37 +446,103 @@ public class MeshSender extends MeshEventHandler implements ConnectionStateHandl
             notifyAckNackListeners(id, status);
         }
 
-        if (id != mPendingMessageId) {
-            mLogger.e(TAG, "  handleMessageStatusChange for a msg we don't care about messageId: " + id + " status: " + status + " (wanted: " + mPendingMessageId + ")");
-            return;
+        synchronized (mSyncLock) {
+            ChunkInFlight chunkInFlight = mChunksInFlight.get(id);
+            if (chunkInFlight == null) {
+                mLogger.e(TAG, "  handleMessageStatusChange for a msg we don't care about messageId: " + id + " status: " + status + " (in flight: " + mChunksInFlight.keySet() + ")");
+                return;
+            }
+
+            mLogger.i(TAG, "handleMessageStatusChange, got an ACK/NACK we're waiting for id: {}, status: {}", id, status);
+
+            OutboundMessageChunk outboundMessageChunk = chunkInFlight.chunk;
+            if (status == MessageStatus.DELIVERED || status == MessageStatus.RECEIVED) {
+                mChunksInFlight.remove(id);
+                fillSendWindow();
+            } else if (status == MessageStatus.QUEUED || status == MessageStatus.ENROUTE || status == MessageStatus.UNKNOWN) {
+                mLogger.i(TAG, "  Status is: {}, waiting for ERROR/DELIVERED", status);
+                // Do nothing, wait for delivered or error
+            } else if (outboundMessageChunk.messageType == MessageType.PLI) {
+                // Don't try to re-send PLI, drop the rest of this message and keep going
+                dropChunks(outboundMessageChunk);
+                notifyMessageFailedListeners(outboundMessageChunk.messageId);
+                fillSendWindow();
+            } else if (status == MessageStatus.ERROR) {
+                mLogger.i(TAG, "  Status is ERROR, resending chunk after " + DELAY_AFTER_SEND_ERROR_MS +  "ms");
+                // Leave the chunk in the window until it is resent so the retry doesn't get crowded out
+                mExecutor.schedule(() -> retransmitChunk(id), DELAY_AFTER_SEND_ERROR_MS, TimeUnit.MILLISECONDS);
+            } else {
+                mLogger.i(TAG, "We don't know how to handle status: " + status + " wait until there's a new status and hopefully we can handle that.");
+            }
         }
+    }
+
+    private void retransmitChunk(int id) {
+        synchronized (mSyncLock) {
+            ChunkInFlight chunkInFlight = mChunksInFlight.get(id);
+            if (chunkInFlight == null) {
+                // Already requeued by a disconnect or handled by the watchdog
+                return;
+            }
 
-        mLogger.i(TAG, "handleMessageStatusChange, got the message we ACK/NACK we're waiting for id: " + mPendingMessageId + ", status: " + status);
-
-        if (status == MessageStatus.DELIVERED || status == MessageStatus.RECEIVED) {
-            mPendingMessageId = NO_ID;
-            mChunkInFlight = null;
-            sendNextChunk();
-        } else if (status == MessageStatus.QUEUED || status == MessageStatus.ENROUTE || status == MessageStatus.UNKNOWN) {
-            mLogger.i(TAG, "  Status is: " + status + ", waiting for ERROR/DELIVERED");
-            // Do nothing, wait for delivered or error
-        } else if (mChunkInFlight.messageType == MessageType.PLI) {
-            // Don't try to re-send PLI, just keep going
-            mPendingMessageChunks.clear();
-            sendNextChunk();
-        } else if (status == MessageStatus.ERROR) {
-            mLogger.i(TAG, "  Status is ERROR, resending chunk after " + DELAY_AFTER_SEND_ERROR_MS +  "ms");
-            try {
-                Thread.sleep(DELAY_AFTER_SEND_ERROR_MS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+            long airtimeDelayMs = mAirtimeScheduler.getDelayUntilSendMs(chunkInFlight.chunk.chunk.length, System.currentTimeMillis());
+            if (airtimeDelayMs > 0) {
+                mExecutor.schedule(() -> retransmitChunk(id), airtimeDelayMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            mChunksInFlight.remove(id);
+
+            if (sendChunk(chunkInFlight.chunk)) {
+                fillSendWindow();
+            }
+        }
+    }
+
+    /**
+     * @return true if nothing is in flight or what is belongs to the same message as outboundMessageChunk
+     */
+    private boolean canSendWithChunksInFlight(OutboundMessageChunk outboundMessageChunk) {
+        for (ChunkInFlight chunkInFlight : mChunksInFlight.values()) {
+            if (!isSameMessage(chunkInFlight.chunk, outboundMessageChunk)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops every chunk of failedChunk's message, pending or in flight, acks for the in flight ones are ignored
+     */
+    private void dropChunks(OutboundMessageChunk failedChunk) {
+        Iterator<OutboundMessageChunk> pendingIterator = mPendingMessageChunks.iterator();
+        while (pendingIterator.hasNext()) {
+            if (isSameMessage(pendingIterator.next(), failedChunk)) {
+                pendingIterator.remove();
+            }
+        }
+
+        Iterator<ChunkInFlight> inFlightIterator = mChunksInFlight.values().iterator();
+        while (inFlightIterator.hasNext()) {
+            if (isSameMessage(inFlightIterator.next().chunk, failedChunk)) {
+                inFlightIterator.remove();
             }
-//            if (mChunkInFlight == null) { TODO: maybe we need this?
-//                return;
-//            }
-            sendChunk();
-        } else {
-            mLogger.i(TAG, "We don't know how to handle status: " + status + " wait until there's a new status and hopefully we can handle that.");
+        }
+    }
+
+    private boolean isSameMessage(OutboundMessageChunk a, OutboundMessageChunk b) {
+        return a.messageId == b.messageId && a.targetUid.equals(b.targetUid);
+    }
+
+    private void notifySendCapacityListeners() {
+        for (SendCapacityListener sendCapacityListener : mSendCapacityListeners) {
+            sendCapacityListener.onSendCapacityAvailable();
+        }
+    }
+
+    private void notifyMessageFailedListeners(int messageId) {
+        for (MessageFailedListener messageFailedListener : mMessageFailedListeners) {
+            messageFailedListener.onMessageFailed(messageId);
         }
     }
 
@@ -366,4 +562,14 @@ public class MeshSender extends MeshEventHandler implements ConnectionStateHandl
         }
         return mOtherHopLimit;
     }
+
+    private static class ChunkInFlight {
+        public final OutboundMessageChunk chunk;
+        public final long sentTime;
+
+        public ChunkInFlight(OutboundMessageChunk chunk, long sentTime) {
+            this.chunk = chunk;
+            this.sentTime = sentTime;
+        }
+    }
 }
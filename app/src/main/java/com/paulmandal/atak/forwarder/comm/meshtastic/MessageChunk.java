@@ -4,10 +4,21 @@ public class MessageChunk {
     public final int index;
     public final int count;
     public final byte[] chunk;
+    public final int offset;
+    public final int length;
 
     public MessageChunk(int index, int count, byte[] chunk) {
+        this(index, count, chunk, 0, chunk.length);
+    }
+
+    /**
+     * For a chunk that lives inside a larger buffer, e.g. a received packet that still has its header
+     */
+    public MessageChunk(int index, int count, byte[] chunk, int offset, int length) {
         this.index = index;
         this.count = count;
         this.chunk = chunk;
+        this.offset = offset;
+        this.length = length;
     }
-}
\ No newline at end of file
+}
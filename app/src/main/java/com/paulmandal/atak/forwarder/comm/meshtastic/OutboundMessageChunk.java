@@ -3,12 +3,14 @@ package com.paulmandal.atak.forwarder.comm.meshtastic;
 import com.paulmandal.atak.forwarder.comm.MessageType;
 
 public class OutboundMessageChunk extends MessageChunk {
+    public final int messageId;
     public final MessageType messageType;
     public final String targetUid;
 
-    public OutboundMessageChunk(MessageType messageType, int index, int count, byte[] chunk, String targetUid) {
+    public OutboundMessageChunk(int messageId, MessageType messageType, int index, int count, byte[] chunk, String targetUid) {
         super(index, count, chunk);
 
+        this.messageId = messageId;
         this.messageType = messageType;
         this.targetUid = targetUid;
     }
@@ -0,0 +1,198 @@
+package com.paulmandal.atak.forwarder.comm.meshtastic;
+
+import androidx.annotation.Nullable;
+
+import com.paulmandal.atak.forwarder.ForwarderConstants;
+import com.paulmandal.atak.forwarder.helpers.Logger;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Partially received messages, keyed by sender and message id. Chunks can arrive in any order; a message completes as
+ * soon as every index has been seen. Entries expire if no chunk arrives for INCOMPLETE_MESSAGE_TIMEOUT_MS and the
+ * oldest entries are evicted when a sender or the table as a whole holds too much, so a lossy link can't leak memory.
+ *
+ * Legacy headers carry no message id so each sender only gets one legacy entry; a chunk that doesn't fit it (different
+ * count, or an index it already holds) means the rest of that message was lost and starts a new one.
+ */
+public class ReassemblyTable {
+    private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + ReassemblyTable.class.getSimpleName();
+
+    private static final long INCOMPLETE_MESSAGE_TIMEOUT_MS = 120000;
+    private static final int MAX_PARTIAL_MESSAGES_PER_SENDER = 4;
+    private static final int MAX_BUFFERED_BYTES = 256 * 1024;
+
+    private final Logger mLogger;
+    private final ChunkFramer mChunkFramer;
+
+    // Ordered from least to most recently updated
+    private final LinkedHashMap<String, PartialMessage> mPartialMessages = new LinkedHashMap<>();
+    private final Map<String, Integer> mPartialMessageCountBySender = new HashMap<>();
+    private int mBufferedBytes;
+
+    private long mExpiredMessages;
+    private long mEvictedMessages;
+
+    public ReassemblyTable(Logger logger, ChunkFramer chunkFramer) {
+        mLogger = logger;
+        mChunkFramer = chunkFramer;
+    }
+
+    /**
+     * @return the re-assembled message if this chunk completed it, otherwise null
+     */
+    @Nullable
+    public synchronized byte[] addChunk(String senderId, InboundMessageChunk messageChunk, long currentTime) {
+        expireIncompleteMessages(currentTime);
+
+        String key = senderId + "#" + messageChunk.messageId;
+        PartialMessage partialMessage = mPartialMessages.get(key);
+
+        boolean legacy = messageChunk.messageId == ChunkFramer.NO_MESSAGE_ID;
+        if (partialMessage != null && partialMessage.count != messageChunk.count) {
+            if (!legacy) {
+                // Rejected, so the entry keeps its place in the update order
+                mLogger.e(TAG, "Dropping chunk with count: " + messageChunk.count + " for message from: " + senderId + " with count: " + partialMessage.count);
+                return null;
+            }
+
+            mLogger.e(TAG, "Discarding incomplete legacy message from: " + senderId + ", have: " + partialMessage.receivedCount + "/" + partialMessage.count);
+            mPartialMessages.remove(key);
+            discard(partialMessage);
+            partialMessage = null;
+        } else if (partialMessage != null && legacy && partialMessage.received.get(messageChunk.index)) {
+            // Chunks are only resent after the radio reports they failed, so this is the next message with the same count
+            mLogger.e(TAG, "Discarding incomplete legacy message from: " + senderId + ", have: " + partialMessage.receivedCount + "/" + partialMessage.count + ", index " + messageChunk.index + " repeated");
+            mPartialMessages.remove(key);
+            discard(partialMessage);
+            partialMessage = null;
+        }
+
+        if (partialMessage == null) {
+            partialMessage = new PartialMessage(senderId, messageChunk.count);
+            incrementSenderCount(senderId);
+        }
+
+        // Move to the end so the map stays ordered by lastUpdatedTime
+        mPartialMessages.remove(key);
+        mPartialMessages.put(key, partialMessage);
+        partialMessage.lastUpdatedTime = currentTime;
+
+        if (partialMessage.received.get(messageChunk.index)) {
+            mLogger.v(TAG, "Ignoring duplicate chunk: {}/{} from: {}", messageChunk.index + 1, messageChunk.count, senderId);
+            return null;
+        }
+
+        partialMessage.pieces[messageChunk.index] = messageChunk;
+        partialMessage.received.set(messageChunk.index);
+        partialMessage.receivedCount++;
+        partialMessage.bufferedBytes += messageChunk.length;
+        mBufferedBytes += messageChunk.length;
+
+        if (partialMessage.receivedCount < partialMessage.count) {
+            mLogger.v(TAG, "Waiting for chunks, have: {}/{} from: {}", partialMessage.receivedCount, partialMessage.count, senderId);
+            enforceLimits(senderId, key);
+            return null;
+        }
+
+        // Message complete!
+        mPartialMessages.remove(key);
+        discard(partialMessage);
+        return mChunkFramer.reassemble(partialMessage.pieces);
+    }
+
+    public synchronized int getPartialMessageCount() {
+        return mPartialMessages.size();
+    }
+
+    public synchronized int getBufferedBytes() {
+        return mBufferedBytes;
+    }
+
+    public synchronized long getExpiredMessages() {
+        return mExpiredMessages;
+    }
+
+    public synchronized long getEvictedMessages() {
+        return mEvictedMessages;
+    }
+
+    private void expireIncompleteMessages(long currentTime) {
+        Iterator<PartialMessage> iterator = mPartialMessages.values().iterator();
+        while (iterator.hasNext()) {
+            PartialMessage partialMessage = iterator.next();
+            if (currentTime - partialMessage.lastUpdatedTime < INCOMPLETE_MESSAGE_TIMEOUT_MS) {
+                // Everything after this was updated more recently
+                break;
+            }
+
+            mLogger.e(TAG, "Expiring incomplete message from: " + partialMessage.senderId + ", have: " + partialMessage.receivedCount + "/" + partialMessage.count);
+            iterator.remove();
+            discard(partialMessage);
+            mExpiredMessages++;
+        }
+    }
+
+    private void enforceLimits(String senderId, String keyToKeep) {
+        Iterator<Map.Entry<String, PartialMessage>> iterator = mPartialMessages.entrySet().iterator();
+        while (iterator.hasNext() && (mBufferedBytes > MAX_BUFFERED_BYTES || getSenderCount(senderId) > MAX_PARTIAL_MESSAGES_PER_SENDER)) {
+            Map.Entry<String, PartialMessage> entry = iterator.next();
+            PartialMessage partialMessage = entry.getValue();
+            if (entry.getKey().equals(keyToKeep)) {
+                continue;
+            }
+
+            boolean overSenderLimit = getSenderCount(senderId) > MAX_PARTIAL_MESSAGES_PER_SENDER;
+            if (mBufferedBytes <= MAX_BUFFERED_BYTES && overSenderLimit && !partialMessage.senderId.equals(senderId)) {
+                continue;
+            }
+
+            mLogger.e(TAG, "Evicting incomplete message from: " + partialMessage.senderId + ", have: " + partialMessage.receivedCount + "/" + partialMessage.count + ", buffered bytes: " + mBufferedBytes);
+            iterator.remove();
+            discard(partialMessage);
+            mEvictedMessages++;
+        }
+    }
+
+    private void discard(PartialMessage partialMessage) {
+        mBufferedBytes -= partialMessage.bufferedBytes;
+
+        int senderCount = getSenderCount(partialMessage.senderId) - 1;
+        if (senderCount > 0) {
+            mPartialMessageCountBySender.put(partialMessage.senderId, senderCount);
+        } else {
+            mPartialMessageCountBySender.remove(partialMessage.senderId);
+        }
+    }
+
+    private void incrementSenderCount(String senderId) {
+        mPartialMessageCountBySender.put(senderId, getSenderCount(senderId) + 1);
+    }
+
+    private int getSenderCount(String senderId) {
+        Integer count = mPartialMessageCountBySender.get(senderId);
+        return count != null ? count : 0;
+    }
+
+    private static class PartialMessage {
+        public final String senderId;
+        public final int count;
+        public final MessageChunk[] pieces;
+        public final BitSet received;
+
+        public int receivedCount;
+        public int bufferedBytes;
+        public long lastUpdatedTime;
+
+        public PartialMessage(String senderId, int count) {
+            this.senderId = senderId;
+            this.count = count;
+            this.pieces = new MessageChunk[count];
+            this.received = new BitSet(count);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import android.os.Handler;
 
 import androidx.annotation.Nullable;
 
+import com.atakmap.coremap.cot.event.CotEvent;
 import com.paulmandal.atak.forwarder.ForwarderConstants;
 import com.paulmandal.atak.forwarder.comm.MessageType;
 import com.paulmandal.atak.forwarder.comm.queue.commands.CommandType;
@@ -12,9 +13,18 @@ import com.paulmandal.atak.forwarder.comm.queue.commands.SendMessageCommand;
 import com.paulmandal.atak.forwarder.cotutils.CotComparer;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.Map;
+import java.util.PriorityQueue;
 
+/**
+ * Commands are kept in a heap ordered by (priority desc, queuedTime asc, insertion order) so popping is O(log n).
+ *
+ * SendMessageCommands are also indexed by CoT UID + type + recipients, so finding a queued command to overwrite only
+ * has to compare against the handful of commands for the same object instead of the whole queue.
+ */
 public class CommandQueue {
     private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + CommandQueue.class.getSimpleName();
 
@@ -22,19 +32,44 @@ public class CommandQueue {
         void onMessageQueueSizeChanged(int size);
     }
 
+    public interface CommandQueuedListener {
+        /**
+         * Called on the thread that queued the command, implementations should hand off any real work
+         */
+        void onCommandQueued();
+    }
+
+    private static final Comparator<HeapEntry> HEAP_ORDER = (HeapEntry lhs, HeapEntry rhs) -> {
+        if (lhs.command.priority != rhs.command.priority) {
+            return Integer.compare(rhs.command.priority, lhs.command.priority);
+        }
+
+        if (lhs.command.queuedTime != rhs.command.queuedTime) {
+            return Long.compare(lhs.command.queuedTime, rhs.command.queuedTime);
+        }
+
+        return Long.compare(lhs.sequence, rhs.sequence);
+    };
+
     private final Handler mHandler;
 
     private final CotComparer mCotComparer;
 
-    private final List<QueuedCommand> mQueuedCommands;
-    private Listener mListener;
+    private final Object mSyncLock = new Object();
+    private final PriorityQueue<HeapEntry> mQueuedCommands = new PriorityQueue<>(11, HEAP_ORDER);
+    private final Map<String, List<SendMessageCommand>> mSimilarCommandIndex = new HashMap<>();
+    private int mQueuedDiscoveryCommands;
+    private long mNextSequence;
+
+    private long mSendMessagesQueued;
+    private long mSendMessagesCoalesced;
 
-    private CountDownLatch mCountDownLatch;
+    private Listener mListener;
+    private CommandQueuedListener mCommandQueuedListener;
 
     public CommandQueue(Handler uiThreadHandler, CotComparer cotComparer) {
         mHandler = uiThreadHandler;
         mCotComparer = cotComparer;
-        mQueuedCommands =  new ArrayList<>();
     }
 
     public void queueCommand(QueuedCommand commandToQueue) {
@@ -42,44 +77,51 @@ public class CommandQueue {
             throw new IllegalArgumentException("Use queueSendMessage() for SendMessageCommands");
         }
 
-        synchronized (mQueuedCommands) {
-            for (QueuedCommand queuedCommand : mQueuedCommands) {
-                if (commandToQueue.commandType == queuedCommand.commandType) {
-                    // Do not create duplicates for broadcasting discovery
-                    if (commandToQueue.commandType == CommandType.BROADCAST_DISCOVERY_MSG) {
-                        return;
-                    }
+        synchronized (mSyncLock) {
+            if (commandToQueue.commandType == CommandType.BROADCAST_DISCOVERY_MSG) {
+                // Do not create duplicates for broadcasting discovery
+                if (mQueuedDiscoveryCommands > 0) {
+                    return;
                 }
+                mQueuedDiscoveryCommands++;
             }
 
-            mQueuedCommands.add(commandToQueue);
+            mQueuedCommands.add(new HeapEntry(commandToQueue, mNextSequence++));
         }
 
-        releaseLatch();
+        notifyCommandQueuedListener();
     }
 
     public void queueSendMessage(SendMessageCommand sendMessageCommand, boolean overwriteSimilar) {
         int messageQueueSize;
-        synchronized (mQueuedCommands) {
-            if (overwriteSimilar) {
-                for (QueuedCommand queuedCommand : mQueuedCommands) {
-                    if (queuedCommand instanceof SendMessageCommand) {
-                        SendMessageCommand queuedSendMessageCommand = (SendMessageCommand)queuedCommand;
-                        if (mCotComparer.areCotEventsEqual(sendMessageCommand.cotEvent, queuedSendMessageCommand.cotEvent)
-                                || MessageType.fromCotEventType(queuedSendMessageCommand.cotEvent.getType()) == MessageType.PLI
-                                && mCotComparer.areUidsEqual(sendMessageCommand.toUIDs, queuedSendMessageCommand.toUIDs)) {
-                            queuedSendMessageCommand.takeStateFrom(sendMessageCommand);
-                            return;
-                        }
+        synchronized (mSyncLock) {
+            String similarityKey = similarityKey(sendMessageCommand);
+            List<SendMessageCommand> similarCommands = mSimilarCommandIndex.get(similarityKey);
+
+            if (overwriteSimilar && similarCommands != null) {
+                boolean isPli = MessageType.fromCotEventType(sendMessageCommand.cotEvent.getType()) == MessageType.PLI;
+                for (SendMessageCommand queuedSendMessageCommand : similarCommands) {
+                    // Everything in this bucket has the same UID, type and recipients, so any queued PLI is superseded
+                    if (isPli || mCotComparer.areCotEventsEqual(sendMessageCommand.cotEvent, queuedSendMessageCommand.cotEvent)) {
+                        queuedSendMessageCommand.takeStateFrom(sendMessageCommand);
+                        mSendMessagesCoalesced++;
+                        return;
                     }
                 }
             }
 
-            mQueuedCommands.add(sendMessageCommand);
+            if (similarCommands == null) {
+                similarCommands = new ArrayList<>(1);
+                mSimilarCommandIndex.put(similarityKey, similarCommands);
+            }
+            similarCommands.add(sendMessageCommand);
+
+            mQueuedCommands.add(new HeapEntry(sendMessageCommand, mNextSequence++));
+            mSendMessagesQueued++;
             messageQueueSize = mQueuedCommands.size();
         }
 
-        releaseLatch();
+        notifyCommandQueuedListener();
 
         notifyListener(messageQueueSize);
     }
@@ -93,68 +135,106 @@ public class CommandQueue {
 
         QueuedCommand highestPriorityCommand = null;
         int messageQueueSize = 0;
-        boolean messageQueueSizeChanged = false;
-        synchronized (mQueuedCommands) {
-            for (QueuedCommand queuedCommand : mQueuedCommands) {
-
-//                if (!isConnected && (queuedCommand.commandType == CommandType.BROADCAST_DISCOVERY_MSG
-//                        || queuedCommand.commandType == CommandType.SEND_TO_INDIVIDUAL
-//                        || queuedCommand.commandType == CommandType.SEND_TO_CHANNEL)) {
-//                    // Ignore commands that require connectivity
-//                    continue;
-//                }
-//
-                if (highestPriorityCommand == null
-                        || queuedCommand.priority > highestPriorityCommand.priority
-                        || (queuedCommand.priority == highestPriorityCommand.priority
-                        && queuedCommand.queuedTime < highestPriorityCommand.queuedTime)) {
-                    highestPriorityCommand = queuedCommand;
-                }
-            }
+        synchronized (mSyncLock) {
+            HeapEntry heapEntry = mQueuedCommands.poll();
 
-            if (highestPriorityCommand != null) {
-                mQueuedCommands.remove(highestPriorityCommand);
+            if (heapEntry != null) {
+                highestPriorityCommand = heapEntry.command;
+                removeFromIndex(highestPriorityCommand);
                 messageQueueSize = mQueuedCommands.size();
-                messageQueueSizeChanged = true;
             }
         }
 
-        if (messageQueueSizeChanged) {
+        if (highestPriorityCommand != null) {
             notifyListener(messageQueueSize);
         }
 
-        if (highestPriorityCommand == null) {
-            if (mCountDownLatch == null) {
-                mCountDownLatch = new CountDownLatch(1);
-            }
-
-            try {
-                mCountDownLatch.await();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
-
         return highestPriorityCommand;
     }
 
     public void clearData() {
         int messageQueueSize;
-        synchronized (mQueuedCommands) {
+        synchronized (mSyncLock) {
             mQueuedCommands.clear();
+            mSimilarCommandIndex.clear();
+            mQueuedDiscoveryCommands = 0;
             messageQueueSize = mQueuedCommands.size();
         }
         notifyListener(messageQueueSize);
     }
 
+    public int getQueueSize() {
+        synchronized (mSyncLock) {
+            return mQueuedCommands.size();
+        }
+    }
+
+    /**
+     * @return how many SendMessageCommands were added to the queue as new entries
+     */
+    public long getSendMessagesQueued() {
+        synchronized (mSyncLock) {
+            return mSendMessagesQueued;
+        }
+    }
+
+    /**
+     * @return how many SendMessageCommands were folded into an already queued similar command instead of being added
+     */
+    public long getSendMessagesCoalesced() {
+        synchronized (mSyncLock) {
+            return mSendMessagesCoalesced;
+        }
+    }
+
     public void setListener(Listener listener) {
         mListener = listener;
     }
 
-    private void releaseLatch() {
-        if (mCountDownLatch != null) {
-            mCountDownLatch.countDown();
-            mCountDownLatch = null;
+    public void setCommandQueuedListener(CommandQueuedListener commandQueuedListener) {
+        mCommandQueuedListener = commandQueuedListener;
+    }
+
+    private void removeFromIndex(QueuedCommand queuedCommand) {
+        if (queuedCommand.commandType == CommandType.BROADCAST_DISCOVERY_MSG) {
+            mQueuedDiscoveryCommands--;
+            return;
+        }
+
+        if (!(queuedCommand instanceof SendMessageCommand)) {
+            return;
+        }
+
+        SendMessageCommand sendMessageCommand = (SendMessageCommand) queuedCommand;
+        String similarityKey = similarityKey(sendMessageCommand);
+        List<SendMessageCommand> similarCommands = mSimilarCommandIndex.get(similarityKey);
+        if (similarCommands == null) {
+            return;
+        }
+
+        similarCommands.remove(sendMessageCommand);
+        if (similarCommands.isEmpty()) {
+            mSimilarCommandIndex.remove(similarityKey);
+        }
+    }
+
+    private String similarityKey(SendMessageCommand sendMessageCommand) {
+        CotEvent cotEvent = sendMessageCommand.cotEvent;
+        StringBuilder sb = new StringBuilder();
+        sb.append(cotEvent.getUID()).append('|').append(cotEvent.getType()).append('|');
+        if (sendMessageCommand.toUIDs != null) {
+            for (String uid : sendMessageCommand.toUIDs) {
+                sb.append(uid).append(',');
+            }
+        } else {
+            sb.append('*');
+        }
+        return sb.toString();
+    }
+
+    private void notifyCommandQueuedListener() {
+        if (mCommandQueuedListener != null) {
+            mCommandQueuedListener.onCommandQueued();
         }
     }
 
@@ -163,4 +243,14 @@ public class CommandQueue {
             mHandler.post(() -> mListener.onMessageQueueSizeChanged(messageQueueSize));
         }
     }
+
+    private static class HeapEntry {
+        public final QueuedCommand command;
+        public final long sequence;
+
+        public HeapEntry(QueuedCommand command, long sequence) {
+            this.command = command;
+            this.sequence = sequence;
+        }
+    }
 }
@@ -12,6 +12,22 @@ import java.util.List;
 
 public class CotComparer {
     public boolean areCotEventsEqual(CotEvent lhs, CotEvent rhs) {
+        return areCotEventsDeepEqual(lhs, rhs);
+    }
+
+    /**
+     * For events that already have CotFingerprinter fingerprints. Different fingerprints can only come from different
+     * events, matching fingerprints still get a full comparison in case of a hash collision.
+     */
+    public boolean areCotEventsEqual(CotEvent lhs, long lhsFingerprint, CotEvent rhs, long rhsFingerprint) {
+        if (lhsFingerprint != rhsFingerprint) {
+            return false;
+        }
+
+        return areCotEventsDeepEqual(lhs, rhs);
+    }
+
+    private boolean areCotEventsDeepEqual(CotEvent lhs, CotEvent rhs) {
         if (!areCotDetailsEqual(lhs.getDetail(), rhs.getDetail())) {
             return false;
         }
@@ -0,0 +1,113 @@
+package com.paulmandal.atak.forwarder.cotutils;
+
+import androidx.annotation.Nullable;
+
+import com.atakmap.coremap.cot.event.CotAttribute;
+import com.atakmap.coremap.cot.event.CotDetail;
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotPoint;
+
+import java.util.List;
+
+/**
+ * Computes a 64-bit FNV-1a hash over the same fields CotComparer looks at. Events that CotComparer considers equal
+ * always have the same fingerprint, so a fingerprint can be used as a hash key with CotComparer as the tie-breaker.
+ *
+ * Fingerprinting walks the whole detail tree, so the outbound path fingerprints each event once and passes the value
+ * along rather than asking again.
+ */
+public class CotFingerprinter {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final int NULL_LENGTH = -1;
+
+    /**
+     * Ignores time/start/stale, like CotComparer
+     */
+    public long fingerprint(CotEvent cotEvent) {
+        long hash = FNV_OFFSET_BASIS;
+
+        hash = hashDetail(hash, cotEvent.getDetail());
+        hash = hashString(hash, cotEvent.getAccess());
+        hash = hashPoint(hash, cotEvent.getCotPoint());
+        hash = hashString(hash, cotEvent.getHow());
+        hash = hashString(hash, cotEvent.getOpex());
+        hash = hashString(hash, cotEvent.getQos());
+        hash = hashString(hash, cotEvent.getType());
+        hash = hashString(hash, cotEvent.getUID());
+        hash = hashString(hash, cotEvent.getVersion());
+
+        return hash;
+    }
+
+    private long hashDetail(long hash, @Nullable CotDetail cotDetail) {
+        if (cotDetail == null) {
+            return hashInt(hash, NULL_LENGTH);
+        }
+
+        hash = hashString(hash, cotDetail.getElementName());
+        hash = hashString(hash, cotDetail.getInnerText());
+
+        CotAttribute[] cotAttributes = cotDetail.getAttributes();
+        hash = hashInt(hash, cotAttributes.length);
+        for (CotAttribute cotAttribute : cotAttributes) {
+            hash = hashString(hash, cotAttribute.getName());
+            hash = hashString(hash, cotAttribute.getValue());
+        }
+
+        List<CotDetail> children = cotDetail.getChildren();
+        int childCount = children.size();
+        hash = hashInt(hash, childCount);
+        for (int i = 0; i < childCount; i++) {
+            hash = hashDetail(hash, children.get(i));
+        }
+
+        return hash;
+    }
+
+    private long hashPoint(long hash, @Nullable CotPoint cotPoint) {
+        if (cotPoint == null) {
+            return hashInt(hash, NULL_LENGTH);
+        }
+
+        hash = hashDouble(hash, cotPoint.getCe());
+        hash = hashDouble(hash, cotPoint.getHae());
+        hash = hashDouble(hash, cotPoint.getLat());
+        hash = hashDouble(hash, cotPoint.getLon());
+        hash = hashDouble(hash, cotPoint.getLe());
+
+        return hash;
+    }
+
+    private long hashString(long hash, @Nullable String value) {
+        if (value == null) {
+            return hashInt(hash, NULL_LENGTH);
+        }
+
+        // Length prefix keeps adjacent fields from running into each other, e.g. ("ab", "c") vs ("a", "bc")
+        int length = value.length();
+        hash = hashInt(hash, length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    private long hashDouble(long hash, double value) {
+        // CotComparer compares with ==, so 0.0 and -0.0 need to hash the same
+        long bits = value == 0.0 ? 0L : Double.doubleToLongBits(value);
+        hash = hashInt(hash, (int) bits);
+        return hashInt(hash, (int) (bits >>> 32));
+    }
+
+    private long hashInt(long hash, int value) {
+        hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+        hash = (hash ^ ((value >>> 8) & 0xff)) * FNV_PRIME;
+        hash = (hash ^ ((value >>> 16) & 0xff)) * FNV_PRIME;
+        return (hash ^ (value >>> 24)) * FNV_PRIME;
+    }
+}
@@ -1,6 +1,9 @@
 package com.paulmandal.atak.forwarder.factories;
 
 import com.atakmap.android.cot.CotMapComponent;
+import com.paulmandal.atak.forwarder.comm.InboundExecutor;
+import com.paulmandal.atak.forwarder.comm.PayloadCompressor;
+import com.paulmandal.atak.forwarder.comm.PliDeltaDecoder;
 import com.paulmandal.atak.forwarder.comm.meshtastic.InboundMeshMessageHandler;
 import com.paulmandal.atak.forwarder.handlers.InboundMessageHandler;
 import com.paulmandal.atak.forwarder.helpers.Logger;
@@ -9,8 +12,11 @@ import com.paulmandal.atak.libcotshrink.pub.api.CotShrinker;
 public class MessageHandlerFactory {
     public static InboundMessageHandler getInboundMessageHandler(InboundMeshMessageHandler inboundMeshMessageHandler,
                                                                  CotShrinker cotShrinker,
+                                                                 PliDeltaDecoder pliDeltaDecoder,
+                                                                 PayloadCompressor payloadCompressor,
                                                                  InboundMessageHandler.InboundPliListener inboundPliListener,
+                                                                 InboundExecutor inboundExecutor,
                                                                  Logger logger) {
-        return new InboundMessageHandler(CotMapComponent.getInternalDispatcher(), CotMapComponent.getExternalDispatcher(), inboundMeshMessageHandler, cotShrinker, inboundPliListener, logger);
+        return new InboundMessageHandler(CotMapComponent.getInternalDispatcher(), CotMapComponent.getExternalDispatcher(), inboundMeshMessageHandler, cotShrinker, pliDeltaDecoder, payloadCompressor, inboundPliListener, inboundExecutor, logger);
     }
 }
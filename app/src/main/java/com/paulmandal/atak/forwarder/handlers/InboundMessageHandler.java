@@ -3,7 +3,10 @@ package com.paulmandal.atak.forwarder.handlers;
 import com.atakmap.comms.CotDispatcher;
 import com.atakmap.coremap.cot.event.CotEvent;
 import com.paulmandal.atak.forwarder.ForwarderConstants;
+import com.paulmandal.atak.forwarder.comm.InboundExecutor;
 import com.paulmandal.atak.forwarder.comm.MessageType;
+import com.paulmandal.atak.forwarder.comm.PayloadCompressor;
+import com.paulmandal.atak.forwarder.comm.PliDeltaDecoder;
 import com.paulmandal.atak.forwarder.comm.meshtastic.InboundMeshMessageHandler;
 import com.paulmandal.atak.forwarder.cotutils.MeshtasticCotEvent;
 import com.paulmandal.atak.forwarder.helpers.Logger;
@@ -19,19 +22,28 @@ public class InboundMessageHandler implements InboundMeshMessageHandler.MessageL
     private final CotDispatcher mInternalCotDispatcher;
     private final CotDispatcher mExternalCotDispatcher;
     private final CotShrinker mCotShrinker;
+    private final PliDeltaDecoder mPliDeltaDecoder;
+    private final PayloadCompressor mPayloadCompressor;
     private final InboundPliListener mInboundPliListener;
+    private final InboundExecutor mInboundExecutor;
     private final Logger mLogger;
 
     public InboundMessageHandler(CotDispatcher internalCotDispatcher,
                                  CotDispatcher externalCotDispatcher,
                                  InboundMeshMessageHandler inboundMeshMessageHandler,
                                  CotShrinker cotShrinker,
+                                 PliDeltaDecoder pliDeltaDecoder,
+                                 PayloadCompressor payloadCompressor,
                                  InboundPliListener inboundPliListener,
+                                 InboundExecutor inboundExecutor,
                                  Logger logger) {
         mInternalCotDispatcher = internalCotDispatcher;
         mExternalCotDispatcher = externalCotDispatcher;
         mCotShrinker = cotShrinker;
+        mPliDeltaDecoder = pliDeltaDecoder;
+        mPayloadCompressor = payloadCompressor;
         mInboundPliListener = inboundPliListener;
+        mInboundExecutor = inboundExecutor;
         mLogger = logger;
 
         inboundMeshMessageHandler.addMessageListener(this);
@@ -39,21 +51,19 @@ public class InboundMessageHandler implements InboundMeshMessageHandler.MessageL
 
     @Override
     public void onMessageReceived(int messageId, byte[] message) {
-        Thread messageConversionAndDispatchThread = new Thread(() -> {
-            CotEvent cotEvent = mCotShrinker.toCotEvent(message);
-            if (cotEvent == null) {
-                mLogger.e(TAG, "Error in onMessageReceived, cotEvent did not parse");
+        mInboundExecutor.execute(() -> {
+            if (PayloadCompressor.isCompressed(message)) {
+                byte[] decompressed = mPayloadCompressor.decompress(message);
+                if (decompressed == null) {
+                    mLogger.e(TAG, "Error in onMessageReceived, payload did not decompress");
+                    return;
+                }
+                handleMessage(decompressed);
                 return;
             }
 
-            if (MessageType.fromCotEventType(cotEvent.getType()) == MessageType.PLI) {
-                mInboundPliListener.onInboundPli(cotEvent);
-            }
-
-            retransmitCotToLocalhost(cotEvent);
+            handleMessage(message);
         });
-        messageConversionAndDispatchThread.setName("InboundMessageHandler.onMessageReceived");
-        messageConversionAndDispatchThread.start();
     }
 
     public void retransmitCotToLocalhost(CotEvent cotEvent) {
@@ -61,4 +71,47 @@ public class InboundMessageHandler implements InboundMeshMessageHandler.MessageL
         mInternalCotDispatcher.dispatch(meshtasticCotEvent);
         mExternalCotDispatcher.dispatch(meshtasticCotEvent);
     }
+
+    private void handleMessage(byte[] message) {
+        if (PliDeltaDecoder.isDelta(message)) {
+            handlePliDelta(message);
+            return;
+        }
+
+        CotEvent cotEvent = mCotShrinker.toCotEvent(message);
+        if (cotEvent == null) {
+            mLogger.e(TAG, "Error in onMessageReceived, cotEvent did not parse");
+            return;
+        }
+
+        if (MessageType.fromCotEventType(cotEvent.getType()) == MessageType.PLI) {
+            mPliDeltaDecoder.onKeyframe(cotEvent, message);
+            handleInboundPli(cotEvent);
+            return;
+        }
+
+        retransmitCotToLocalhost(cotEvent);
+    }
+
+    private void handlePliDelta(byte[] message) {
+        CotEvent cotEvent = mPliDeltaDecoder.decode(message);
+        if (cotEvent == null) {
+            // Missed the keyframe this delta was taken against, the sender will send a new one soon
+            mLogger.v(TAG, "Dropping PLI delta without a matching keyframe");
+            return;
+        }
+
+        handleInboundPli(cotEvent);
+    }
+
+    private void handleInboundPli(CotEvent cotEvent) {
+        if (cotEvent.getStale() != null && cotEvent.getStale().getMilliseconds() < System.currentTimeMillis()) {
+            // Sat in a backed up queue long enough to go stale, a newer PLI is on its way
+            mLogger.v(TAG, "Dropping stale PLI from: {}", cotEvent.getUID());
+            return;
+        }
+
+        mInboundPliListener.onInboundPli(cotEvent);
+        retransmitCotToLocalhost(cotEvent);
+    }
 }
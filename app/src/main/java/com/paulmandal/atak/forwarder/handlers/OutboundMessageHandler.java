@@ -1,7 +1,8 @@
 package com.paulmandal.atak.forwarder.handlers;
 
-import android.os.Handler;
+import android.content.Context;
 
+import com.atakmap.android.maps.MapView;
 import com.atakmap.comms.CommsLogger;
 import com.atakmap.comms.CommsMapComponent;
 import com.atakmap.coremap.cot.event.CotEvent;
@@ -12,39 +13,89 @@ import com.paulmandal.atak.forwarder.comm.meshtastic.ConnectionStateHandler;
 import com.paulmandal.atak.forwarder.comm.queue.CommandQueue;
 import com.paulmandal.atak.forwarder.comm.queue.commands.QueuedCommand;
 import com.paulmandal.atak.forwarder.comm.queue.commands.QueuedCommandFactory;
+import com.paulmandal.atak.forwarder.cotutils.CotFingerprinter;
 import com.paulmandal.atak.forwarder.cotutils.MeshtasticCotEvent;
 import com.paulmandal.atak.forwarder.helpers.Logger;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
 import com.paulmandal.atak.libcotshrink.pub.api.CotShrinker;
 
-public class OutboundMessageHandler implements CommsLogger {
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Takes outbound CoT from ATAK and hands it to a single serializer thread that does duplicate checks, shrinking and
+ * queueing, so none of that runs on ATAK's main looper. Events are serialized in the order ATAK sent them.
+ *
+ * The hand-off is bounded. While an event is still waiting a newer one for the same UID replaces it in place. Past
+ * QUEUE_CAPACITY the oldest waiting PLI is dropped, the next PLI from that UID carries a newer position anyway. Other
+ * events keep queueing until MAX_QUEUE_LENGTH, after that the oldest waiting non-chat event is dropped and is never
+ * sent, or the new event itself if only chat is waiting. Every drop is counted in the outbound stats.
+ */
+public class OutboundMessageHandler implements CommsLogger, Destroyable {
     private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + OutboundMessageHandler.class.getSimpleName();
 
-    private final Handler mMainThreadHandler;
+    public interface Listener {
+        /**
+         * Called from the serializer thread each time it catches up with the queue
+         */
+        void onOutboundStatsUpdated(int maxQueueDepth, long superseded, long dropped, List<SerializationStats> serializationStats);
+    }
+
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int MAX_QUEUE_LENGTH = 256;
+
     private final CommsMapComponent mCommsMapComponent;
     private final ConnectionStateHandler mConnectionStateHandler;
     private final CommandQueue mCommandQueue;
     private final QueuedCommandFactory mQueuedCommandFactory;
     private final CotMessageCache mCotMessageCache;
     private final CotShrinker mCotShrinker;
+    private final CotFingerprinter mCotFingerprinter;
     private final Logger mLogger;
+    private final ExecutorService mSerializerExecutor;
+
+    private final Deque<PendingSend> mPendingSends = new ArrayDeque<>();
+    private final Map<String, PendingSend> mPendingSendsByUid = new HashMap<>();
+    private final Map<String, SerializationTimer> mSerializationTimersByType = new HashMap<>();
 
-    public OutboundMessageHandler(Handler mainThreadHandler,
+    private final Object mSyncLock = new Object();
+
+    private boolean mDrainScheduled;
+    private int mMaxQueueDepth;
+    private long mSuperseded;
+    private long mDropped;
+
+    private Listener mListener;
+
+    public OutboundMessageHandler(List<Destroyable> destroyables,
                                   CommsMapComponent commsMapComponent,
                                   ConnectionStateHandler connectionStateHandler,
                                   CommandQueue commandQueue,
                                   QueuedCommandFactory queuedCommandFactory,
                                   CotMessageCache cotMessageCache,
                                   CotShrinker cotShrinker,
-                                  Logger logger) {
-        mMainThreadHandler = mainThreadHandler;
+                                  CotFingerprinter cotFingerprinter,
+                                  Logger logger,
+                                  ExecutorService serializerExecutor) {
         mCommsMapComponent = commsMapComponent;
         mConnectionStateHandler = connectionStateHandler;
         mCommandQueue = commandQueue;
         mQueuedCommandFactory = queuedCommandFactory;
         mCotMessageCache = cotMessageCache;
         mCotShrinker = cotShrinker;
+        mCotFingerprinter = cotFingerprinter;
         mLogger = logger;
+        mSerializerExecutor = serializerExecutor;
 
+        destroyables.add(this);
         commsMapComponent.registerCommsLogger(this);
     }
 
@@ -66,29 +117,190 @@ public class OutboundMessageHandler implements CommsLogger {
         mCommsMapComponent.unregisterCommsLogger(this);
     }
 
+    @Override
+    public void onDestroy(Context context, MapView mapView) {
+        mSerializerExecutor.shutdownNow();
+    }
+
+    /**
+     * @return true while events are waiting for or going through serialization
+     */
+    public boolean hasPendingSends() {
+        synchronized (mSyncLock) {
+            return mDrainScheduled;
+        }
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
     private void handleSend(CotEvent cotEvent, String[] toUIDs) {
         if (cotEvent instanceof MeshtasticCotEvent) {
             // Drop CotEvents that we have retransmitted from Meshtastic
             return;
         }
 
-        mMainThreadHandler.post(() -> {
-            mLogger.v(TAG, "processCotEvent: " + cotEvent);
-            String eventType = cotEvent.getType();
-            boolean isChat = MessageType.fromCotEventType(eventType) == MessageType.CHAT;
-            if (mConnectionStateHandler.getConnectionState() == ConnectionStateHandler.ConnectionState.DEVICE_CONNECTED && !isChat) {
-                if (mCotMessageCache.checkIfRecentlySent(cotEvent)) {
-                    mLogger.v(TAG, "  Discarding recently sent event: " + cotEvent);
-                    return;
+        MessageType messageType = MessageType.fromCotEventType(cotEvent.getType());
+        String uid = messageType != MessageType.CHAT ? cotEvent.getUID() : null;
+
+        boolean scheduleDrain = false;
+        synchronized (mSyncLock) {
+            PendingSend pendingSend = uid != null ? mPendingSendsByUid.get(uid) : null;
+            if (pendingSend != null && Arrays.equals(pendingSend.toUIDs, toUIDs)) {
+                // Replace in place so the UID keeps its position in line
+                pendingSend.cotEvent = cotEvent;
+                pendingSend.messageType = messageType;
+                mSuperseded++;
+                return;
+            }
+
+            if (mPendingSends.size() >= QUEUE_CAPACITY
+                    && !dropOldestPendingSend(true)
+                    && mPendingSends.size() >= MAX_QUEUE_LENGTH
+                    && !dropOldestPendingSend(false)) {
+                mDropped++;
+                mLogger.e(TAG, "Outbound serialization queue full of chat, dropped new " + messageType + " event, total dropped: " + mDropped);
+                return;
+            }
+
+            pendingSend = new PendingSend(cotEvent, toUIDs, uid, messageType);
+            mPendingSends.add(pendingSend);
+            if (uid != null) {
+                mPendingSendsByUid.put(uid, pendingSend);
+            }
+            mMaxQueueDepth = Math.max(mMaxQueueDepth, mPendingSends.size());
+
+            if (!mDrainScheduled) {
+                mDrainScheduled = true;
+                scheduleDrain = true;
+            }
+        }
+
+        if (scheduleDrain) {
+            try {
+                mSerializerExecutor.execute(this::drainPendingSends);
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+            }
+        }
+    }
+
+    /**
+     * @param pliOnly only drop a PLI, anything else would be lost for good
+     * @return false if nothing droppable is waiting
+     */
+    private boolean dropOldestPendingSend(boolean pliOnly) {
+        Iterator<PendingSend> iterator = mPendingSends.iterator();
+        while (iterator.hasNext()) {
+            PendingSend pendingSend = iterator.next();
+            if (pendingSend.uid != null && (!pliOnly || pendingSend.messageType == MessageType.PLI)) {
+                iterator.remove();
+                if (mPendingSendsByUid.get(pendingSend.uid) == pendingSend) {
+                    mPendingSendsByUid.remove(pendingSend.uid);
+                }
+                mDropped++;
+                if (pliOnly) {
+                    mLogger.d(TAG, "Outbound serialization queue full, dropped PLI for UID: " + pendingSend.uid + ", total dropped: " + mDropped);
+                } else {
+                    mLogger.e(TAG, "Outbound serialization queue full, dropped unsent event for UID: " + pendingSend.uid + ", total dropped: " + mDropped);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void drainPendingSends() {
+        while (true) {
+            CotEvent cotEvent;
+            String[] toUIDs;
+            synchronized (mSyncLock) {
+                PendingSend pendingSend = mPendingSends.poll();
+                if (pendingSend == null) {
+                    mDrainScheduled = false;
+                    break;
+                }
+
+                if (pendingSend.uid != null && mPendingSendsByUid.get(pendingSend.uid) == pendingSend) {
+                    mPendingSendsByUid.remove(pendingSend.uid);
                 }
-                mCotMessageCache.cacheEvent(cotEvent);
+                cotEvent = pendingSend.cotEvent;
+                toUIDs = pendingSend.toUIDs;
+            }
+
+            long startTime = System.nanoTime();
+            try {
+                serialize(cotEvent, toUIDs);
+            } catch (RuntimeException e) {
+                // Keep draining, one bad event shouldn't stall everything behind it
+                mLogger.e(TAG, "Exception serializing event: " + cotEvent.getUID() + ", " + e.getMessage());
+                continue;
+            }
+            recordSerializationTime(cotEvent.getType(), System.nanoTime() - startTime);
+        }
+
+        notifyListener();
+    }
+
+    private void serialize(CotEvent cotEvent, String[] toUIDs) {
+        mLogger.v(TAG, "processCotEvent: {}", cotEvent);
+        String eventType = cotEvent.getType();
+        MessageType messageType = MessageType.fromCotEventType(eventType);
+        boolean isChat = messageType == MessageType.CHAT;
+
+        if (mConnectionStateHandler.getConnectionState() == ConnectionStateHandler.ConnectionState.DEVICE_CONNECTED && !isChat) {
+            // PLIs are never compared so they skip fingerprinting
+            long fingerprint = messageType != MessageType.PLI ? mCotFingerprinter.fingerprint(cotEvent) : 0;
+            if (mCotMessageCache.checkIfRecentlySent(cotEvent, fingerprint)) {
+                mLogger.v(TAG, "  Discarding recently sent event: {}", cotEvent);
+                return;
             }
+            mCotMessageCache.cacheEvent(cotEvent, fingerprint);
+        }
 
-            byte[] cotAsBytes = mCotShrinker.toByteArrayLossy(cotEvent);
-            MessageType messageType = MessageType.fromCotEventType(eventType);
-            boolean overwriteSimilar = messageType != MessageType.CHAT;
-            mCommandQueue.queueSendMessage(mQueuedCommandFactory.createSendMessageCommand(determineMessagePriority(cotEvent), cotEvent, cotAsBytes, toUIDs, messageType), overwriteSimilar);
-        });
+        byte[] cotAsBytes = mCotShrinker.toByteArrayLossy(cotEvent);
+        boolean overwriteSimilar = messageType != MessageType.CHAT;
+        mCommandQueue.queueSendMessage(mQueuedCommandFactory.createSendMessageCommand(determineMessagePriority(cotEvent), cotEvent, cotAsBytes, toUIDs, messageType), overwriteSimilar);
+    }
+
+    private void recordSerializationTime(String eventType, long elapsedNanos) {
+        synchronized (mSerializationTimersByType) {
+            SerializationTimer timer = mSerializationTimersByType.get(eventType);
+            if (timer == null) {
+                timer = new SerializationTimer();
+                mSerializationTimersByType.put(eventType, timer);
+            }
+            timer.count++;
+            timer.totalNanos += elapsedNanos;
+            timer.maxNanos = Math.max(timer.maxNanos, elapsedNanos);
+        }
+        mLogger.d(TAG, "  Serialized {} in {}us", eventType, elapsedNanos / 1000);
+    }
+
+    private void notifyListener() {
+        Listener listener = mListener;
+        if (listener == null) {
+            return;
+        }
+
+        List<SerializationStats> serializationStats = new ArrayList<>();
+        synchronized (mSerializationTimersByType) {
+            for (Map.Entry<String, SerializationTimer> entry : mSerializationTimersByType.entrySet()) {
+                SerializationTimer timer = entry.getValue();
+                serializationStats.add(new SerializationStats(entry.getKey(), timer.count, timer.totalNanos, timer.maxNanos));
+            }
+        }
+
+        int maxQueueDepth;
+        long superseded;
+        long dropped;
+        synchronized (mSyncLock) {
+            maxQueueDepth = mMaxQueueDepth;
+            superseded = mSuperseded;
+            dropped = mDropped;
+        }
+        listener.onOutboundStatsUpdated(maxQueueDepth, superseded, dropped, serializationStats);
     }
 
     private int determineMessagePriority(CotEvent cotEvent) {
@@ -98,4 +310,47 @@ public class OutboundMessageHandler implements CommsLogger {
             return QueuedCommand.PRIORITY_LOW;
         }
     }
+
+    public static class SerializationStats {
+        public final String cotType;
+        public final long count;
+        public final long totalNanos;
+        public final long maxNanos;
+
+        public SerializationStats(String cotType, long count, long totalNanos, long maxNanos) {
+            this.cotType = cotType;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getAverageMicros() {
+            return count == 0 ? 0 : totalNanos / count / 1000;
+        }
+
+        @Override
+        public String toString() {
+            return cotType + ": " + count + " @ avg " + getAverageMicros() + "us, max " + (maxNanos / 1000) + "us";
+        }
+    }
+
+    private static class PendingSend {
+        public CotEvent cotEvent;
+        public MessageType messageType;
+        public final String[] toUIDs;
+        public final String uid;
+
+        public PendingSend(CotEvent cotEvent, String[] toUIDs, String uid, MessageType messageType) {
+            this.cotEvent = cotEvent;
+            this.toUIDs = toUIDs;
+            this.uid = uid;
+            this.messageType = messageType;
+        }
+    }
+
+    private static class SerializationTimer {
+        public long count;
+        public long totalNanos;
+        public long maxNanos;
+    }
 }
@@ -0,0 +1,21 @@
+package com.paulmandal.atak.forwarder.helpers;
+
+public class LogMessage {
+    public final int level;
+    public final String tag;
+    public final String message;
+
+    // Position in the Logger's ring buffer, lets the reader tell a fresh slot from one that was lapped
+    final long sequence;
+
+    public LogMessage(int level, String tag, String message) {
+        this(-1, level, tag, message);
+    }
+
+    LogMessage(long sequence, int level, String tag, String message) {
+        this.sequence = sequence;
+        this.level = level;
+        this.tag = tag;
+        this.message = message;
+    }
+}
@@ -0,0 +1,72 @@
+package com.paulmandal.atak.forwarder.helpers;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size, lock-free buffer between any number of logging threads and a single reader. Writers claim a sequence
+ * number and publish into its slot, when the reader falls more than a buffer behind the oldest messages are dropped
+ * rather than blocking or growing.
+ */
+class LogRingBuffer {
+    private final AtomicReferenceArray<LogMessage> mSlots;
+    private final int mMask;
+    private final AtomicLong mWriteSequence = new AtomicLong();
+
+    // Only touched by the reader
+    private long mReadSequence;
+    private long mDroppedCount;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mSlots = new AtomicReferenceArray<>(size);
+        mMask = size - 1;
+    }
+
+    void offer(int level, String tag, String message) {
+        long sequence = mWriteSequence.getAndIncrement();
+        mSlots.set((int) (sequence & mMask), new LogMessage(sequence, level, tag, message));
+    }
+
+    /**
+     * Moves up to maxCount published messages into out, oldest first. Stops early at a slot a writer has claimed but
+     * not filled yet, hasPending() tells the caller to come back for it.
+     */
+    int drainTo(List<LogMessage> out, int maxCount) {
+        long writeSequence = mWriteSequence.get();
+        long oldestAvailable = writeSequence - mSlots.length();
+        if (mReadSequence < oldestAvailable) {
+            mDroppedCount += oldestAvailable - mReadSequence;
+            mReadSequence = oldestAvailable;
+        }
+
+        int drained = 0;
+        while (mReadSequence < writeSequence && drained < maxCount) {
+            LogMessage logMessage = mSlots.get((int) (mReadSequence & mMask));
+            if (logMessage == null || logMessage.sequence < mReadSequence) {
+                break;
+            }
+
+            if (logMessage.sequence == mReadSequence) {
+                out.add(logMessage);
+                drained++;
+            } else {
+                mDroppedCount++;
+            }
+            mReadSequence++;
+        }
+        return drained;
+    }
+
+    boolean hasPending() {
+        return mReadSequence < mWriteSequence.get();
+    }
+
+    long getDroppedCount() {
+        return mDroppedCount;
+    }
+}
@@ -1,73 +1,187 @@
 package com.paulmandal.atak.forwarder.helpers;
 
-import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Handler;
-import android.util.DebugUtils;
 import android.util.Log;
-import android.widget.Toast;
 
+import com.paulmandal.atak.forwarder.ForwarderConstants;
 import com.paulmandal.atak.forwarder.plugin.Destroyable;
 import com.paulmandal.atak.forwarder.plugin.DestroyableSharedPrefsListener;
 import com.paulmandal.atak.forwarder.preferences.PreferencesDefaults;
 import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Messages below the capture level, or with nowhere to go (logcat off and no listeners), are dropped before they are
+ * formatted. The capture level is its own preference, the status screen's logging level only filters what is shown
+ * there. Use the {} placeholder or MessageSupplier variants on hot paths so a dropped message costs a level check
+ * instead of a string build. Listeners get messages in batches on the UI thread.
+ */
 public class Logger extends DestroyableSharedPrefsListener {
+    private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + Logger.class.getSimpleName();
+
     public static final int LOG_LEVEL_VERBOSE = 2;
     public static final int LOG_LEVEL_DEBUG = 3;
     public static final int LOG_LEVEL_INFO = 4;
     public static final int LOG_LEVEL_WARN = 5;
     public static final int LOG_LEVEL_ERROR = 6;
 
+    private static final int RING_BUFFER_CAPACITY = 1024;
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long DRAIN_INTERVAL_MS = 100;
+
     public interface Listener {
-        void onLogMessage(int level, String tag, String message);
+        /**
+         * Called on the UI thread, the list is reused after this returns
+         */
+        void onLogMessages(List<LogMessage> logMessages);
+    }
+
+    public interface MessageSupplier {
+        String get();
     }
 
     private final Handler mUiThreadHandler;
 
-    private boolean mEnableLogging;
+    private volatile boolean mEnableLogging;
+    private volatile int mCaptureLevel;
 
     private final Set<Listener> mListeners = new CopyOnWriteArraySet<>();
 
+    private final LogRingBuffer mRingBuffer = new LogRingBuffer(RING_BUFFER_CAPACITY);
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean();
+    private final List<LogMessage> mDrainBatch = new ArrayList<>(MAX_BATCH_SIZE);
+    private final Runnable mDrainRunnable = this::drainToListeners;
+
     public Logger(List<Destroyable> destroyables, SharedPreferences sharedPreferences, Handler uiThreadHandler) {
         super(destroyables, sharedPreferences,
                 new String[] {
-                        PreferencesKeys.KEY_ENABLE_LOGGING
+                        PreferencesKeys.KEY_ENABLE_LOGGING,
+                        PreferencesKeys.KEY_SET_LOG_CAPTURE_LEVEL
                 },
                 new String[] {});
         mUiThreadHandler = uiThreadHandler;
     }
 
+    public boolean isLoggable(int level) {
+        return level >= mCaptureLevel && (mEnableLogging || !mListeners.isEmpty());
+    }
+
     public void v(String tag, String message) {
-        if (mEnableLogging) {
-            Log.v(tag, message);
+        log(LOG_LEVEL_VERBOSE, tag, message);
+    }
+
+    public void v(String tag, String format, Object arg) {
+        if (isLoggable(LOG_LEVEL_VERBOSE)) {
+            write(LOG_LEVEL_VERBOSE, tag, format(format, 1, arg, null, null));
+        }
+    }
+
+    public void v(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(LOG_LEVEL_VERBOSE)) {
+            write(LOG_LEVEL_VERBOSE, tag, format(format, 2, arg1, arg2, null));
+        }
+    }
+
+    public void v(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(LOG_LEVEL_VERBOSE)) {
+            write(LOG_LEVEL_VERBOSE, tag, format(format, 3, arg1, arg2, arg3));
+        }
+    }
+
+    public void v(String tag, MessageSupplier messageSupplier) {
+        if (isLoggable(LOG_LEVEL_VERBOSE)) {
+            write(LOG_LEVEL_VERBOSE, tag, messageSupplier.get());
         }
-        notifyListeners(LOG_LEVEL_VERBOSE, tag, message);
     }
 
     public void d(String tag, String message) {
-        if (mEnableLogging) {
-            Log.d(tag, message);
+        log(LOG_LEVEL_DEBUG, tag, message);
+    }
+
+    public void d(String tag, String format, Object arg) {
+        if (isLoggable(LOG_LEVEL_DEBUG)) {
+            write(LOG_LEVEL_DEBUG, tag, format(format, 1, arg, null, null));
+        }
+    }
+
+    public void d(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(LOG_LEVEL_DEBUG)) {
+            write(LOG_LEVEL_DEBUG, tag, format(format, 2, arg1, arg2, null));
+        }
+    }
+
+    public void d(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(LOG_LEVEL_DEBUG)) {
+            write(LOG_LEVEL_DEBUG, tag, format(format, 3, arg1, arg2, arg3));
+        }
+    }
+
+    public void d(String tag, MessageSupplier messageSupplier) {
+        if (isLoggable(LOG_LEVEL_DEBUG)) {
+            write(LOG_LEVEL_DEBUG, tag, messageSupplier.get());
         }
-        notifyListeners(LOG_LEVEL_DEBUG, tag, message);
     }
 
     public void i(String tag, String message) {
-        if (mEnableLogging) {
-            Log.i(tag, message);
+        log(LOG_LEVEL_INFO, tag, message);
+    }
+
+    public void i(String tag, String format, Object arg) {
+        if (isLoggable(LOG_LEVEL_INFO)) {
+            write(LOG_LEVEL_INFO, tag, format(format, 1, arg, null, null));
+        }
+    }
+
+    public void i(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(LOG_LEVEL_INFO)) {
+            write(LOG_LEVEL_INFO, tag, format(format, 2, arg1, arg2, null));
+        }
+    }
+
+    public void i(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(LOG_LEVEL_INFO)) {
+            write(LOG_LEVEL_INFO, tag, format(format, 3, arg1, arg2, arg3));
+        }
+    }
+
+    public void i(String tag, MessageSupplier messageSupplier) {
+        if (isLoggable(LOG_LEVEL_INFO)) {
+            write(LOG_LEVEL_INFO, tag, messageSupplier.get());
         }
-        notifyListeners(LOG_LEVEL_INFO, tag, message);
     }
 
     public void e(String tag, String message) {
-        if (mEnableLogging) {
-            Log.e(tag, message);
+        log(LOG_LEVEL_ERROR, tag, message);
+    }
+
+    public void e(String tag, String format, Object arg) {
+        if (isLoggable(LOG_LEVEL_ERROR)) {
+            write(LOG_LEVEL_ERROR, tag, format(format, 1, arg, null, null));
+        }
+    }
+
+    public void e(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(LOG_LEVEL_ERROR)) {
+            write(LOG_LEVEL_ERROR, tag, format(format, 2, arg1, arg2, null));
+        }
+    }
+
+    public void e(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(LOG_LEVEL_ERROR)) {
+            write(LOG_LEVEL_ERROR, tag, format(format, 3, arg1, arg2, arg3));
+        }
+    }
+
+    public void e(String tag, MessageSupplier messageSupplier) {
+        if (isLoggable(LOG_LEVEL_ERROR)) {
+            write(LOG_LEVEL_ERROR, tag, messageSupplier.get());
         }
-        notifyListeners(LOG_LEVEL_ERROR, tag, message);
     }
 
     public void addListener(Listener listener) {
@@ -78,15 +192,73 @@ public class Logger extends DestroyableSharedPrefsListener {
         mListeners.remove(listener);
     }
 
-    private void notifyListeners(int level, String tag, String message) {
-        for(Listener listener : mListeners) {
-            mUiThreadHandler.post(() -> listener.onLogMessage(level, tag, message));
+    private void log(int level, String tag, String message) {
+        if (isLoggable(level)) {
+            write(level, tag, message);
+        }
+    }
+
+    private void write(int level, String tag, String message) {
+        if (mEnableLogging) {
+            Log.println(level, tag, message);
+        }
+
+        if (mListeners.isEmpty()) {
+            return;
+        }
+
+        mRingBuffer.offer(level, tag, message);
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            mUiThreadHandler.postDelayed(mDrainRunnable, DRAIN_INTERVAL_MS);
+        }
+    }
+
+    private void drainToListeners() {
+        mDrainScheduled.set(false);
+
+        long droppedBefore = mRingBuffer.getDroppedCount();
+        mDrainBatch.clear();
+        mRingBuffer.drainTo(mDrainBatch, MAX_BATCH_SIZE);
+
+        long dropped = mRingBuffer.getDroppedCount() - droppedBefore;
+        if (dropped > 0) {
+            mDrainBatch.add(0, new LogMessage(LOG_LEVEL_WARN, TAG, "Log buffer overflowed, dropped " + dropped + " messages"));
+        }
+
+        if (!mDrainBatch.isEmpty()) {
+            for (Listener listener : mListeners) {
+                listener.onLogMessages(mDrainBatch);
+            }
+        }
+        mDrainBatch.clear();
+
+        if (mRingBuffer.hasPending() && mDrainScheduled.compareAndSet(false, true)) {
+            mUiThreadHandler.post(mDrainRunnable);
+        }
+    }
+
+    /**
+     * Replaces each {} in the format with the next argument, extra placeholders are left as-is
+     */
+    static String format(String format, int argCount, Object arg1, Object arg2, Object arg3) {
+        StringBuilder sb = new StringBuilder(format.length() + 32);
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while (argIndex < argCount && (placeholder = format.indexOf("{}", start)) != -1) {
+            sb.append(format, start, placeholder);
+            sb.append(argIndex == 0 ? arg1 : argIndex == 1 ? arg2 : arg3);
+            argIndex++;
+            start = placeholder + 2;
         }
+        sb.append(format, start, format.length());
+        return sb.toString();
     }
 
     @Override
     protected void updateSettings(SharedPreferences sharedPreferences) {
         mEnableLogging = sharedPreferences.getBoolean(PreferencesKeys.KEY_ENABLE_LOGGING, PreferencesDefaults.DEFAULT_ENABLE_LOGGING);
+        mCaptureLevel = Integer.parseInt(sharedPreferences.getString(PreferencesKeys.KEY_SET_LOG_CAPTURE_LEVEL, PreferencesDefaults.DEFAULT_LOG_CAPTURE_LEVEL));
     }
 
     @Override
@@ -15,7 +15,6 @@ import com.atakmap.android.dropdown.DropDownMapComponent;
 import com.atakmap.android.ipc.AtakBroadcast;
 import com.atakmap.android.maps.MapView;
 import com.atakmap.app.preferences.ToolsPreferenceFragment;
-import com.atakmap.comms.CommsLogger;
 import com.atakmap.comms.CommsMapComponent;
 import com.geeksville.mesh.ConfigProtos;
 import com.google.gson.Gson;
@@ -24,10 +23,18 @@ import com.paulmandal.atak.forwarder.R;
 import com.paulmandal.atak.forwarder.channel.UserTracker;
 import com.paulmandal.atak.forwarder.handlers.OutboundMessageHandler;
 import com.paulmandal.atak.forwarder.comm.CotMessageCache;
+import com.paulmandal.atak.forwarder.comm.InboundExecutor;
+import com.paulmandal.atak.forwarder.comm.PayloadCompressor;
+import com.paulmandal.atak.forwarder.comm.PliDeltaDecoder;
+import com.paulmandal.atak.forwarder.comm.PliDeltaEncoder;
+import com.paulmandal.atak.forwarder.comm.meshtastic.AirtimeScheduler;
+import com.paulmandal.atak.forwarder.comm.meshtastic.ChunkFramer;
+import com.paulmandal.atak.forwarder.comm.meshtastic.DiscoveryMessageCodec;
 import com.paulmandal.atak.forwarder.comm.meshtastic.CommandQueueWorker;
 import com.paulmandal.atak.forwarder.comm.meshtastic.DeviceConfigObserver;
 import com.paulmandal.atak.forwarder.comm.meshtastic.DiscoveryBroadcastEventHandler;
 import com.paulmandal.atak.forwarder.comm.meshtastic.InboundMeshMessageHandler;
+import com.paulmandal.atak.forwarder.comm.meshtastic.MeshEventDispatcher;
 import com.paulmandal.atak.forwarder.comm.meshtastic.DeviceConnectionHandler;
 import com.paulmandal.atak.forwarder.comm.meshtastic.MeshDeviceConfigurationController;
 import com.paulmandal.atak.forwarder.comm.meshtastic.MeshDeviceConfiguratorFactory;
@@ -36,10 +43,12 @@ import com.paulmandal.atak.forwarder.comm.meshtastic.MeshtasticDevice;
 import com.paulmandal.atak.forwarder.comm.meshtastic.MeshtasticDeviceSwitcher;
 import com.paulmandal.atak.forwarder.comm.meshtastic.ConnectionStateHandler;
 import com.paulmandal.atak.forwarder.comm.meshtastic.MeshServiceController;
+import com.paulmandal.atak.forwarder.comm.meshtastic.ReassemblyTable;
 import com.paulmandal.atak.forwarder.comm.meshtastic.TrackerEventHandler;
 import com.paulmandal.atak.forwarder.comm.queue.CommandQueue;
 import com.paulmandal.atak.forwarder.comm.queue.commands.QueuedCommandFactory;
 import com.paulmandal.atak.forwarder.cotutils.CotComparer;
+import com.paulmandal.atak.forwarder.cotutils.CotFingerprinter;
 import com.paulmandal.atak.forwarder.factories.MessageHandlerFactory;
 import com.paulmandal.atak.forwarder.handlers.InboundMessageHandler;
 import com.paulmandal.atak.forwarder.helpers.HashHelper;
@@ -57,6 +66,7 @@ import com.paulmandal.atak.libcotshrink.pub.api.CotShrinkerFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -84,10 +94,12 @@ public class ForwarderMapComponent extends DropDownMapComponent {
         // Internal components
         Handler uiThreadHandler = new Handler(Looper.getMainLooper());
         Logger logger = new Logger(destroyables, sharedPreferences, uiThreadHandler);
+        InboundExecutor inboundExecutor = new InboundExecutor(destroyables, logger);
 
-
+        CotFingerprinter cotFingerprinter = new CotFingerprinter();
         CotComparer cotComparer = new CotComparer();
         CommandQueue commandQueue = new CommandQueue(uiThreadHandler, cotComparer);
+        ChunkFramer chunkFramer = new ChunkFramer();
 
 
         Gson gson = new Gson();
@@ -163,25 +175,33 @@ public class ForwarderMapComponent extends DropDownMapComponent {
         );
 
 
-        DiscoveryBroadcastEventHandler discoveryBroadcastEventHandler = new DiscoveryBroadcastEventHandler(
+        MeshEventDispatcher meshEventDispatcher = new MeshEventDispatcher(
                 atakContext,
+                destroyables,
+                logger,
+                connectionStateHandler,
+                inboundExecutor,
+                chunkFramer
+        );
+
+
+        DiscoveryBroadcastEventHandler discoveryBroadcastEventHandler = new DiscoveryBroadcastEventHandler(
                 logger,
                 commandQueue,
                 queuedCommandFactory,
-                destroyables,
                 connectionStateHandler,
+                meshEventDispatcher,
                 meshServiceController,
+                new DiscoveryMessageCodec(),
                 atakUid,
                 callsign
         );
 
 
         TrackerEventHandler trackerEventHandler = new TrackerEventHandler(
-                atakContext,
                 logger,
-                destroyables,
                 uiThreadHandler,
-                connectionStateHandler
+                meshEventDispatcher
         );
 
 
@@ -191,7 +211,8 @@ public class ForwarderMapComponent extends DropDownMapComponent {
                 uiThreadHandler,
                 logger,
                 discoveryBroadcastEventHandler,
-                trackerEventHandler
+                trackerEventHandler,
+                ForwarderConstants.CHANNEL_MEMBERS_PUBLISH_INTERVAL_MS
         );
 
 
@@ -200,17 +221,24 @@ public class ForwarderMapComponent extends DropDownMapComponent {
             thread.setName("MeshSender.Watchdog");
             return thread;
         });
-        MeshSender meshSender = new MeshSender(atakContext,
-                destroyables,
+        AirtimeScheduler airtimeScheduler = new AirtimeScheduler(destroyables, sharedPreferences);
+        MeshSender meshSender = new MeshSender(destroyables,
                 sharedPreferences,
                 uiThreadHandler,
                 logger,
                 connectionStateHandler,
+                meshEventDispatcher,
                 meshServiceController,
                 userTracker,
+                chunkFramer,
+                airtimeScheduler,
                 meshSenderExecutor);
 
 
+        CotShrinkerFactory cotShrinkerFactory = new CotShrinkerFactory();
+        CotShrinker cotShrinker = cotShrinkerFactory.createCotShrinker();
+        PliDeltaEncoder pliDeltaEncoder = new PliDeltaEncoder(destroyables, sharedPreferences, cotShrinker, cotComparer);
+        PayloadCompressor payloadCompressor = new PayloadCompressor(destroyables, sharedPreferences);
         ScheduledExecutorService commandQueueExecutor = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
             Thread thread = new Thread(r);
             thread.setName("CommandQueueWorker.Worker");
@@ -221,34 +249,43 @@ public class ForwarderMapComponent extends DropDownMapComponent {
                 connectionStateHandler,
                 commandQueue,
                 meshSender,
+                pliDeltaEncoder,
+                payloadCompressor,
                 commandQueueExecutor
         );
 
 
+        ReassemblyTable reassemblyTable = new ReassemblyTable(logger, chunkFramer);
         InboundMeshMessageHandler inboundMeshMessageHandler = new InboundMeshMessageHandler(
-                atakContext,
-                destroyables,
-                connectionStateHandler,
+                meshEventDispatcher,
                 uiThreadHandler,
-                logger);
+                logger,
+                chunkFramer,
+                reassemblyTable);
 
 
-        CotShrinkerFactory cotShrinkerFactory = new CotShrinkerFactory();
-        CotShrinker cotShrinker = cotShrinkerFactory.createCotShrinker();
-        InboundMessageHandler inboundMessageHandler = MessageHandlerFactory.getInboundMessageHandler(inboundMeshMessageHandler, cotShrinker, userTracker, logger);
+        PliDeltaDecoder pliDeltaDecoder = new PliDeltaDecoder(cotShrinker);
+        InboundMessageHandler inboundMessageHandler = MessageHandlerFactory.getInboundMessageHandler(inboundMeshMessageHandler, cotShrinker, pliDeltaDecoder, payloadCompressor, userTracker, inboundExecutor, logger);
 
 
         CommsMapComponent commsMapComponent  = CommsMapComponent.getInstance();
         CotMessageCache cotMessageCache = new CotMessageCache(destroyables, sharedPreferences, cotComparer);
-        CommsLogger outboundMessageHandler = new OutboundMessageHandler(
-                uiThreadHandler,
+        ExecutorService outboundSerializerExecutor = Executors.newSingleThreadExecutor((Runnable r) -> {
+            Thread thread = new Thread(r);
+            thread.setName("OutboundMessageHandler.Serializer");
+            return thread;
+        });
+        OutboundMessageHandler outboundMessageHandler = new OutboundMessageHandler(
+                destroyables,
                 commsMapComponent,
                 connectionStateHandler,
                 commandQueue,
                 queuedCommandFactory,
                 cotMessageCache,
                 cotShrinker,
-                logger
+                cotFingerprinter,
+                logger,
+                outboundSerializerExecutor
         );
 
 
@@ -259,7 +296,7 @@ public class ForwarderMapComponent extends DropDownMapComponent {
         } catch (PackageManager.NameNotFoundException e) {
             e.printStackTrace();
         }
-        TrackerCotGenerator trackerCotGenerator = new TrackerCotGenerator(destroyables, sharedPreferences, userTracker, inboundMessageHandler, logger, pluginVersion);
+        TrackerCotGenerator trackerCotGenerator = new TrackerCotGenerator(destroyables, sharedPreferences, uiThreadHandler, userTracker, inboundMessageHandler, logger, pluginVersion);
 
 
         StatusViewModel statusViewModel = new StatusViewModel(
@@ -276,7 +313,10 @@ public class ForwarderMapComponent extends DropDownMapComponent {
                 meshSender,
                 inboundMeshMessageHandler,
                 trackerEventHandler,
-                commandQueue);
+                commandQueue,
+                cotMessageCache,
+                inboundExecutor,
+                outboundMessageHandler);
 
         LoggingViewModel loggingViewModel = new LoggingViewModel(destroyables, sharedPreferences, logger);
 
@@ -7,14 +7,17 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.ImageView;
+import android.widget.ListView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 
 import com.paulmandal.atak.forwarder.R;
+import com.paulmandal.atak.forwarder.channel.ChannelMembersSnapshot;
 import com.paulmandal.atak.forwarder.channel.TrackerUserInfo;
 import com.paulmandal.atak.forwarder.channel.UserInfo;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import eo.view.batterymeter.BatteryMeterView;
@@ -24,13 +27,51 @@ public class GroupMemberDataAdapter extends ArrayAdapter<UserInfo> {
     private final Context mAtakContext;
     private final Context mPluginContext;
 
-    public GroupMemberDataAdapter(Context atakContext, Context pluginContext, List<UserInfo> users) {
+    private long mSnapshotVersion;
+
+    public GroupMemberDataAdapter(Context atakContext, Context pluginContext, ChannelMembersSnapshot snapshot) {
+        this(atakContext, pluginContext, new ArrayList<>(snapshot.members));
+        mSnapshotVersion = snapshot.version;
+    }
+
+    private GroupMemberDataAdapter(Context atakContext, Context pluginContext, List<UserInfo> users) {
         super(pluginContext, R.layout.group_member_list_view_item, users);
         mAtakContext = atakContext;
         mPluginContext = pluginContext;
         mUsers = users;
     }
 
+    /**
+     * Membership changes reload the list, otherwise only the changed rows that are on screen get rebound. A snapshot
+     * that doesn't directly follow the last one applied (e.g. some were skipped while the screen was hidden) reloads too.
+     */
+    public void applySnapshot(ChannelMembersSnapshot snapshot, ListView listView) {
+        if (snapshot.version == mSnapshotVersion) {
+            return;
+        }
+
+        boolean followsLastSnapshot = snapshot.version == mSnapshotVersion + 1;
+        mSnapshotVersion = snapshot.version;
+
+        if (snapshot.membershipChanged || !followsLastSnapshot) {
+            setNotifyOnChange(false);
+            clear();
+            addAll(snapshot.members);
+            notifyDataSetChanged();
+            return;
+        }
+
+        int firstVisiblePosition = listView.getFirstVisiblePosition();
+        for (int position : snapshot.changedPositions) {
+            mUsers.set(position, snapshot.members.get(position));
+
+            View row = listView.getChildAt(position - firstVisiblePosition);
+            if (row != null) {
+                getView(position, row, listView);
+            }
+        }
+    }
+
     static class ViewHolder {
         protected TextView callsign;
         protected ImageView takIcon;
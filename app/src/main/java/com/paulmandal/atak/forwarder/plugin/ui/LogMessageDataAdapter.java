@@ -11,16 +11,16 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 
 import com.paulmandal.atak.forwarder.R;
+import com.paulmandal.atak.forwarder.helpers.LogMessage;
 import com.paulmandal.atak.forwarder.helpers.Logger;
-import com.paulmandal.atak.forwarder.plugin.ui.viewmodels.LoggingViewModel;
 
 import java.util.List;
 
-public class LogMessageDataAdapter extends ArrayAdapter<LoggingViewModel.LogMessage> {
+public class LogMessageDataAdapter extends ArrayAdapter<LogMessage> {
     private final Context mPluginContext;
-    private final List<LoggingViewModel.LogMessage> mLogMessages;
+    private final List<LogMessage> mLogMessages;
 
-    public LogMessageDataAdapter(Context pluginContext, List<LoggingViewModel.LogMessage> logMessages) {
+    public LogMessageDataAdapter(Context pluginContext, List<LogMessage> logMessages) {
         super(pluginContext, R.layout.log_message_listview_item, logMessages);
         mPluginContext = pluginContext;
         mLogMessages = logMessages;
@@ -44,7 +44,7 @@ public class LogMessageDataAdapter extends ArrayAdapter<LoggingViewModel.LogMess
         } else {
             view = convertView;
         }
-        LoggingViewModel.LogMessage logMessage = mLogMessages.get(position);
+        LogMessage logMessage = mLogMessages.get(position);
 
         ViewHolder holder = (ViewHolder) view.getTag();
         holder.logMessage.setText(String.format("%s/%s: %s", logMessage.tag, logLevelToStr(logMessage.level), logMessage.message));
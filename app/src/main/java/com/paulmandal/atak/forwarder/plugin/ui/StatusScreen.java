@@ -13,13 +13,9 @@ import androidx.constraintlayout.widget.ConstraintLayout;
 import androidx.lifecycle.LifecycleOwner;
 
 import com.paulmandal.atak.forwarder.R;
-import com.paulmandal.atak.forwarder.channel.TrackerUserInfo;
-import com.paulmandal.atak.forwarder.channel.UserInfo;
 import com.paulmandal.atak.forwarder.comm.meshtastic.MeshtasticDevice;
 import com.paulmandal.atak.forwarder.plugin.ui.viewmodels.StatusViewModel;
 
-import java.util.Collections;
-
 public class StatusScreen extends ConstraintLayout {
     private Context mAtakContext;
 
@@ -35,6 +31,15 @@ public class StatusScreen extends ConstraintLayout {
     private final TextView mTimedOutTextView;
     private final TextView mErroredTextView;
     private final TextView mTotalTextView;
+    private final TextView mCacheHitsTextView;
+    private final TextView mCacheMissesTextView;
+    private final TextView mCacheEvictionsTextView;
+    private final TextView mInboundMaxQueueDepthTextView;
+    private final TextView mInboundDroppedTasksTextView;
+    private final TextView mOutboundMaxQueueDepthTextView;
+    private final TextView mOutboundSupersededTextView;
+    private final TextView mOutboundDroppedTextView;
+    private final TextView mSlowestSerializationTextView;
     private final ListView mGroupMembersListView;
     private final Button mBroadcastDiscoveryButton;
     
@@ -63,6 +68,15 @@ public class StatusScreen extends ConstraintLayout {
         mTimedOutTextView = findViewById(R.id.textview_timed_out_messages);
         mErroredTextView = findViewById(R.id.textview_errored_messages);
         mTotalTextView = findViewById(R.id.textview_total_messages);
+        mCacheHitsTextView = findViewById(R.id.textview_cache_hits);
+        mCacheMissesTextView = findViewById(R.id.textview_cache_misses);
+        mCacheEvictionsTextView = findViewById(R.id.textview_cache_evictions);
+        mInboundMaxQueueDepthTextView = findViewById(R.id.textview_inbound_max_queue_depth);
+        mInboundDroppedTasksTextView = findViewById(R.id.textview_inbound_dropped_tasks);
+        mOutboundMaxQueueDepthTextView = findViewById(R.id.textview_outbound_max_queue_depth);
+        mOutboundSupersededTextView = findViewById(R.id.textview_outbound_superseded);
+        mOutboundDroppedTextView = findViewById(R.id.textview_outbound_dropped);
+        mSlowestSerializationTextView = findViewById(R.id.textview_slowest_serialization);
         mGroupMembersListView = findViewById(R.id.listview_channel_members);
 
         mBroadcastDiscoveryButton = findViewById(R.id.button_broadcast_discovery);
@@ -102,30 +116,27 @@ public class StatusScreen extends ConstraintLayout {
             }
         });
 
-        statusViewModel.getUserInfoList().observe(lifecycleOwner, userInfoList -> {
-            Collections.sort(userInfoList, (UserInfo lhs, UserInfo rhs) -> {
-                boolean lhsTak = !(lhs instanceof TrackerUserInfo);
-                boolean rhsTak = !(rhs instanceof TrackerUserInfo);
-
-                if (lhsTak == rhsTak) {
-                    return 0;
-                }
-
-                if (lhsTak) {
-                    return -1;
-                }
-
-                return 1;
-            });
-            GroupMemberDataAdapter groupMemberDataAdapter = new GroupMemberDataAdapter(atakContext, pluginContext, userInfoList);
-            mGroupMembersListView.setAdapter(groupMemberDataAdapter);
-        });
+        // Snapshots list ATAK users before trackers already, so rows can be patched in place
+        GroupMemberDataAdapter groupMemberDataAdapter = new GroupMemberDataAdapter(atakContext, pluginContext, statusViewModel.getChannelMembers().getValue());
+        mGroupMembersListView.setAdapter(groupMemberDataAdapter);
+        statusViewModel.getChannelMembers().observe(lifecycleOwner, snapshot -> groupMemberDataAdapter.applySnapshot(snapshot, mGroupMembersListView));
 
         statusViewModel.getReceivedMessages().observe(lifecycleOwner, receivedMessages -> mReceivedTextView.setText(String.format("%d", receivedMessages)));
         statusViewModel.getDeliveredMessages().observe(lifecycleOwner, deliveredMessages -> mDelieveredTextView.setText(String.format("%d", deliveredMessages)));
         statusViewModel.getTimedOutMessages().observe(lifecycleOwner, timedOutMessages -> mTimedOutTextView.setText(String.format("%d", timedOutMessages)));
         statusViewModel.getErroredMessages().observe(lifecycleOwner, erroredMessages -> mErroredTextView.setText(String.format("%d", erroredMessages)));
         statusViewModel.getTotalMessage().observe(lifecycleOwner, totalMessages -> mTotalTextView.setText(String.format("%d", totalMessages)));
+        statusViewModel.getCacheStats().observe(lifecycleOwner, cacheStats -> {
+            mCacheHitsTextView.setText(String.format("%d", cacheStats.hits));
+            mCacheMissesTextView.setText(String.format("%d", cacheStats.misses));
+            mCacheEvictionsTextView.setText(String.format("%d", cacheStats.evictions));
+        });
+        statusViewModel.getInboundMaxQueueDepth().observe(lifecycleOwner, inboundMaxQueueDepth -> mInboundMaxQueueDepthTextView.setText(String.format("%d", inboundMaxQueueDepth)));
+        statusViewModel.getInboundDroppedTasks().observe(lifecycleOwner, inboundDroppedTasks -> mInboundDroppedTasksTextView.setText(String.format("%d", inboundDroppedTasks)));
+        statusViewModel.getOutboundMaxQueueDepth().observe(lifecycleOwner, outboundMaxQueueDepth -> mOutboundMaxQueueDepthTextView.setText(String.format("%d", outboundMaxQueueDepth)));
+        statusViewModel.getOutboundSuperseded().observe(lifecycleOwner, outboundSuperseded -> mOutboundSupersededTextView.setText(String.format("%d", outboundSuperseded)));
+        statusViewModel.getOutboundDropped().observe(lifecycleOwner, outboundDropped -> mOutboundDroppedTextView.setText(String.format("%d", outboundDropped)));
+        statusViewModel.getSlowestSerialization().observe(lifecycleOwner, mSlowestSerializationTextView::setText);
         statusViewModel.getChannelName().observe(lifecycleOwner, channelName -> mChannelName.setText(channelName != null ? String.format("#%s", channelName) : null));
         statusViewModel.getPskHash().observe(lifecycleOwner, mPskHash::setText);
         statusViewModel.getModemPreset().observe(lifecycleOwner, modemConfig -> mModemConfig.setText(modemConfig != null ? String.format("%d", modemConfig.getNumber()) : null));
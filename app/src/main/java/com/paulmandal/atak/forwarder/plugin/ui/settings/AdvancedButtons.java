@@ -13,6 +13,7 @@ public class AdvancedButtons {
                            Preference clearMessageCache,
                            Preference clearCommandQueue,
                            Preference setLoggingLevel,
+                           Preference setLogCaptureLevel,
                            Preference resetToDefault,
                            Preference resetToDefaultIncludingChannel) {
         clearMessageCache.setOnPreferenceClickListener((Preference preference) -> {
@@ -28,6 +29,10 @@ public class AdvancedButtons {
         listPreferenceSetLoggingLevel.setEntries(R.array.log_levels);
         listPreferenceSetLoggingLevel.setEntryValues(R.array.log_levels_values);
 
+        PanListPreference  listPreferenceSetLogCaptureLevel = (PanListPreference) setLogCaptureLevel;
+        listPreferenceSetLogCaptureLevel.setEntries(R.array.log_levels);
+        listPreferenceSetLogCaptureLevel.setEntryValues(R.array.log_levels_values);
+
 //        resetToDefault.setOnPreferenceClickListener((Preference preference) -> {
 //            // TODO: implement reset to default
 //            return true;
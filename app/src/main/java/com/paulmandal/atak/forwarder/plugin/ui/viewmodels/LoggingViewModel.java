@@ -1,11 +1,13 @@
 package com.paulmandal.atak.forwarder.plugin.ui.viewmodels;
 
 import android.content.SharedPreferences;
+import android.view.Choreographer;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
 import com.paulmandal.atak.forwarder.ForwarderConstants;
+import com.paulmandal.atak.forwarder.helpers.LogMessage;
 import com.paulmandal.atak.forwarder.helpers.Logger;
 import com.paulmandal.atak.forwarder.plugin.Destroyable;
 import com.paulmandal.atak.forwarder.plugin.DestroyableSharedPrefsListener;
@@ -15,25 +17,29 @@ import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Keeps the last MAX_LOG_MESSAGES_OUTPUT messages in a ring, plus one ring of message sequence numbers per minimum
+ * level so changing the logging level just switches index instead of re-filtering. Logger delivers everything down to
+ * its capture level whatever the logging level is, so lowering the logging level brings back lower-level lines that
+ * are still in the ring. The filtered list is emitted at most once per frame. Runs on the UI thread.
+ */
 public class LoggingViewModel extends DestroyableSharedPrefsListener implements Logger.Listener {
     private static final int MAX_LOG_MESSAGES_OUTPUT = ForwarderConstants.MAX_LOG_MESSAGES_OUTPUT;
 
-    public static class LogMessage {
-        public final int level;
-        public final String tag;
-        public final String message;
+    private static final int LEVEL_COUNT = Logger.LOG_LEVEL_ERROR - Logger.LOG_LEVEL_VERBOSE + 1;
 
-        public LogMessage(int level, String tag, String message) {
-            this.level = level;
-            this.tag = tag;
-            this.message = message;
-        }
-    }
+    private final LogMessage[] mMessages = new LogMessage[MAX_LOG_MESSAGES_OUTPUT];
+    private long mMessageCount;
+
+    // mLevelIndexes[i] holds the sequence numbers of messages at or above level LOG_LEVEL_VERBOSE + i
+    private final long[][] mLevelIndexes = new long[LEVEL_COUNT][MAX_LOG_MESSAGES_OUTPUT];
+    private final long[] mLevelIndexCounts = new long[LEVEL_COUNT];
 
-    private final List<LogMessage> mUnfilteredLogMessages = new ArrayList<>();
     private final MutableLiveData<List<LogMessage>> mLogMessages = new MutableLiveData<>(new ArrayList<>());
+    private final Choreographer.FrameCallback mEmitFrameCallback = frameTimeNanos -> emitFilteredMessages();
 
     private int mLoggingLevel;
+    private boolean mEmitScheduled;
 
     public LoggingViewModel(List<Destroyable> destroyables, SharedPreferences sharedPreferences, Logger logger) {
         super(destroyables, sharedPreferences,
@@ -50,25 +56,31 @@ public class LoggingViewModel extends DestroyableSharedPrefsListener implements
     }
 
     @Override
-    public void onLogMessage(int level, String tag, String message) {
-        if (mUnfilteredLogMessages.size() > MAX_LOG_MESSAGES_OUTPUT) {
-            mUnfilteredLogMessages.remove(0);
+    public void onLogMessages(List<LogMessage> logMessages) {
+        for (LogMessage logMessage : logMessages) {
+            long sequence = mMessageCount++;
+            mMessages[(int) (sequence % MAX_LOG_MESSAGES_OUTPUT)] = logMessage;
+
+            int highestIndex = levelToIndex(logMessage.level);
+            for (int i = 0; i <= highestIndex; i++) {
+                mLevelIndexes[i][(int) (mLevelIndexCounts[i] % MAX_LOG_MESSAGES_OUTPUT)] = sequence;
+                mLevelIndexCounts[i]++;
+            }
         }
-        LogMessage logMessage = new LogMessage(level, tag, message);
-        mUnfilteredLogMessages.add(logMessage);
 
-        if (level >= mLoggingLevel) {
-            List<LogMessage> messages = mLogMessages.getValue();
-            messages.add(logMessage);
-            mLogMessages.postValue(messages);
-        }
+        scheduleEmit();
     }
 
     @Override
     protected void updateSettings(SharedPreferences sharedPreferences) {
         mLoggingLevel = Integer.parseInt(sharedPreferences.getString(PreferencesKeys.KEY_SET_LOGGING_LEVEL, PreferencesDefaults.DEFAULT_LOGGING_LEVEL));
 
-        updateFilteredMessages();
+        if (mMessages == null) {
+            // Called from the super constructor, nothing to filter yet
+            return;
+        }
+
+        scheduleEmit();
     }
 
     @Override
@@ -76,19 +88,35 @@ public class LoggingViewModel extends DestroyableSharedPrefsListener implements
         // Do nothing
     }
 
-    private void updateFilteredMessages() {
-        if (mUnfilteredLogMessages == null) {
+    private void scheduleEmit() {
+        if (mEmitScheduled) {
             return;
         }
 
-        List<LogMessage> messages = new ArrayList<>();
+        mEmitScheduled = true;
+        Choreographer.getInstance().postFrameCallback(mEmitFrameCallback);
+    }
+
+    private void emitFilteredMessages() {
+        mEmitScheduled = false;
+
+        int levelIndex = levelToIndex(mLoggingLevel);
+        long[] index = mLevelIndexes[levelIndex];
+        long indexCount = mLevelIndexCounts[levelIndex];
+        long oldestSequence = mMessageCount - MAX_LOG_MESSAGES_OUTPUT;
 
-        for (LogMessage message : mUnfilteredLogMessages) {
-            if (message.level >= mLoggingLevel) {
-                messages.add(message);
+        List<LogMessage> messages = new ArrayList<>();
+        for (long i = Math.max(0, indexCount - MAX_LOG_MESSAGES_OUTPUT); i < indexCount; i++) {
+            long sequence = index[(int) (i % MAX_LOG_MESSAGES_OUTPUT)];
+            if (sequence >= oldestSequence) {
+                messages.add(mMessages[(int) (sequence % MAX_LOG_MESSAGES_OUTPUT)]);
             }
         }
 
-        mLogMessages.postValue(messages);
+        mLogMessages.setValue(messages);
+    }
+
+    private static int levelToIndex(int level) {
+        return Math.max(0, Math.min(LEVEL_COUNT - 1, level - Logger.LOG_LEVEL_VERBOSE));
     }
 }
@@ -9,9 +9,11 @@ import androidx.lifecycle.MutableLiveData;
 import com.geeksville.mesh.ConfigProtos;
 import com.google.gson.Gson;
 import com.paulmandal.atak.forwarder.ForwarderConstants;
+import com.paulmandal.atak.forwarder.channel.ChannelMembersSnapshot;
 import com.paulmandal.atak.forwarder.channel.TrackerUserInfo;
-import com.paulmandal.atak.forwarder.channel.UserInfo;
 import com.paulmandal.atak.forwarder.channel.UserTracker;
+import com.paulmandal.atak.forwarder.comm.CotMessageCache;
+import com.paulmandal.atak.forwarder.comm.InboundExecutor;
 import com.paulmandal.atak.forwarder.comm.meshtastic.DeviceConfigObserver;
 import com.paulmandal.atak.forwarder.comm.meshtastic.DiscoveryBroadcastEventHandler;
 import com.paulmandal.atak.forwarder.comm.meshtastic.InboundMeshMessageHandler;
@@ -21,10 +23,10 @@ import com.paulmandal.atak.forwarder.comm.meshtastic.ConnectionStateHandler;
 import com.paulmandal.atak.forwarder.comm.meshtastic.MeshtasticDevice;
 import com.paulmandal.atak.forwarder.comm.meshtastic.TrackerEventHandler;
 import com.paulmandal.atak.forwarder.comm.queue.CommandQueue;
+import com.paulmandal.atak.forwarder.handlers.OutboundMessageHandler;
 import com.paulmandal.atak.forwarder.helpers.HashHelper;
 import com.paulmandal.atak.forwarder.plugin.Destroyable;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class StatusViewModel extends ChannelStatusViewModel implements UserTracker.ChannelMembersUpdateListener,
@@ -32,12 +34,15 @@ public class StatusViewModel extends ChannelStatusViewModel implements UserTrack
         ConnectionStateHandler.Listener,
         MeshSender.MessageAckNackListener,
         InboundMeshMessageHandler.MessageListener,
-        TrackerEventHandler.TrackerListener {
+        TrackerEventHandler.TrackerListener,
+        CotMessageCache.Listener,
+        InboundExecutor.Listener,
+        OutboundMessageHandler.Listener {
     private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + StatusViewModel.class.getSimpleName();
 
     private final DiscoveryBroadcastEventHandler mDiscoveryBroadcastEventHandler;
 
-    private final MutableLiveData<List<UserInfo>> mUserInfoList = new MutableLiveData<>(new ArrayList<>());
+    private final MutableLiveData<ChannelMembersSnapshot> mChannelMembers = new MutableLiveData<>(ChannelMembersSnapshot.EMPTY);
     private final MutableLiveData<Integer> mMessageQueueSize = new MutableLiveData<>(0);
     private final MutableLiveData<ConnectionStateHandler.ConnectionState> mConnectionState = new MutableLiveData<>(ConnectionStateHandler.ConnectionState.NO_SERVICE_CONNECTION);
     private final MutableLiveData<Integer> mTotalMessages = new MutableLiveData<>(0);
@@ -45,6 +50,13 @@ public class StatusViewModel extends ChannelStatusViewModel implements UserTrack
     private final MutableLiveData<Integer> mDeliveredMessages = new MutableLiveData<>(0);
     private final MutableLiveData<Integer> mTimedOutMessages = new MutableLiveData<>(0);
     private final MutableLiveData<Integer> mReceivedMessages = new MutableLiveData<>(0);
+    private final MutableLiveData<CotMessageCache.CacheStats> mCacheStats = new MutableLiveData<>(new CotMessageCache.CacheStats(0, 0, 0));
+    private final MutableLiveData<Integer> mInboundMaxQueueDepth = new MutableLiveData<>(0);
+    private final MutableLiveData<Integer> mInboundDroppedTasks = new MutableLiveData<>(0);
+    private final MutableLiveData<Integer> mOutboundMaxQueueDepth = new MutableLiveData<>(0);
+    private final MutableLiveData<Long> mOutboundSuperseded = new MutableLiveData<>(0L);
+    private final MutableLiveData<Long> mOutboundDropped = new MutableLiveData<>(0L);
+    private final MutableLiveData<String> mSlowestSerialization = new MutableLiveData<>("");
 
     public StatusViewModel(DeviceConfigObserver deviceConfigObserver,
                            HashHelper hashHelper,
@@ -59,7 +71,10 @@ public class StatusViewModel extends ChannelStatusViewModel implements UserTrack
                            MeshSender meshSender,
                            InboundMeshMessageHandler inboundMeshMessageHandler,
                            TrackerEventHandler trackerEventHandler,
-                           CommandQueue commandQueue) {
+                           CommandQueue commandQueue,
+                           CotMessageCache cotMessageCache,
+                           InboundExecutor inboundExecutor,
+                           OutboundMessageHandler outboundMessageHandler) {
         super(deviceConfigObserver, hashHelper, channelName, psk, modemConfig, meshtasticDevice, pluginManagesDevice);
 
         mDiscoveryBroadcastEventHandler = discoveryBroadcastEventHandler;
@@ -70,14 +85,14 @@ public class StatusViewModel extends ChannelStatusViewModel implements UserTrack
         meshSender.addMessageAckNackListener(this);
         inboundMeshMessageHandler.addMessageListener(this);
         trackerEventHandler.addListener(this);
+        cotMessageCache.setListener(this);
+        inboundExecutor.setListener(this);
+        outboundMessageHandler.setListener(this);
     }
 
     @Override
-    public void onChannelMembersUpdated(List<UserInfo> atakUsers, List<TrackerUserInfo> trackers) {
-        List<UserInfo> allStations = new ArrayList<>(atakUsers.size() + trackers.size());
-        allStations.addAll(atakUsers);
-        allStations.addAll(trackers);
-        mUserInfoList.setValue(allStations);
+    public void onChannelMembersUpdated(ChannelMembersSnapshot snapshot) {
+        mChannelMembers.setValue(snapshot);
     }
 
     @Override
@@ -86,8 +101,8 @@ public class StatusViewModel extends ChannelStatusViewModel implements UserTrack
     }
 
     @NonNull
-    public LiveData<List<UserInfo>> getUserInfoList() {
-        return mUserInfoList;
+    public LiveData<ChannelMembersSnapshot> getChannelMembers() {
+        return mChannelMembers;
     }
 
     @NonNull
@@ -125,6 +140,41 @@ public class StatusViewModel extends ChannelStatusViewModel implements UserTrack
         return mDeliveredMessages;
     }
 
+    @NonNull
+    public LiveData<CotMessageCache.CacheStats> getCacheStats() {
+        return mCacheStats;
+    }
+
+    @NonNull
+    public LiveData<Integer> getInboundMaxQueueDepth() {
+        return mInboundMaxQueueDepth;
+    }
+
+    @NonNull
+    public LiveData<Integer> getInboundDroppedTasks() {
+        return mInboundDroppedTasks;
+    }
+
+    @NonNull
+    public LiveData<Integer> getOutboundMaxQueueDepth() {
+        return mOutboundMaxQueueDepth;
+    }
+
+    @NonNull
+    public LiveData<Long> getOutboundSuperseded() {
+        return mOutboundSuperseded;
+    }
+
+    @NonNull
+    public LiveData<Long> getOutboundDropped() {
+        return mOutboundDropped;
+    }
+
+    @NonNull
+    public LiveData<String> getSlowestSerialization() {
+        return mSlowestSerialization;
+    }
+
     public void broadcastDiscoveryMessage() {
         mDiscoveryBroadcastEventHandler.broadcastDiscoveryMessage(true);
     }
@@ -157,6 +207,37 @@ public class StatusViewModel extends ChannelStatusViewModel implements UserTrack
         mReceivedMessages.setValue(mReceivedMessages.getValue() + 1);
     }
 
+    @Override
+    public void onCacheStatsUpdated(CotMessageCache.CacheStats cacheStats) {
+        // Called from whichever thread checked the cache
+        mCacheStats.postValue(cacheStats);
+    }
+
+    @Override
+    public void onInboundStatsUpdated(int maxQueueDepth, int droppedTasks) {
+        // Called from whichever thread submitted inbound work
+        mInboundMaxQueueDepth.postValue(maxQueueDepth);
+        mInboundDroppedTasks.postValue(droppedTasks);
+    }
+
+    @Override
+    public void onOutboundStatsUpdated(int maxQueueDepth, long superseded, long dropped, List<OutboundMessageHandler.SerializationStats> serializationStats) {
+        // Called from the outbound serializer thread
+        mOutboundMaxQueueDepth.postValue(maxQueueDepth);
+        mOutboundSuperseded.postValue(superseded);
+        mOutboundDropped.postValue(dropped);
+
+        OutboundMessageHandler.SerializationStats slowest = null;
+        for (OutboundMessageHandler.SerializationStats stats : serializationStats) {
+            if (slowest == null || stats.getAverageMicros() > slowest.getAverageMicros()) {
+                slowest = stats;
+            }
+        }
+        if (slowest != null) {
+            mSlowestSerialization.postValue(slowest.toString());
+        }
+    }
+
     @Override
     public void onConnectionStateChanged(ConnectionStateHandler.ConnectionState connectionState) {
         mConnectionState.setValue(connectionState);
@@ -14,12 +14,17 @@ public class PreferencesDefaults {
     public static final String DEFAULT_PLI_HOP_LIMIT = "3";
     public static final String DEFAULT_CHAT_HOP_LIMIT = "3";
     public static final String DEFAULT_OTHER_HOP_LIMIT = "3";
+    public static final String DEFAULT_SEND_WINDOW_SIZE = "3";
+    public static final String DEFAULT_AIRTIME_BUDGET_PERCENT = "25";
+    public static final boolean DEFAULT_PLI_DELTA_ENCODING = false;
+    public static final boolean DEFAULT_PAYLOAD_COMPRESSION = false;
     public static final boolean DEFAULT_COMM_DEVICE_IS_ROUTER = false;
     public static final String DEFAULT_CHANNEL_NAME = "Default";
     public static final String DEFAULT_CHANNEL_MODE = "6";
     public static final String DEFAULT_CHANNEL_PSK = new PskHelper().genPsk();
     public static final String DEFAULT_TRACKER_PLI_INTERVAL = "60";
     public static final String DEFAULT_TRACKER_STALE_AFTER_SECS = "75";
+    public static final String DEFAULT_TRACKER_REDRAW_INTERVAL_SECS = "2";
     public static final String DEFAULT_TRACKER_SCREEN_OFF_TIME = "5";
     public static final boolean DEFAULT_TRACKER_IS_ALWAYS_POWERED_ON = false;
     public static final boolean DEFAULT_TRACKER_IS_ROUTER = true;
@@ -28,4 +33,5 @@ public class PreferencesDefaults {
     public static final String DEFAULT_COMM_DEVICE = null;
     public static final boolean DEFAULT_ENABLE_LOGGING = true;
     public static final String DEFAULT_LOGGING_LEVEL = "2";
+    public static final String DEFAULT_LOG_CAPTURE_LEVEL = "2";
 }
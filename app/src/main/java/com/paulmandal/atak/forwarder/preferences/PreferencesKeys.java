@@ -15,6 +15,10 @@ public class PreferencesKeys {
     public static final String KEY_PLI_HOP_LIMIT = "plugin_atak_forwarder_key_pli_hop_limit";
     public static final String KEY_CHAT_HOP_LIMIT = "plugin_atak_forwarder_key_chat_hop_limit";
     public static final String KEY_OTHER_HOP_LIMIT = "plugin_atak_forwarder_key_other_hop_limit";
+    public static final String KEY_SEND_WINDOW_SIZE = "plugin_atak_forwarder_key_send_window_size";
+    public static final String KEY_AIRTIME_BUDGET_PERCENT = "plugin_atak_forwarder_key_airtime_budget_percent";
+    public static final String KEY_PLI_DELTA_ENCODING = "plugin_atak_forwarder_key_pli_delta_encoding";
+    public static final String KEY_PAYLOAD_COMPRESSION = "plugin_atak_forwarder_key_payload_compression";
     public static final String KEY_COMM_DEVICE_IS_ROUTER = "plugin_atak_forwarder_key_comm_device_is_router";
     public static final String KEY_CHANNEL_NAME = "plugin_atak_forwarder_key_channel_name";
     public static final String KEY_CHANNEL_MODE = "plugin_atak_forwarder_key_channel_mode";
@@ -27,6 +31,7 @@ public class PreferencesKeys {
     public static final String KEY_READ_CHANNEL_FROM_FILE = "plugin_atak_forwarder_key_read_channel_from_file";
     public static final String KEY_TRACKER_PLI_INTERVAL = "plugin_atak_forwarder_key_tracker_pli_interval";
     public static final String KEY_TRACKER_STALE_AFTER_SECS = "plugin_atak_forwarder_key_tracker_stale_after_secs";
+    public static final String KEY_TRACKER_REDRAW_INTERVAL_SECS = "plugin_atak_forwarder_key_tracker_redraw_interval_secs";
     public static final String KEY_TRACKER_SCREEN_OFF_TIME = "plugin_atak_forwarder_key_tracker_screen_off_time";
     public static final String KEY_TRACKER_IS_ALWAYS_POWERED_ON = "plugin_atak_forwarder_key_tracker_is_always_powered_on";
     public static final String KEY_TRACKER_IS_ROUTER = "plugin_atak_forwarder_key_tracker_is_router";
@@ -39,4 +44,5 @@ public class PreferencesKeys {
     public static final String KEY_RESET_TO_DEFAULT_INCLUDING_CHANNEL = "plugin_atak_forwarder_key_reset_to_default_including_channel";
     public static final String KEY_ENABLE_LOGGING = "plugin_atak_forwarder_key_enable_logging";
     public static final String KEY_SET_LOGGING_LEVEL = "plugin_atak_forwarder_key_set_logging_level";
+    public static final String KEY_SET_LOG_CAPTURE_LEVEL = "plugin_atak_forwarder_key_set_log_capture_level";
 }
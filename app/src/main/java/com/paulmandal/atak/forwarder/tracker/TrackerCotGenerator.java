@@ -1,6 +1,10 @@
 package com.paulmandal.atak.forwarder.tracker;
 
+import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+
+import com.atakmap.android.maps.MapView;
 
 import com.atakmap.coremap.cot.event.CotDetail;
 import com.atakmap.coremap.cot.event.CotEvent;
@@ -20,8 +24,17 @@ import com.paulmandal.atak.libcotshrink.protobuf.cotevent.detail.takv.TakvProtob
 import com.paulmandal.atak.libcotshrink.protobufs.ProtobufContact;
 import com.paulmandal.atak.libcotshrink.protobufs.ProtobufTakv;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+/**
+ * Draws Meshtastic trackers on the map as PLIs. Updates are collected per tracker and drawn together once per redraw
+ * interval, so a tracker that reports several times in one interval is only drawn once, with its latest state.
+ */
 public class TrackerCotGenerator  extends DestroyableSharedPrefsListener implements UserTracker.TrackerUpdateListener {
     private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + TrackerCotGenerator.class.getSimpleName();
 
@@ -54,6 +67,7 @@ public class TrackerCotGenerator  extends DestroyableSharedPrefsListener impleme
     private static final String UNKNOWN_CALLSIGN_PREFIX = "Tracker-";
 
     private int mTrackerStaleTimeMs;
+    private long mRedrawIntervalMs;
 
     public static final String[] TEAMS = {
             "Clear",
@@ -84,27 +98,45 @@ public class TrackerCotGenerator  extends DestroyableSharedPrefsListener impleme
             "K9"
     };
 
+    private final Handler mUiThreadHandler;
     private final InboundMessageHandler mInboundMessageHandler;
     private final Logger mLogger;
 
-    private final String mPluginVersion;
+    private final TakvProtobufConverter mTakvProtobufConverter = new TakvProtobufConverter();
+    private final ContactProtobufConverter mContactProtobufConverter = new ContactProtobufConverter();
+    private final ProtobufTakv.Takv mTakv;
+
+    // Keyed by meshId, only touched from the UI thread
+    private final Map<String, TrackerCotTemplate> mTemplates = new HashMap<>();
+    private final Map<String, TrackerUserInfo> mPendingTrackers = new LinkedHashMap<>();
+    private final Runnable mRedrawRunnable = this::redrawPendingTrackers;
+    private boolean mRedrawScheduled;
 
     public TrackerCotGenerator(List<Destroyable> destroyables,
                                SharedPreferences sharedPreferences,
+                               Handler uiThreadHandler,
                                UserTracker userTracker,
                                InboundMessageHandler inboundMessageHandler,
                                Logger logger,
                                String pluginVersion) {
         super(destroyables,
                 sharedPreferences,
-                new String[] {},
+                new String[] {
+                    PreferencesKeys.KEY_TRACKER_REDRAW_INTERVAL_SECS,
+                },
                 new String[] {
                     PreferencesKeys.KEY_TRACKER_STALE_AFTER_SECS,
                 });
 
+        mUiThreadHandler = uiThreadHandler;
         mInboundMessageHandler = inboundMessageHandler;
         mLogger = logger;
-        mPluginVersion = pluginVersion;
+        mTakv = ProtobufTakv.Takv.newBuilder()
+                .setOs(1)
+                .setVersion(pluginVersion)
+                .setDevice(VALUE_MESHTASTIC_DEVICE)
+                .setPlatform(VALUE_ATAK_FORWARDER)
+                .build();
 
         userTracker.addTrackerUpdateListener(this);
 
@@ -113,12 +145,26 @@ public class TrackerCotGenerator  extends DestroyableSharedPrefsListener impleme
 
     @Override
     public void trackerUpdated(TrackerUserInfo trackerUserInfo) {
-        drawTracker(trackerUserInfo);
+        // UserTracker hands us the same instance for every update, so a pending entry already carries the latest state
+        if (mPendingTrackers.put(trackerUserInfo.meshId, trackerUserInfo) != null) {
+            mLogger.v(TAG, "trackerUpdated(), superseding pending update for: {}", trackerUserInfo.meshId);
+        }
+
+        if (!mRedrawScheduled) {
+            mRedrawScheduled = true;
+            mUiThreadHandler.postDelayed(mRedrawRunnable, mRedrawIntervalMs);
+        }
+    }
+
+    @Override
+    public void onDestroy(Context context, MapView mapView) {
+        super.onDestroy(context, mapView);
+        mUiThreadHandler.removeCallbacks(mRedrawRunnable);
     }
 
     @Override
     protected void updateSettings(SharedPreferences sharedPreferences) {
-        // Do nothing
+        mRedrawIntervalMs = Integer.parseInt(sharedPreferences.getString(PreferencesKeys.KEY_TRACKER_REDRAW_INTERVAL_SECS, PreferencesDefaults.DEFAULT_TRACKER_REDRAW_INTERVAL_SECS)) * 1000L;
     }
 
     @Override
@@ -135,45 +181,57 @@ public class TrackerCotGenerator  extends DestroyableSharedPrefsListener impleme
         mTrackerStaleTimeMs = drawStaleAfterSecs * 1000;
     }
 
+    private void redrawPendingTrackers() {
+        mRedrawScheduled = false;
+
+        List<TrackerUserInfo> trackers = new ArrayList<>(mPendingTrackers.values());
+        mPendingTrackers.clear();
+
+        mLogger.v(TAG, "redrawPendingTrackers(), drawing: {}", trackers.size());
+        for (TrackerUserInfo tracker : trackers) {
+            drawTracker(tracker);
+        }
+    }
+
     private void drawTracker(TrackerUserInfo tracker) {
-        mLogger.v(TAG, "drawTracker() callsign: " + tracker.callsign + ", meshId: " + tracker.meshId + ", atakUid: " + tracker.atakUid);
+        mLogger.v(TAG, "drawTracker() callsign: {}, meshId: {}, atakUid: {}", tracker.callsign, tracker.meshId, tracker.atakUid);
         if (!tracker.gpsValid) {
-            mLogger.v(TAG, "drawTracker(), gpsValid: " + tracker.gpsValid);
+            mLogger.v(TAG, "drawTracker(), gpsValid: {}", tracker.gpsValid);
             // Ignore updates that don't contain a valid GPS point
             return;
         }
 
-        CotEvent spoofedPli = new CotEvent();
+        TrackerCotTemplate template = mTemplates.get(tracker.meshId);
+        if (template == null || !template.matches(tracker)) {
+            template = createTemplate(tracker);
+            mTemplates.put(tracker.meshId, template);
+        }
 
-        String meshIdWithoutExclamation = tracker.meshId.replaceAll("!", "");
-        String uid = String.format("%s-%s", VALUE_UID_PREFIX, meshIdWithoutExclamation);
+        CotEvent spoofedPli = template.createPli(tracker, mTrackerStaleTimeMs);
 
-        CoordinatedTime lastMsgCoordinatedTime = new CoordinatedTime(tracker.lastSeenTime);
-        CoordinatedTime staleCoordinatedTime = new CoordinatedTime(tracker.lastSeenTime + mTrackerStaleTimeMs);
+        mLogger.v(TAG, () -> "  Drew callsign: " + tracker.callsign + ", shortName: " + tracker.shortName + ", uid: " + spoofedPli.getUID() + ", lastMsgTime: " + spoofedPli.getTime() + ", staleTime: " + spoofedPli.getStale() + ", lat: " + tracker.lat + ", lon: " + tracker.lon + ", alt: " + tracker.altitude);
 
-        spoofedPli.setUID(uid);
+        mInboundMessageHandler.retransmitCotToLocalhost(spoofedPli);
+    }
+
+    /**
+     * Builds everything about a tracker's PLI that only depends on its identity, callsign and shortname
+     */
+    private TrackerCotTemplate createTemplate(TrackerUserInfo tracker) {
+        String meshIdWithoutExclamation = tracker.meshId.replace("!", "");
+
+        CotEvent spoofedPli = new CotEvent();
+        spoofedPli.setUID(VALUE_UID_PREFIX + "-" + meshIdWithoutExclamation);
         spoofedPli.setType(TYPE_PLI);
-        spoofedPli.setTime(lastMsgCoordinatedTime);
-        spoofedPli.setStart(lastMsgCoordinatedTime);
-        spoofedPli.setStale(staleCoordinatedTime);
         spoofedPli.setHow(VALUE_HOW_GPS);
-        spoofedPli.setPoint(new CotPoint(tracker.lat, tracker.lon, tracker.altitude, UNKNOWN_LE_CE, UNKNOWN_LE_CE));
 
         CotDetail cotDetail = new CotDetail(TAG_DETAIL);
 
-        TakvProtobufConverter mTakvProtobufConverter = new TakvProtobufConverter();
-
-        ProtobufTakv.Takv.Builder takv = ProtobufTakv.Takv.newBuilder();
-        takv.setOs(1);
-        takv.setVersion(mPluginVersion);
-        takv.setDevice(VALUE_MESHTASTIC_DEVICE);
-        takv.setPlatform(VALUE_ATAK_FORWARDER);
-        mTakvProtobufConverter.maybeAddTakv(cotDetail, takv.build());
+        mTakvProtobufConverter.maybeAddTakv(cotDetail, mTakv);
 
         ProtobufContact.Contact.Builder contact = ProtobufContact.Contact.newBuilder();
         String callsign = tracker.callsign.equals(TrackerUserInfo.CALLSIGN_UNKNOWN) ? UNKNOWN_CALLSIGN_PREFIX + meshIdWithoutExclamation : tracker.callsign;
         contact.setCallsign(callsign);
-        ContactProtobufConverter mContactProtobufConverter = new ContactProtobufConverter();
         mContactProtobufConverter.maybeAddContact(cotDetail, contact.build(), false);
 
         CotDetail uidDetail = new CotDetail(TAG_UID);
@@ -210,16 +268,48 @@ public class TrackerCotGenerator  extends DestroyableSharedPrefsListener impleme
         groupDetail.setAttribute(TAG_NAME, team);
         cotDetail.addChild(groupDetail);
 
-        if (tracker.batteryPercentage != null) {
-            CotDetail statusDetail = new CotDetail(TAG_STATUS);
-            statusDetail.setAttribute(TAG_BATTERY, Integer.toString(tracker.batteryPercentage));
-            cotDetail.addChild(statusDetail);
+        spoofedPli.setDetail(cotDetail);
+
+        return new TrackerCotTemplate(tracker.callsign, tracker.shortName, spoofedPli);
+    }
+
+    /**
+     * A tracker's PLI with the static detail already built, createPli() stamps out a new event from it. ATAK keeps the
+     * events it is handed, so neither the event nor anything in its detail tree is ever shared with the template.
+     */
+    private static class TrackerCotTemplate {
+        private final String mCallsign;
+        private final String mShortName;
+        private final CotEvent mTemplatePli;
+
+        TrackerCotTemplate(String callsign, String shortName, CotEvent templatePli) {
+            mCallsign = callsign;
+            mShortName = shortName;
+            mTemplatePli = templatePli;
         }
 
-        spoofedPli.setDetail(cotDetail);
+        boolean matches(TrackerUserInfo tracker) {
+            return Objects.equals(mCallsign, tracker.callsign) && Objects.equals(mShortName, tracker.shortName);
+        }
 
-        mLogger.v(TAG, "  Drew callsign: " + callsign + ", shortName: " + tracker.shortName + ", uid: " + uid + ", lastMsgTime: " + lastMsgCoordinatedTime + ", staleTime: " + staleCoordinatedTime + ", lat: " + tracker.lat + ", lon: " + tracker.lon + ", alt: " + tracker.altitude);
+        CotEvent createPli(TrackerUserInfo tracker, int trackerStaleTimeMs) {
+            CotEvent spoofedPli = new CotEvent(mTemplatePli);
+            CotDetail cotDetail = new CotDetail(mTemplatePli.getDetail());
 
-        mInboundMessageHandler.retransmitCotToLocalhost(spoofedPli);
+            CoordinatedTime lastMsgCoordinatedTime = new CoordinatedTime(tracker.lastSeenTime);
+            spoofedPli.setTime(lastMsgCoordinatedTime);
+            spoofedPli.setStart(lastMsgCoordinatedTime);
+            spoofedPli.setStale(new CoordinatedTime(tracker.lastSeenTime + trackerStaleTimeMs));
+            spoofedPli.setPoint(new CotPoint(tracker.lat, tracker.lon, tracker.altitude, UNKNOWN_LE_CE, UNKNOWN_LE_CE));
+
+            if (tracker.batteryPercentage != null) {
+                CotDetail statusDetail = new CotDetail(TAG_STATUS);
+                statusDetail.setAttribute(TAG_BATTERY, Integer.toString(tracker.batteryPercentage));
+                cotDetail.addChild(statusDetail);
+            }
+            spoofedPli.setDetail(cotDetail);
+
+            return spoofedPli;
+        }
     }
 }
@@ -0,0 +1,100 @@
+package com.paulmandal.atak.forwarder.comm;
+
+import android.content.SharedPreferences;
+
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PayloadCompressorTest {
+    private static final byte[] MARKER_LIKE_PAYLOAD = ("\n\u0018ANDROID-0123456789abcdef\u0012\u0007a-u-G\u001a"
+            + "COT_MAPPING_2525B/a-u/a-u-G\"\u0007Marker 1*\u0010ANDROID-fedcba982\u000bTeam Member")
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private final PayloadCompressor mPayloadCompressor = createPayloadCompressor(true);
+
+    @Test
+    public void roundTripsPayloadThatShrinks() {
+        byte[] compressed = mPayloadCompressor.compress(MARKER_LIKE_PAYLOAD);
+
+        assertTrue(PayloadCompressor.isCompressed(compressed));
+        assertTrue(compressed.length < MARKER_LIKE_PAYLOAD.length);
+        assertArrayEquals(MARKER_LIKE_PAYLOAD, mPayloadCompressor.decompress(compressed));
+    }
+
+    @Test
+    public void leavesIncompressiblePayloadAsIs() {
+        byte[] message = new byte[200];
+        new Random(1).nextBytes(message);
+
+        assertSame(message, mPayloadCompressor.compress(message));
+    }
+
+    @Test
+    public void leavesShortPayloadAsIs() {
+        byte[] message = Arrays.copyOf(MARKER_LIKE_PAYLOAD, 31);
+
+        assertSame(message, mPayloadCompressor.compress(message));
+    }
+
+    @Test
+    public void decompressesWhenCompressionIsOff() {
+        PayloadCompressor disabledPayloadCompressor = createPayloadCompressor(false);
+
+        assertSame(MARKER_LIKE_PAYLOAD, disabledPayloadCompressor.compress(MARKER_LIKE_PAYLOAD));
+        assertArrayEquals(MARKER_LIKE_PAYLOAD, disabledPayloadCompressor.decompress(mPayloadCompressor.compress(MARKER_LIKE_PAYLOAD)));
+    }
+
+    @Test
+    public void rejectsTruncatedPayload() {
+        byte[] compressed = mPayloadCompressor.compress(MARKER_LIKE_PAYLOAD);
+
+        for (int length = 1; length < compressed.length; length++) {
+            assertNull("length " + length, mPayloadCompressor.decompress(Arrays.copyOf(compressed, length)));
+        }
+    }
+
+    @Test
+    public void rejectsPayloadThatInflatesTooFar() {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        deflater.setDictionary(PayloadCompressor.PRESET_DICTIONARY);
+        deflater.setInput(new byte[64 * 1024]);
+        deflater.finish();
+        byte[] buffer = new byte[1024];
+        buffer[0] = PayloadCompressor.COMPRESSED_TYPE;
+        int length = deflater.deflate(buffer, 1, buffer.length - 1);
+        assertTrue(deflater.finished());
+        deflater.end();
+
+        assertNull(mPayloadCompressor.decompress(Arrays.copyOf(buffer, 1 + length)));
+    }
+
+    @Test
+    public void compressedTypeCannotStartShrunkCot() {
+        // Protobuf wire type 7 doesn't exist
+        assertEquals(7, PayloadCompressor.COMPRESSED_TYPE & 0x07);
+    }
+
+    private static PayloadCompressor createPayloadCompressor(boolean enabled) {
+        SharedPreferences sharedPreferences = mock(SharedPreferences.class);
+        when(sharedPreferences.getBoolean(eq(PreferencesKeys.KEY_PAYLOAD_COMPRESSION), anyBoolean())).thenReturn(enabled);
+        return new PayloadCompressor(new ArrayList<Destroyable>(), sharedPreferences);
+    }
+}
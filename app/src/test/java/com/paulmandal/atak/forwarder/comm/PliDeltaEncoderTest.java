@@ -0,0 +1,174 @@
+package com.paulmandal.atak.forwarder.comm;
+
+import android.content.SharedPreferences;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotPoint;
+import com.paulmandal.atak.forwarder.cotutils.CotComparer;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
+import com.paulmandal.atak.libcotshrink.pub.api.CotShrinker;
+import com.paulmandal.atak.libcotshrink.pub.api.CotShrinkerFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Round trips PLIs through PliDeltaEncoder and PliDeltaDecoder the way CommandQueueWorker and InboundMessageHandler use
+ * them
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 30)
+public class PliDeltaEncoderTest {
+    private static final String PLI_TEMPLATE = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>"
+            + "<event version='2.0' uid='ANDROID-0123456789abcdef' type='a-f-G-U-C' time='%s' start='%s' stale='%s' how='m-g'>"
+            + "<point lat='%.7f' lon='%.7f' hae='%.1f' ce='9999999.0' le='9999999.0' />"
+            + "<detail><takv os='30' version='4.5.1.13' device='GOOGLE PIXEL 5' platform='ATAK-CIV' />"
+            + "<contact endpoint='*:-1:stcp' callsign='%s' /><uid Droid='%s' />"
+            + "<precisionlocation altsrc='GPS' geopointsrc='GPS' /><__group role='Team Member' name='Cyan' />"
+            + "<status battery='88' /></detail></event>";
+
+    private static final double LAT = 39.1234567;
+    private static final double LON = -77.7654321;
+    private static final double HAE = 120.5;
+    private static final long TIME = 1700000000000L;
+    private static final long STALE_AFTER_MS = 75000;
+    private static final int PLIS_PER_KEYFRAME = 8;
+
+    private CotShrinker mCotShrinker;
+    private PliDeltaEncoder mPliDeltaEncoder;
+    private PliDeltaDecoder mPliDeltaDecoder;
+
+    @Before
+    public void setup() {
+        mCotShrinker = new CotShrinkerFactory().createCotShrinker();
+        mPliDeltaEncoder = createPliDeltaEncoder(true);
+        mPliDeltaDecoder = new PliDeltaDecoder(mCotShrinker);
+    }
+
+    @Test
+    public void roundTripsDelta() {
+        sendKeyframe(createPli(LAT, LON, HAE, TIME, "ALPHA"));
+
+        CotEvent moved = createPli(LAT + 0.0012345, LON - 0.0023456, HAE + 3.5, TIME + 5250, "ALPHA");
+        byte[] fullMessage = mCotShrinker.toByteArrayLossy(moved);
+        byte[] deltaMessage = mPliDeltaEncoder.encode(moved, fullMessage);
+        assertTrue(PliDeltaDecoder.isDelta(deltaMessage));
+        assertTrue(deltaMessage.length < fullMessage.length);
+
+        CotEvent decoded = mPliDeltaDecoder.decode(deltaMessage);
+        assertNotNull(decoded);
+        assertEquals(moved.getUID(), decoded.getUID());
+        CotPoint point = decoded.getCotPoint();
+        assertEquals(moved.getCotPoint().getLat(), point.getLat(), 1e-6);
+        assertEquals(moved.getCotPoint().getLon(), point.getLon(), 1e-6);
+        assertEquals(moved.getCotPoint().getHae(), point.getHae(), 0.1);
+        assertEquals(moved.getTime().getMilliseconds(), decoded.getTime().getMilliseconds(), PliDeltaEncoder.TIME_UNIT_MS);
+        assertEquals(moved.getStart().getMilliseconds(), decoded.getStart().getMilliseconds(), 2 * PliDeltaEncoder.TIME_UNIT_MS);
+        assertEquals(moved.getStale().getMilliseconds(), decoded.getStale().getMilliseconds(), 2 * PliDeltaEncoder.TIME_UNIT_MS);
+    }
+
+    @Test
+    public void dropsDeltaWithoutItsKeyframe() {
+        sendKeyframe(createPli(LAT, LON, HAE, TIME, "ALPHA"));
+        byte[] deltaMessage = encode(createPli(LAT + 0.001, LON, HAE, TIME + 5000, "ALPHA"));
+        assertTrue(PliDeltaDecoder.isDelta(deltaMessage));
+
+        assertNull(new PliDeltaDecoder(mCotShrinker).decode(deltaMessage));
+    }
+
+    @Test
+    public void dropsTruncatedDelta() {
+        sendKeyframe(createPli(LAT, LON, HAE, TIME, "ALPHA"));
+        byte[] deltaMessage = encode(createPli(LAT + 0.001, LON, HAE, TIME + 5000, "ALPHA"));
+
+        for (int length = 1; length < deltaMessage.length; length++) {
+            assertNull("length " + length, mPliDeltaDecoder.decode(Arrays.copyOf(deltaMessage, length)));
+        }
+    }
+
+    @Test
+    public void sendsFullPliWhenMoreThanThePointChanged() {
+        sendKeyframe(createPli(LAT, LON, HAE, TIME, "ALPHA"));
+
+        assertFalse(PliDeltaDecoder.isDelta(encode(createPli(LAT + 0.001, LON, HAE, TIME + 5000, "BRAVO"))));
+    }
+
+    @Test
+    public void sendsKeyframeEveryFewPlis() {
+        sendKeyframe(createPli(LAT, LON, HAE, TIME, "ALPHA"));
+
+        boolean sentKeyframe = false;
+        for (int i = 1; i < PLIS_PER_KEYFRAME + 1; i++) {
+            sentKeyframe |= !PliDeltaDecoder.isDelta(encode(createPli(LAT + i * 0.0001, LON, HAE, TIME + i * 5000, "ALPHA")));
+        }
+        assertTrue(sentKeyframe);
+    }
+
+    @Test
+    public void sendsFullPliAfterKeyframeFailed() {
+        CotEvent keyframe = createPli(LAT, LON, HAE, TIME, "ALPHA");
+        sendKeyframe(keyframe);
+        mPliDeltaEncoder.onMessageQueued(keyframe, 5);
+        mPliDeltaEncoder.onMessageFailed(5);
+
+        assertFalse(PliDeltaDecoder.isDelta(encode(createPli(LAT + 0.001, LON, HAE, TIME + 5000, "ALPHA"))));
+    }
+
+    @Test
+    public void sendsFullPliWhenDisabled() {
+        PliDeltaEncoder disabledPliDeltaEncoder = createPliDeltaEncoder(false);
+        CotEvent keyframe = createPli(LAT, LON, HAE, TIME, "ALPHA");
+        disabledPliDeltaEncoder.encode(keyframe, mCotShrinker.toByteArrayLossy(keyframe));
+
+        CotEvent moved = createPli(LAT + 0.001, LON, HAE, TIME + 5000, "ALPHA");
+        byte[] fullMessage = mCotShrinker.toByteArrayLossy(moved);
+        assertSame(fullMessage, disabledPliDeltaEncoder.encode(moved, fullMessage));
+    }
+
+    private void sendKeyframe(CotEvent cotEvent) {
+        byte[] message = encode(cotEvent);
+        assertFalse(PliDeltaDecoder.isDelta(message));
+        mPliDeltaDecoder.onKeyframe(mCotShrinker.toCotEvent(message), message);
+    }
+
+    private byte[] encode(CotEvent cotEvent) {
+        return mPliDeltaEncoder.encode(cotEvent, mCotShrinker.toByteArrayLossy(cotEvent));
+    }
+
+    private PliDeltaEncoder createPliDeltaEncoder(boolean enabled) {
+        SharedPreferences sharedPreferences = mock(SharedPreferences.class);
+        when(sharedPreferences.getBoolean(eq(PreferencesKeys.KEY_PLI_DELTA_ENCODING), anyBoolean())).thenReturn(enabled);
+        return new PliDeltaEncoder(new ArrayList<Destroyable>(), sharedPreferences, mCotShrinker, new CotComparer());
+    }
+
+    private static CotEvent createPli(double lat, double lon, double hae, long time, String callsign) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        String timeString = dateFormat.format(new Date(time));
+        String stale = dateFormat.format(new Date(time + STALE_AFTER_MS));
+        return CotEvent.parse(String.format(Locale.US, PLI_TEMPLATE, timeString, timeString, stale, lat, lon, hae, callsign, callsign));
+    }
+}
@@ -0,0 +1,94 @@
+package com.paulmandal.atak.forwarder.comm.meshtastic;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ChunkFramerTest {
+    private static final int CHUNK_PAYLOAD_LENGTH = 10;
+
+    private final ChunkFramer mChunkFramer = new ChunkFramer();
+
+    @Test
+    public void roundTripsSingleChunkWithLegacyHeader() {
+        byte[][] packets = assertRoundTrips(7, randomMessage(CHUNK_PAYLOAD_LENGTH));
+
+        assertEquals(1, packets.length);
+        assertEquals(0x01, packets[0][0]);
+    }
+
+    @Test
+    public void roundTripsMaxLegacyChunksWithLegacyHeader() {
+        byte[][] packets = assertRoundTrips(7, randomMessage(ChunkFramer.MAX_LEGACY_CHUNKS * CHUNK_PAYLOAD_LENGTH));
+
+        assertEquals(ChunkFramer.MAX_LEGACY_CHUNKS, packets.length);
+        for (int i = 0; i < packets.length; i++) {
+            assertEquals(ChunkFramer.LEGACY_HEADER_LENGTH + CHUNK_PAYLOAD_LENGTH, packets[i].length);
+            assertEquals((byte) (i << 4 | ChunkFramer.MAX_LEGACY_CHUNKS), packets[i][0]);
+            assertEquals(ChunkFramer.NO_MESSAGE_ID, mChunkFramer.toMessageChunk(packets[i]).messageId);
+        }
+    }
+
+    @Test
+    public void roundTripsPastMaxLegacyChunksWithExtendedHeader() {
+        byte[][] packets = assertRoundTrips(7, randomMessage(ChunkFramer.MAX_LEGACY_CHUNKS * CHUNK_PAYLOAD_LENGTH + 1));
+
+        assertEquals(ChunkFramer.MAX_LEGACY_CHUNKS + 1, packets.length);
+        for (byte[] packet : packets) {
+            assertEquals(0x10, packet[0]);
+            assertEquals(7, mChunkFramer.toMessageChunk(packet).messageId);
+        }
+    }
+
+    @Test
+    public void roundTripsMaxChunksWithShortLastChunk() {
+        assertRoundTrips(300, randomMessage((ChunkFramer.MAX_CHUNKS - 1) * CHUNK_PAYLOAD_LENGTH + 3));
+    }
+
+    @Test
+    public void wrapsMessageIdToSixteenBits() {
+        byte[][] packets = mChunkFramer.frame(0x12345, randomMessage(ChunkFramer.MAX_LEGACY_CHUNKS * CHUNK_PAYLOAD_LENGTH + 1), CHUNK_PAYLOAD_LENGTH);
+
+        assertEquals(0x2345, mChunkFramer.toMessageChunk(packets[0]).messageId);
+    }
+
+    @Test
+    public void rejectsMalformedHeaders() {
+        // Legacy index >= count
+        assertNull(mChunkFramer.toMessageChunk(new byte[]{0x22, 1}));
+        // Unknown header version
+        assertNull(mChunkFramer.toMessageChunk(new byte[]{0x20, 1, 0, 2}));
+        // Extended index >= count
+        assertNull(mChunkFramer.toMessageChunk(new byte[]{0x10, 1, 2, 2}));
+        // Extended count over MAX_CHUNKS
+        assertNull(mChunkFramer.toMessageChunk(new byte[]{0x10, 1, 0, (byte) 0x81, 0x01}));
+        // Extended header that runs off the end of the packet
+        assertNull(mChunkFramer.toMessageChunk(new byte[]{0x10, 1, (byte) 0x80}));
+        assertNull(mChunkFramer.toMessageChunk(new byte[0]));
+    }
+
+    private byte[][] assertRoundTrips(int messageId, byte[] message) {
+        byte[][] packets = mChunkFramer.frame(messageId, message, CHUNK_PAYLOAD_LENGTH);
+
+        MessageChunk[] pieces = new MessageChunk[packets.length];
+        for (byte[] packet : packets) {
+            InboundMessageChunk messageChunk = mChunkFramer.toMessageChunk(packet);
+            assertNotNull(messageChunk);
+            assertEquals(packets.length, messageChunk.count);
+            pieces[messageChunk.index] = messageChunk;
+        }
+        assertArrayEquals(message, mChunkFramer.reassemble(pieces));
+        return packets;
+    }
+
+    private byte[] randomMessage(int length) {
+        byte[] message = new byte[length];
+        new Random(length).nextBytes(message);
+        return message;
+    }
+}
@@ -0,0 +1,118 @@
+package com.paulmandal.atak.forwarder.comm.meshtastic;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiscoveryMessageCodecTest {
+    private static final int CHUNK_PAYLOAD_LENGTH = 200;
+
+    private final DiscoveryMessageCodec mDiscoveryMessageCodec = new DiscoveryMessageCodec();
+    private final ChunkFramer mChunkFramer = new ChunkFramer();
+
+    @Test
+    public void roundTripsNodeNumberMeshIdAndPackedUid() {
+        assertRoundTrips(new DiscoveryMessage("!a1b2c3d4", "ANDROID-0123456789abcdef", "BRAVO 1", true));
+    }
+
+    @Test
+    public void roundTripsStringMeshIdAndUnpackedUid() {
+        assertRoundTrips(new DiscoveryMessage("not-a-node-number", "S-1-5-21-1234-ABCD", "\u00dcn\u00efcode", false));
+    }
+
+    @Test
+    public void roundTripsEmptyFields() {
+        assertRoundTrips(new DiscoveryMessage("", "", "", false));
+    }
+
+    @Test
+    public void decodesLegacyCsv() {
+        byte[] packet = frameSingle("ATAKBCAST,!a1b2c3d4,ANDROID-abc,ALPHA,1".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(mChunkFramer.isDiscoveryMessage(packet));
+        DiscoveryMessage decoded = mDiscoveryMessageCodec.decode(packet, ChunkFramer.LEGACY_HEADER_LENGTH);
+        assertNotNull(decoded);
+        assertEquals("!a1b2c3d4", decoded.meshId);
+        assertEquals("ANDROID-abc", decoded.atakUid);
+        assertEquals("ALPHA", decoded.callsign);
+        assertTrue(decoded.initialDiscoveryMessage);
+    }
+
+    @Test
+    public void rejectsTruncatedBinary() {
+        byte[] encoded = mDiscoveryMessageCodec.encode(new DiscoveryMessage("!a1b2c3d4", "ANDROID-0123456789abcdef", "BRAVO 1", true));
+        for (int length = 1; length < encoded.length; length++) {
+            assertNull("length " + length, mDiscoveryMessageCodec.decode(Arrays.copyOf(encoded, length), 0));
+        }
+    }
+
+    @Test
+    public void doesNotClassifyExtendedHeaderWithFfMessageIdAsDiscovery() {
+        // Message id 255 makes the first varint byte after the header 0xff
+        byte[][] packets = mChunkFramer.frame(255, new byte[ChunkFramer.MAX_LEGACY_CHUNKS * 10 + 1], 10);
+
+        assertEquals((byte) 0xff, packets[0][1]);
+        for (byte[] packet : packets) {
+            assertFalse(mChunkFramer.isDiscoveryMessage(packet));
+        }
+    }
+
+    @Test
+    public void doesNotClassifyLaterLegacyChunksAsDiscovery() {
+        // e.g. Deflate output that happens to have 0xff or the legacy marker at the start of the second chunk
+        byte[] message = new byte[20];
+        message[10] = DiscoveryMessageCodec.BINARY_DISCOVERY_TYPE;
+        byte[][] packets = mChunkFramer.frame(0, message, 10);
+        assertFalse(mChunkFramer.isDiscoveryMessage(packets[1]));
+
+        byte[] marker = "ATAKBCAST,,,,".getBytes(StandardCharsets.UTF_8);
+        message = new byte[10 + marker.length];
+        System.arraycopy(marker, 0, message, 10, marker.length);
+        packets = mChunkFramer.frame(0, message, 10);
+        assertFalse(mChunkFramer.isDiscoveryMessage(packets[1]));
+    }
+
+    @Test
+    public void doesNotClassifyFirstChunkOfMultiChunkMessageAsDiscovery() {
+        byte[] message = new byte[20];
+        message[0] = DiscoveryMessageCodec.BINARY_DISCOVERY_TYPE;
+        byte[][] packets = mChunkFramer.frame(0, message, 10);
+
+        assertFalse(mChunkFramer.isDiscoveryMessage(packets[0]));
+    }
+
+    @Test
+    public void doesNotClassifyOtherSingleChunkPayloadsAsDiscovery() {
+        assertFalse(mChunkFramer.isDiscoveryMessage(frameSingle(new byte[]{(byte) 0xf7, 1, 2, 3})));
+        assertFalse(mChunkFramer.isDiscoveryMessage(frameSingle(new byte[]{(byte) 0xfe, 1, 2, 3})));
+        assertFalse(mChunkFramer.isDiscoveryMessage(frameSingle(new byte[]{0x0a, 1, 2, 3})));
+        assertFalse(mChunkFramer.isDiscoveryMessage(frameSingle("ATAKBCAS".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(mChunkFramer.isDiscoveryMessage(new byte[]{0x01}));
+        assertFalse(mChunkFramer.isDiscoveryMessage(new byte[0]));
+    }
+
+    private void assertRoundTrips(DiscoveryMessage discoveryMessage) {
+        byte[] packet = frameSingle(mDiscoveryMessageCodec.encode(discoveryMessage));
+        assertTrue(mChunkFramer.isDiscoveryMessage(packet));
+
+        DiscoveryMessage decoded = mDiscoveryMessageCodec.decode(packet, ChunkFramer.LEGACY_HEADER_LENGTH);
+        assertNotNull(decoded);
+        assertEquals(discoveryMessage.meshId, decoded.meshId);
+        assertEquals(discoveryMessage.atakUid, decoded.atakUid);
+        assertEquals(discoveryMessage.callsign, decoded.callsign);
+        assertEquals(discoveryMessage.initialDiscoveryMessage, decoded.initialDiscoveryMessage);
+    }
+
+    private byte[] frameSingle(byte[] message) {
+        byte[][] packets = mChunkFramer.frame(0, message, CHUNK_PAYLOAD_LENGTH);
+        assertEquals(1, packets.length);
+        return packets[0];
+    }
+}
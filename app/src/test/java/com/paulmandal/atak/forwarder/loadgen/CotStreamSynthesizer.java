@@ -0,0 +1,206 @@
+package com.paulmandal.atak.forwarder.loadgen;
+
+import com.atakmap.coremap.cot.event.CotDetail;
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotPoint;
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+import com.paulmandal.atak.libcotshrink.pub.api.CotShrinker;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds synthetic PLI, GeoChat and marker CoT that looks like what ATAK sends. Chat and marker events are padded with
+ * remarks until their CotShrinker output hits the requested payload size, the padding needed is measured once per
+ * stream and reused.
+ */
+public class CotStreamSynthesizer {
+    public enum StreamType {
+        PLI,
+        CHAT,
+        MARKER
+    }
+
+    public static final String UID_PREFIX = "LOADGEN-";
+
+    private static final String TYPE_PLI = "a-f-G-U-C";
+    private static final String TYPE_CHAT = "b-t-f";
+    private static final String TYPE_MARKER = "a-u-G";
+
+    private static final String HOW_GPS = "m-g";
+    private static final String HOW_HUMAN = "h-g-i-g-o";
+
+    private static final double BASE_LAT = 39.7281;
+    private static final double BASE_LON = -105.0862;
+    private static final double BASE_HAE = 1643.4;
+    private static final double UNKNOWN_LE_CE = 9999999.0;
+
+    private static final long PLI_STALE_MS = 60000;
+    private static final long MARKER_STALE_MS = 300000;
+    private static final long CHAT_STALE_MS = 86400000;
+
+    private static final String[] TEAMS = {"Cyan", "Yellow", "Red", "Green", "Blue", "Magenta"};
+    private static final String CHAT_ROOM = "All Chat Rooms";
+    private static final String FILLER = "Moving to rally point, holding at checkpoint, vehicle spotted on the ridge road. ";
+
+    private final CotShrinker mCotShrinker;
+    private final String mDeviceId;
+
+    private final Map<StreamType, PaddingCalibration> mPaddingCalibrations = new EnumMap<>(StreamType.class);
+
+    public CotStreamSynthesizer(CotShrinker cotShrinker, String deviceId) {
+        mCotShrinker = cotShrinker;
+        mDeviceId = deviceId;
+    }
+
+    public static boolean isSynthesized(CotEvent cotEvent) {
+        return cotEvent.getUID() != null && cotEvent.getUID().contains(UID_PREFIX);
+    }
+
+    public int getShrunkSize(CotEvent cotEvent) {
+        return mCotShrinker.toByteArrayLossy(cotEvent).length;
+    }
+
+    public CotEvent createPli(int userIndex, long currentTime) {
+        // Walk each user slowly around their own spot so consecutive PLIs differ
+        double angle = currentTime / 60000.0 + userIndex;
+        double lat = BASE_LAT + userIndex * 0.001 + Math.sin(angle) * 0.0005;
+        double lon = BASE_LON + userIndex * 0.001 + Math.cos(angle) * 0.0005;
+
+        CotEvent cotEvent = createEvent(getUserUid(userIndex), TYPE_PLI, HOW_GPS, currentTime, PLI_STALE_MS);
+        cotEvent.setPoint(new CotPoint(lat, lon, BASE_HAE, 9.9, UNKNOWN_LE_CE));
+
+        String callsign = getCallsign(userIndex);
+        CotDetail detail = new CotDetail("detail");
+        detail.addChild(createDetail("takv", "os", "29", "version", "4.8.1.5 (5b5b6b6c).1677608565-CIV", "device", "LOADGEN", "platform", "ATAK-CIV"));
+        detail.addChild(createDetail("contact", "endpoint", "*:-1:stcp", "callsign", callsign));
+        detail.addChild(createDetail("uid", "Droid", callsign));
+        detail.addChild(createDetail("precisionlocation", "altsrc", "GPS", "geopointsrc", "GPS"));
+        detail.addChild(createDetail("__group", "role", "Team Member", "name", TEAMS[userIndex % TEAMS.length]));
+        detail.addChild(createDetail("status", "battery", Integer.toString(100 - (int) (currentTime / 60000 % 100))));
+        detail.addChild(createDetail("track", "course", String.format(Locale.US, "%.1f", Math.toDegrees(angle) % 360), "speed", "1.2"));
+        cotEvent.setDetail(detail);
+        return cotEvent;
+    }
+
+    public CotEvent createChat(int sequence, long currentTime, int payloadBytes) {
+        int paddingLength = getPaddingLength(StreamType.CHAT, sequence, currentTime, payloadBytes);
+        return createChat(sequence, currentTime, buildPadding(sequence, paddingLength));
+    }
+
+    public CotEvent createMarker(int sequence, long currentTime, int payloadBytes) {
+        int paddingLength = getPaddingLength(StreamType.MARKER, sequence, currentTime, payloadBytes);
+        return createMarker(sequence, currentTime, buildPadding(sequence, paddingLength));
+    }
+
+    private CotEvent createChat(int sequence, long currentTime, String message) {
+        String senderUid = getUserUid(0);
+        String senderCallsign = getCallsign(0);
+        String uid = String.format("GeoChat.%s.%s.%s%d", senderUid, CHAT_ROOM, UID_PREFIX, sequence);
+
+        CotEvent cotEvent = createEvent(uid, TYPE_CHAT, HOW_HUMAN, currentTime, CHAT_STALE_MS);
+        cotEvent.setPoint(new CotPoint(0, 0, UNKNOWN_LE_CE, UNKNOWN_LE_CE, UNKNOWN_LE_CE));
+
+        CotDetail detail = new CotDetail("detail");
+        CotDetail chat = createDetail("__chat", "parent", "RootContactGroup", "groupOwner", "false", "chatroom", CHAT_ROOM, "id", CHAT_ROOM, "senderCallsign", senderCallsign);
+        chat.addChild(createDetail("chatgrp", "uid0", senderUid, "uid1", CHAT_ROOM, "id", CHAT_ROOM));
+        detail.addChild(chat);
+        detail.addChild(createDetail("link", "uid", senderUid, "type", TYPE_PLI, "relation", "p-p"));
+        CotDetail remarks = createDetail("remarks", "source", "BAO.F.ATAK." + senderUid, "to", CHAT_ROOM, "time", new CoordinatedTime(currentTime).toString());
+        remarks.setInnerText(message);
+        detail.addChild(remarks);
+        cotEvent.setDetail(detail);
+        return cotEvent;
+    }
+
+    private CotEvent createMarker(int sequence, long currentTime, String remarksText) {
+        String uid = UID_PREFIX + mDeviceId + "-marker-" + sequence;
+
+        CotEvent cotEvent = createEvent(uid, TYPE_MARKER, HOW_HUMAN, currentTime, MARKER_STALE_MS);
+        cotEvent.setPoint(new CotPoint(BASE_LAT + sequence * 0.0001, BASE_LON - sequence * 0.0001, BASE_HAE, UNKNOWN_LE_CE, UNKNOWN_LE_CE));
+
+        CotDetail detail = new CotDetail("detail");
+        detail.addChild(createDetail("status", "readiness", "true"));
+        detail.addChild(createDetail("contact", "callsign", "U." + sequence));
+        detail.addChild(createDetail("usericon", "iconsetpath", "COT_MAPPING_2525B/a-u/a-u-G"));
+        detail.addChild(createDetail("link", "uid", getUserUid(0), "production_time", new CoordinatedTime(currentTime).toString(), "type", TYPE_PLI, "parent_callsign", getCallsign(0), "relation", "p-p"));
+        detail.addChild(createDetail("precisionlocation", "altsrc", "DTED2"));
+        CotDetail remarks = new CotDetail("remarks");
+        remarks.setInnerText(remarksText);
+        detail.addChild(remarks);
+        detail.addChild(createDetail("color", "argb", "-1"));
+        cotEvent.setDetail(detail);
+        return cotEvent;
+    }
+
+    /**
+     * Finds how much remarks text gets a stream's shrunk size to the target, string lengths are varints so one
+     * correction pass after the first estimate is enough
+     */
+    private int getPaddingLength(StreamType streamType, int sequence, long currentTime, int payloadBytes) {
+        PaddingCalibration calibration = mPaddingCalibrations.get(streamType);
+        if (calibration != null && calibration.payloadBytes == payloadBytes) {
+            return calibration.paddingLength;
+        }
+
+        int paddingLength = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            CotEvent cotEvent = streamType == StreamType.CHAT
+                    ? createChat(sequence, currentTime, buildPadding(sequence, paddingLength))
+                    : createMarker(sequence, currentTime, buildPadding(sequence, paddingLength));
+            paddingLength = Math.max(0, paddingLength + payloadBytes - getShrunkSize(cotEvent));
+        }
+
+        mPaddingCalibrations.put(streamType, new PaddingCalibration(payloadBytes, paddingLength));
+        return paddingLength;
+    }
+
+    private String buildPadding(int sequence, int paddingLength) {
+        StringBuilder sb = new StringBuilder(paddingLength);
+        int offset = sequence % FILLER.length();
+        for (int i = 0; i < paddingLength; i++) {
+            sb.append(FILLER.charAt((offset + i) % FILLER.length()));
+        }
+        return sb.toString();
+    }
+
+    private CotEvent createEvent(String uid, String type, String how, long currentTime, long staleAfterMs) {
+        CoordinatedTime time = new CoordinatedTime(currentTime);
+
+        CotEvent cotEvent = new CotEvent();
+        cotEvent.setUID(uid);
+        cotEvent.setType(type);
+        cotEvent.setTime(time);
+        cotEvent.setStart(time);
+        cotEvent.setStale(new CoordinatedTime(currentTime + staleAfterMs));
+        cotEvent.setHow(how);
+        return cotEvent;
+    }
+
+    private CotDetail createDetail(String name, String... attributes) {
+        CotDetail cotDetail = new CotDetail(name);
+        for (int i = 0; i < attributes.length; i += 2) {
+            cotDetail.setAttribute(attributes[i], attributes[i + 1]);
+        }
+        return cotDetail;
+    }
+
+    private String getUserUid(int userIndex) {
+        return UID_PREFIX + mDeviceId + "-" + userIndex;
+    }
+
+    private String getCallsign(int userIndex) {
+        return "LG-" + mDeviceId + "-" + userIndex;
+    }
+
+    private static class PaddingCalibration {
+        public final int payloadBytes;
+        public final int paddingLength;
+
+        public PaddingCalibration(int payloadBytes, int paddingLength) {
+            this.payloadBytes = payloadBytes;
+            this.paddingLength = paddingLength;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.paulmandal.atak.forwarder.loadgen;
+
+import android.content.Context;
+
+import com.atakmap.android.maps.MapView;
+import com.atakmap.comms.CommsLogger;
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.paulmandal.atak.forwarder.ForwarderConstants;
+import com.paulmandal.atak.forwarder.helpers.Logger;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a LoadProfile into the OutboundMessageHandler the same way ATAK hands it outbound CoT, so everything from
+ * duplicate suppression down to the radio sees realistic traffic, and samples LoadMetrics while it runs. Used to
+ * capacity-plan how many users a channel preset can carry.
+ */
+public class LoadGenerator implements Destroyable {
+    private static final String TAG = ForwarderConstants.DEBUG_TAG_PREFIX + LoadGenerator.class.getSimpleName();
+
+    private static final long ONE_MINUTE_MS = 60000;
+
+    private final CommsLogger mOutboundMessageHandler;
+    private final CotStreamSynthesizer mCotStreamSynthesizer;
+    private final LoadMetrics mLoadMetrics;
+    private final Logger mLogger;
+    private final ScheduledExecutorService mExecutor;
+
+    private final List<ScheduledFuture<?>> mScheduledStreams = new ArrayList<>();
+
+    private LoadProfile mLoadProfile;
+    private int mChatSequence;
+    private int mMarkerSequence;
+
+    public LoadGenerator(List<Destroyable> destroyables,
+                         CommsLogger outboundMessageHandler,
+                         CotStreamSynthesizer cotStreamSynthesizer,
+                         LoadMetrics loadMetrics,
+                         Logger logger,
+                         ScheduledExecutorService scheduledExecutorService) {
+        mOutboundMessageHandler = outboundMessageHandler;
+        mCotStreamSynthesizer = cotStreamSynthesizer;
+        mLoadMetrics = loadMetrics;
+        mLogger = logger;
+        mExecutor = scheduledExecutorService;
+
+        destroyables.add(this);
+    }
+
+    public synchronized boolean isRunning() {
+        return !mScheduledStreams.isEmpty();
+    }
+
+    public synchronized void start(LoadProfile loadProfile) {
+        if (isRunning()) {
+            mLogger.e(TAG, "start() called while a load run is in progress, ignoring");
+            return;
+        }
+
+        mLogger.i(TAG, "Starting load run, " + loadProfile);
+        mLoadProfile = loadProfile;
+        mChatSequence = 0;
+        mMarkerSequence = 0;
+        mLoadMetrics.start(System.currentTimeMillis());
+
+        // Spread the team's PLIs across the interval instead of sending them all at once
+        for (int i = 0; i < loadProfile.teamSize; i++) {
+            int userIndex = i;
+            long initialDelayMs = loadProfile.pliIntervalMs * i / loadProfile.teamSize;
+            mScheduledStreams.add(mExecutor.scheduleAtFixedRate(() -> sendPli(userIndex), initialDelayMs, loadProfile.pliIntervalMs, TimeUnit.MILLISECONDS));
+        }
+
+        if (loadProfile.chatsPerMinute > 0) {
+            long periodMs = ONE_MINUTE_MS / loadProfile.chatsPerMinute;
+            mScheduledStreams.add(mExecutor.scheduleAtFixedRate(this::sendChat, periodMs, periodMs, TimeUnit.MILLISECONDS));
+        }
+
+        if (loadProfile.markersPerMinute > 0) {
+            long periodMs = ONE_MINUTE_MS / loadProfile.markersPerMinute;
+            mScheduledStreams.add(mExecutor.scheduleAtFixedRate(this::sendMarker, periodMs, periodMs, TimeUnit.MILLISECONDS));
+        }
+
+        mScheduledStreams.add(mExecutor.scheduleAtFixedRate(() -> mLoadMetrics.sample(System.currentTimeMillis()), loadProfile.sampleIntervalMs, loadProfile.sampleIntervalMs, TimeUnit.MILLISECONDS));
+        mScheduledStreams.add(mExecutor.schedule(this::stop, loadProfile.durationMs, TimeUnit.MILLISECONDS));
+    }
+
+    public synchronized void stop() {
+        if (!isRunning()) {
+            return;
+        }
+
+        for (ScheduledFuture<?> scheduledStream : mScheduledStreams) {
+            scheduledStream.cancel(false);
+        }
+        mScheduledStreams.clear();
+
+        mLoadMetrics.sample(System.currentTimeMillis());
+        mLogger.i(TAG, "Load run finished, generated PLI: " + mLoadMetrics.getGeneratedCount(CotStreamSynthesizer.StreamType.PLI)
+                + ", chat: " + mLoadMetrics.getGeneratedCount(CotStreamSynthesizer.StreamType.CHAT)
+                + ", markers: " + mLoadMetrics.getGeneratedCount(CotStreamSynthesizer.StreamType.MARKER));
+    }
+
+    @Override
+    public void onDestroy(Context context, MapView mapView) {
+        stop();
+        mExecutor.shutdown();
+    }
+
+    private void sendPli(int userIndex) {
+        long currentTime = System.currentTimeMillis();
+        send(CotStreamSynthesizer.StreamType.PLI, mCotStreamSynthesizer.createPli(userIndex, currentTime));
+    }
+
+    private void sendChat() {
+        long currentTime = System.currentTimeMillis();
+        send(CotStreamSynthesizer.StreamType.CHAT, mCotStreamSynthesizer.createChat(mChatSequence++, currentTime, mLoadProfile.chatPayloadBytes));
+    }
+
+    private void sendMarker() {
+        long currentTime = System.currentTimeMillis();
+        send(CotStreamSynthesizer.StreamType.MARKER, mCotStreamSynthesizer.createMarker(mMarkerSequence++, currentTime, mLoadProfile.markerPayloadBytes));
+    }
+
+    private void send(CotStreamSynthesizer.StreamType streamType, CotEvent cotEvent) {
+        mLoadMetrics.onCotGenerated(streamType, mCotStreamSynthesizer.getShrunkSize(cotEvent));
+        mOutboundMessageHandler.logSend(cotEvent, (String[]) null);
+    }
+}
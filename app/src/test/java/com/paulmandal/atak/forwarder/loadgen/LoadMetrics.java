@@ -0,0 +1,176 @@
+package com.paulmandal.atak.forwarder.loadgen;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.paulmandal.atak.forwarder.comm.meshtastic.MeshSender;
+import com.paulmandal.atak.forwarder.comm.queue.CommandQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Time series of what a load run did to the outbound pipeline: queue depth, how many sends were coalesced away, chunks
+ * handed to the radio and end-to-end latency of synthesized CoT that came back in from the mesh. Latency is measured
+ * against the CoT's own time, so across devices it is only as good as their clock sync.
+ */
+public class LoadMetrics {
+    private final CommandQueue mCommandQueue;
+    private final MeshSender mMeshSender;
+
+    private final Map<CotStreamSynthesizer.StreamType, Long> mGeneratedCounts = new EnumMap<>(CotStreamSynthesizer.StreamType.class);
+    private final List<Long> mIntervalLatenciesMs = new ArrayList<>();
+    private final List<Sample> mSamples = new ArrayList<>();
+
+    private long mStartTime;
+    private long mGenerated;
+    private long mGeneratedBytes;
+    private long mDeliveries;
+
+    // The pipeline's counters are lifetime totals, samples report them relative to start()
+    private long mBaseQueued;
+    private long mBaseCoalesced;
+    private long mBaseMessagesSent;
+    private long mBaseChunksSent;
+
+    public LoadMetrics(CommandQueue commandQueue, MeshSender meshSender) {
+        mCommandQueue = commandQueue;
+        mMeshSender = meshSender;
+    }
+
+    public synchronized void start(long currentTime) {
+        mStartTime = currentTime;
+        mGeneratedCounts.clear();
+        mIntervalLatenciesMs.clear();
+        mSamples.clear();
+        mGenerated = 0;
+        mGeneratedBytes = 0;
+        mDeliveries = 0;
+
+        mBaseQueued = mCommandQueue.getSendMessagesQueued();
+        mBaseCoalesced = mCommandQueue.getSendMessagesCoalesced();
+        mBaseMessagesSent = mMeshSender.getMessagesSent();
+        mBaseChunksSent = mMeshSender.getChunksSent();
+    }
+
+    public synchronized void onCotGenerated(CotStreamSynthesizer.StreamType streamType, int shrunkSize) {
+        Long count = mGeneratedCounts.get(streamType);
+        mGeneratedCounts.put(streamType, count == null ? 1 : count + 1);
+        mGenerated++;
+        mGeneratedBytes += shrunkSize;
+    }
+
+    /**
+     * Call for every CoT coming out of the InboundMessageHandler, anything that isn't synthesized load is ignored
+     */
+    public synchronized void onCotDelivered(CotEvent cotEvent, long currentTime) {
+        if (!CotStreamSynthesizer.isSynthesized(cotEvent) || cotEvent.getTime() == null) {
+            return;
+        }
+
+        mDeliveries++;
+        mIntervalLatenciesMs.add(Math.max(0, currentTime - cotEvent.getTime().getMilliseconds()));
+    }
+
+    public synchronized Sample sample(long currentTime) {
+        long p50LatencyMs = -1;
+        long p99LatencyMs = -1;
+        if (!mIntervalLatenciesMs.isEmpty()) {
+            Collections.sort(mIntervalLatenciesMs);
+            p50LatencyMs = percentile(mIntervalLatenciesMs, 50);
+            p99LatencyMs = percentile(mIntervalLatenciesMs, 99);
+            mIntervalLatenciesMs.clear();
+        }
+
+        Sample sample = new Sample(currentTime - mStartTime,
+                mGenerated,
+                mGeneratedBytes,
+                mCommandQueue.getQueueSize(),
+                mCommandQueue.getSendMessagesQueued() - mBaseQueued,
+                mCommandQueue.getSendMessagesCoalesced() - mBaseCoalesced,
+                mMeshSender.getMessagesSent() - mBaseMessagesSent,
+                mMeshSender.getChunksSent() - mBaseChunksSent,
+                mDeliveries,
+                p50LatencyMs,
+                p99LatencyMs);
+        mSamples.add(sample);
+        return sample;
+    }
+
+    public synchronized List<Sample> getSamples() {
+        return new ArrayList<>(mSamples);
+    }
+
+    public synchronized long getGeneratedCount(CotStreamSynthesizer.StreamType streamType) {
+        Long count = mGeneratedCounts.get(streamType);
+        return count == null ? 0 : count;
+    }
+
+    public synchronized String toCsv() {
+        StringBuilder sb = new StringBuilder(Sample.CSV_HEADER).append('\n');
+        for (Sample sample : mSamples) {
+            sb.append(sample.toCsvRow()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static long percentile(List<Long> sortedValues, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedValues.size()) - 1;
+        return sortedValues.get(Math.max(0, Math.min(index, sortedValues.size() - 1)));
+    }
+
+    /**
+     * Counters are cumulative since start(), latency percentiles cover only deliveries since the previous sample
+     */
+    public static class Sample {
+        public static final String CSV_HEADER = "elapsedMs,generated,generatedBytes,queueDepth,queued,coalesced,coalescingRate,messagesSent,chunksSent,deliveries,p50LatencyMs,p99LatencyMs";
+
+        public final long elapsedMs;
+        public final long generated;
+        public final long generatedBytes;
+        public final int queueDepth;
+        public final long queued;
+        public final long coalesced;
+        public final long messagesSent;
+        public final long chunksSent;
+        public final long deliveries;
+        public final long p50LatencyMs;
+        public final long p99LatencyMs;
+
+        public Sample(long elapsedMs,
+                      long generated,
+                      long generatedBytes,
+                      int queueDepth,
+                      long queued,
+                      long coalesced,
+                      long messagesSent,
+                      long chunksSent,
+                      long deliveries,
+                      long p50LatencyMs,
+                      long p99LatencyMs) {
+            this.elapsedMs = elapsedMs;
+            this.generated = generated;
+            this.generatedBytes = generatedBytes;
+            this.queueDepth = queueDepth;
+            this.queued = queued;
+            this.coalesced = coalesced;
+            this.messagesSent = messagesSent;
+            this.chunksSent = chunksSent;
+            this.deliveries = deliveries;
+            this.p50LatencyMs = p50LatencyMs;
+            this.p99LatencyMs = p99LatencyMs;
+        }
+
+        public double getCoalescingRate() {
+            long total = queued + coalesced;
+            return total == 0 ? 0 : (double) coalesced / total;
+        }
+
+        public String toCsvRow() {
+            return String.format(Locale.US, "%d,%d,%d,%d,%d,%d,%.3f,%d,%d,%d,%d,%d",
+                    elapsedMs, generated, generatedBytes, queueDepth, queued, coalesced, getCoalescingRate(), messagesSent, chunksSent, deliveries, p50LatencyMs, p99LatencyMs);
+        }
+    }
+}
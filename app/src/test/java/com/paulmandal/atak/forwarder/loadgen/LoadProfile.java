@@ -0,0 +1,42 @@
+package com.paulmandal.atak.forwarder.loadgen;
+
+/**
+ * What a LoadGenerator emits: a team of users reporting PLIs, plus chat and marker streams. Payload sizes are the
+ * target CotShrinker output sizes in bytes, i.e. what actually goes over the air before chunking.
+ */
+public class LoadProfile {
+    public final int teamSize;
+    public final long pliIntervalMs;
+    public final int chatsPerMinute;
+    public final int chatPayloadBytes;
+    public final int markersPerMinute;
+    public final int markerPayloadBytes;
+    public final long durationMs;
+    public final long sampleIntervalMs;
+
+    public LoadProfile(int teamSize,
+                       long pliIntervalMs,
+                       int chatsPerMinute,
+                       int chatPayloadBytes,
+                       int markersPerMinute,
+                       int markerPayloadBytes,
+                       long durationMs,
+                       long sampleIntervalMs) {
+        this.teamSize = teamSize;
+        this.pliIntervalMs = pliIntervalMs;
+        this.chatsPerMinute = chatsPerMinute;
+        this.chatPayloadBytes = chatPayloadBytes;
+        this.markersPerMinute = markersPerMinute;
+        this.markerPayloadBytes = markerPayloadBytes;
+        this.durationMs = durationMs;
+        this.sampleIntervalMs = sampleIntervalMs;
+    }
+
+    @Override
+    public String toString() {
+        return "team: " + teamSize + " @ " + pliIntervalMs + "ms"
+                + ", chat: " + chatsPerMinute + "/min @ " + chatPayloadBytes + "b"
+                + ", markers: " + markersPerMinute + "/min @ " + markerPayloadBytes + "b"
+                + ", duration: " + durationMs + "ms";
+    }
+}
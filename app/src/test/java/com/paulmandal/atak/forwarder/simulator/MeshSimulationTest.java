@@ -0,0 +1,114 @@
+package com.paulmandal.atak.forwarder.simulator;
+
+import com.paulmandal.atak.forwarder.loadgen.LoadMetrics;
+import com.paulmandal.atak.forwarder.loadgen.LoadProfile;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Short fixed-seed runs that check delivery and ordering end to end, plus the mesh simulator's configurable runs that
+ * print a throughput / latency / delivery report. The configurable runs take as long as their settings ask for, so they
+ * only run when asked, e.g.:
+ *
+ * ./gradlew testCivDebugUnitTest --tests '*MeshSimulationTest' -Dsim.run=true -Dsim.nodes=8 -Dsim.loss=0.1 -Dsim.channelMode=0
+ *
+ * Add -Dsim.load=true to run the LoadGenerator profile on every node and print its per-node metrics as CSV.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 30)
+public class MeshSimulationTest {
+    private static final int FIXED_NODES = 3;
+    private static final int FIXED_MESSAGES_PER_NODE = 10;
+    private static final long FIXED_SEED = 1;
+    private static final double MIN_LOSSY_DELIVERY_RATIO = 0.85;
+
+    @Test
+    public void deliversEverythingInOrderWithoutLoss() throws InterruptedException {
+        SimulationStats simulationStats = runFixed(0.0, 0);
+
+        assertEquals(simulationStats.getExpectedDeliveries(), simulationStats.getDeliveries());
+        assertEquals(0, simulationStats.getOutOfOrderDeliveries());
+    }
+
+    @Test
+    public void deliversMostMessagesInOrderWithLoss() throws InterruptedException {
+        SimulationStats simulationStats = runFixed(0.05, 25);
+
+        assertTrue("Delivery ratio " + simulationStats.getDeliveryRatio(), simulationStats.getDeliveryRatio() >= MIN_LOSSY_DELIVERY_RATIO);
+        assertEquals(0, simulationStats.getOutOfOrderDeliveries());
+    }
+
+    @Test
+    public void runSimulation() throws InterruptedException {
+        Assume.assumeTrue(Boolean.getBoolean("sim.run"));
+
+        MeshSimulatorConfig config = MeshSimulatorConfig.fromSystemProperties();
+        MeshSimulator meshSimulator = new MeshSimulator(RuntimeEnvironment.getApplication(), config);
+
+        SimulationStats simulationStats = meshSimulator.run();
+        System.out.println(simulationStats.buildReport());
+
+        if (config.packetLossRate < 1) {
+            assertTrue("Nothing made it across the mesh", simulationStats.getDeliveries() > 0);
+        }
+        assertEquals(0, simulationStats.getOutOfOrderDeliveries());
+    }
+
+    @Test
+    public void runLoadProfile() throws InterruptedException {
+        Assume.assumeTrue(Boolean.getBoolean("sim.load"));
+
+        MeshSimulatorConfig config = MeshSimulatorConfig.fromSystemProperties();
+        LoadProfile loadProfile = MeshSimulatorConfig.loadProfileFromSystemProperties();
+        MeshSimulator meshSimulator = new MeshSimulator(RuntimeEnvironment.getApplication(), config);
+
+        List<LoadMetrics> loadMetrics = meshSimulator.runLoad(loadProfile);
+        System.out.println("Load run (" + config + ", " + loadProfile + ")");
+        for (int i = 0; i < loadMetrics.size(); i++) {
+            System.out.println("node " + i);
+            System.out.print(loadMetrics.get(i).toCsv());
+        }
+
+        for (int i = 0; i < loadMetrics.size(); i++) {
+            List<LoadMetrics.Sample> samples = loadMetrics.get(i).getSamples();
+            LoadMetrics.Sample lastSample = samples.get(samples.size() - 1);
+            assertTrue("node " + i + " generated nothing", lastSample.generated > 0);
+            assertEquals("node " + i + " didn't drain its queue", 0, lastSample.queueDepth);
+            if (config.packetLossRate < 1) {
+                assertTrue("node " + i + " received nothing", lastSample.deliveries > 0);
+            }
+        }
+    }
+
+    private SimulationStats runFixed(double packetLossRate, long latencyJitterMs) throws InterruptedException {
+        MeshSimulatorConfig config = new MeshSimulatorConfig(FIXED_NODES,
+                FIXED_MESSAGES_PER_NODE,
+                0,
+                packetLossRate,
+                50,
+                latencyJitterMs,
+                200,
+                true,
+                "6", // SHORT_FAST
+                "1", // US
+                "100",
+                "3",
+                false,
+                false,
+                30000,
+                FIXED_SEED);
+        SimulationStats simulationStats = new MeshSimulator(RuntimeEnvironment.getApplication(), config).run();
+        System.out.println(simulationStats.buildReport());
+        return simulationStats;
+    }
+}
@@ -0,0 +1,142 @@
+package com.paulmandal.atak.forwarder.simulator;
+
+import android.content.Context;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.paulmandal.atak.forwarder.loadgen.LoadMetrics;
+import com.paulmandal.atak.forwarder.loadgen.LoadProfile;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Builds N SimulatedNodes on one SimulatedMesh, has every node send a stream of markers through its
+ * OutboundMessageHandler and waits for them to come out of every other node's InboundMessageHandler
+ */
+public class MeshSimulator {
+    private static final String MARKER_TEMPLATE = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>"
+            + "<event version='2.0' uid='%s' type='a-u-G' time='%s' start='%s' stale='%s' how='h-g-i-g-o'>"
+            + "<point lat='%.7f' lon='%.7f' hae='9999999.0' ce='9999999.0' le='9999999.0' />"
+            + "<detail><contact callsign='%s' /><precisionlocation altsrc='???' />"
+            + "<link uid='%s' production_time='%s' type='a-f-G-U-C' parent_callsign='%s' relation='p-p' />"
+            + "<archive /><usericon iconsetpath='COT_MAPPING_2525B/a-u/a-u-G' /></detail></event>";
+    private static final long STALE_AFTER_MS = 300000;
+    private static final long IDLE_POLL_INTERVAL_MS = 100;
+
+    private final Context mBaseContext;
+    private final MeshSimulatorConfig mConfig;
+
+    public MeshSimulator(Context baseContext, MeshSimulatorConfig config) {
+        mBaseContext = baseContext;
+        mConfig = config;
+    }
+
+    public SimulationStats run() throws InterruptedException {
+        SimulatedMesh simulatedMesh = new SimulatedMesh(mConfig);
+        SimulationStats simulationStats = new SimulationStats(mConfig, simulatedMesh);
+
+        List<SimulatedNode> nodes = new ArrayList<>();
+        for (int i = 0; i < mConfig.nodeCount; i++) {
+            nodes.add(new SimulatedNode(mBaseContext, simulatedMesh, simulationStats, mConfig, i));
+        }
+
+        for (SimulatedNode node : nodes) {
+            node.connect();
+        }
+
+        try {
+            for (int messageIndex = 0; messageIndex < mConfig.messagesPerNode; messageIndex++) {
+                for (SimulatedNode node : nodes) {
+                    CotEvent cotEvent = createMarker(node.getMeshId(), messageIndex);
+                    simulationStats.onMessageSent(node.getMeshId(), cotEvent.getUID(), System.currentTimeMillis());
+                    node.send(cotEvent);
+                }
+                if (mConfig.sendIntervalMs > 0) {
+                    Thread.sleep(mConfig.sendIntervalMs);
+                }
+            }
+
+            int expectedDeliveries = mConfig.nodeCount * mConfig.messagesPerNode * (mConfig.nodeCount - 1);
+            simulationStats.awaitDeliveries(expectedDeliveries, mConfig.drainTimeoutMs);
+
+            return simulationStats;
+        } finally {
+            for (SimulatedNode node : nodes) {
+                node.destroy();
+            }
+            simulatedMesh.shutdown();
+        }
+    }
+
+    /**
+     * Runs a LoadGenerator with the given profile on every node until it finishes and the mesh goes quiet, returns each
+     * node's LoadMetrics in node order
+     */
+    public List<LoadMetrics> runLoad(LoadProfile loadProfile) throws InterruptedException {
+        SimulatedMesh simulatedMesh = new SimulatedMesh(mConfig);
+        SimulationStats simulationStats = new SimulationStats(mConfig, simulatedMesh);
+
+        List<SimulatedNode> nodes = new ArrayList<>();
+        for (int i = 0; i < mConfig.nodeCount; i++) {
+            nodes.add(new SimulatedNode(mBaseContext, simulatedMesh, simulationStats, mConfig, i));
+        }
+
+        for (SimulatedNode node : nodes) {
+            node.connect();
+        }
+
+        try {
+            for (SimulatedNode node : nodes) {
+                node.startLoad(loadProfile);
+            }
+
+            long deadline = System.currentTimeMillis() + loadProfile.durationMs + mConfig.drainTimeoutMs;
+            while (System.currentTimeMillis() < deadline && !isQuiet(nodes)) {
+                Thread.sleep(IDLE_POLL_INTERVAL_MS);
+            }
+
+            List<LoadMetrics> loadMetrics = new ArrayList<>();
+            for (SimulatedNode node : nodes) {
+                LoadMetrics nodeLoadMetrics = node.getLoadMetrics();
+                nodeLoadMetrics.sample(System.currentTimeMillis());
+                loadMetrics.add(nodeLoadMetrics);
+            }
+            return loadMetrics;
+        } finally {
+            for (SimulatedNode node : nodes) {
+                node.destroy();
+            }
+            simulatedMesh.shutdown();
+        }
+    }
+
+    private boolean isQuiet(List<SimulatedNode> nodes) {
+        for (SimulatedNode node : nodes) {
+            if (node.isLoadRunning() || !node.isIdle()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CotEvent createMarker(String meshId, int messageIndex) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        long currentTime = System.currentTimeMillis();
+        String time = dateFormat.format(new Date(currentTime));
+        String stale = dateFormat.format(new Date(currentTime + STALE_AFTER_MS));
+        String callsign = "SIM" + meshId.substring(1);
+        String uid = "sim-" + meshId.substring(1) + "-" + messageIndex;
+
+        return CotEvent.parse(String.format(Locale.US, MARKER_TEMPLATE,
+                uid, time, time, stale,
+                39.0 + messageIndex * 0.0001, -77.0 - messageIndex * 0.0001,
+                "Marker " + messageIndex,
+                "ANDROID-" + meshId.substring(1), time, callsign));
+    }
+}
@@ -0,0 +1,112 @@
+package com.paulmandal.atak.forwarder.simulator;
+
+import com.paulmandal.atak.forwarder.loadgen.LoadProfile;
+
+/**
+ * Knobs for a simulated run, each one can be overridden with a -Dsim.* system property
+ */
+public class MeshSimulatorConfig {
+    public final int nodeCount;
+    public final int messagesPerNode;
+    public final long sendIntervalMs;
+    public final double packetLossRate;
+    public final long latencyMs;
+    public final long latencyJitterMs;
+    public final long ackDelayMs;
+    public final boolean simulateAirtime;
+    public final String channelMode;
+    public final String regionCode;
+    public final String airtimeBudgetPercent;
+    public final String sendWindowSize;
+    public final boolean pliDeltaEncoding;
+    public final boolean payloadCompression;
+    public final long drainTimeoutMs;
+    public final long seed;
+
+    public MeshSimulatorConfig(int nodeCount,
+                               int messagesPerNode,
+                               long sendIntervalMs,
+                               double packetLossRate,
+                               long latencyMs,
+                               long latencyJitterMs,
+                               long ackDelayMs,
+                               boolean simulateAirtime,
+                               String channelMode,
+                               String regionCode,
+                               String airtimeBudgetPercent,
+                               String sendWindowSize,
+                               boolean pliDeltaEncoding,
+                               boolean payloadCompression,
+                               long drainTimeoutMs,
+                               long seed) {
+        this.nodeCount = nodeCount;
+        this.messagesPerNode = messagesPerNode;
+        this.sendIntervalMs = sendIntervalMs;
+        this.packetLossRate = packetLossRate;
+        this.latencyMs = latencyMs;
+        this.latencyJitterMs = latencyJitterMs;
+        this.ackDelayMs = ackDelayMs;
+        this.simulateAirtime = simulateAirtime;
+        this.channelMode = channelMode;
+        this.regionCode = regionCode;
+        this.airtimeBudgetPercent = airtimeBudgetPercent;
+        this.sendWindowSize = sendWindowSize;
+        this.pliDeltaEncoding = pliDeltaEncoding;
+        this.payloadCompression = payloadCompression;
+        this.drainTimeoutMs = drainTimeoutMs;
+        this.seed = seed;
+    }
+
+    public static MeshSimulatorConfig fromSystemProperties() {
+        return new MeshSimulatorConfig(
+                Integer.parseInt(System.getProperty("sim.nodes", "4")),
+                Integer.parseInt(System.getProperty("sim.messagesPerNode", "20")),
+                Long.parseLong(System.getProperty("sim.sendIntervalMs", "500")),
+                Double.parseDouble(System.getProperty("sim.loss", "0.05")),
+                Long.parseLong(System.getProperty("sim.latencyMs", "50")),
+                Long.parseLong(System.getProperty("sim.jitterMs", "25")),
+                Long.parseLong(System.getProperty("sim.ackDelayMs", "200")),
+                Boolean.parseBoolean(System.getProperty("sim.airtime", "true")),
+                System.getProperty("sim.channelMode", "6"), // SHORT_FAST
+                System.getProperty("sim.region", "1"), // US
+                System.getProperty("sim.airtimeBudgetPercent", "100"),
+                System.getProperty("sim.sendWindow", "3"),
+                Boolean.parseBoolean(System.getProperty("sim.pliDeltas", "false")),
+                Boolean.parseBoolean(System.getProperty("sim.compression", "false")),
+                Long.parseLong(System.getProperty("sim.drainTimeoutMs", "60000")),
+                Long.parseLong(System.getProperty("sim.seed", "1")));
+    }
+
+    /**
+     * Per-node traffic for a load run, sizes are shrunk payload bytes
+     */
+    public static LoadProfile loadProfileFromSystemProperties() {
+        return new LoadProfile(
+                Integer.parseInt(System.getProperty("sim.teamSize", "4")),
+                Long.parseLong(System.getProperty("sim.pliIntervalMs", "30000")),
+                Integer.parseInt(System.getProperty("sim.chatsPerMinute", "2")),
+                Integer.parseInt(System.getProperty("sim.chatBytes", "120")),
+                Integer.parseInt(System.getProperty("sim.markersPerMinute", "1")),
+                Integer.parseInt(System.getProperty("sim.markerBytes", "150")),
+                Long.parseLong(System.getProperty("sim.durationMs", "120000")),
+                Long.parseLong(System.getProperty("sim.sampleIntervalMs", "10000")));
+    }
+
+    @Override
+    public String toString() {
+        return "nodes: " + nodeCount
+                + ", messages/node: " + messagesPerNode
+                + ", send interval: " + sendIntervalMs + "ms"
+                + ", loss: " + packetLossRate
+                + ", latency: " + latencyMs + "ms + up to " + latencyJitterMs + "ms jitter"
+                + ", ack delay: " + ackDelayMs + "ms"
+                + ", airtime: " + (simulateAirtime ? "on" : "off")
+                + ", channel mode: " + channelMode
+                + ", region: " + regionCode
+                + ", airtime budget: " + airtimeBudgetPercent + "%"
+                + ", send window: " + sendWindowSize
+                + ", PLI deltas: " + (pliDeltaEncoding ? "on" : "off")
+                + ", compression: " + (payloadCompression ? "on" : "off")
+                + ", seed: " + seed;
+    }
+}
@@ -0,0 +1,132 @@
+package com.paulmandal.atak.forwarder.simulator;
+
+import com.geeksville.mesh.DataPacket;
+import com.geeksville.mesh.MessageStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single shared LoRa channel between every SimulatedMeshService. Transmissions are serialized on the channel for their
+ * estimated time-on-air, each receiver independently loses a packet with the configured probability, and the sender
+ * gets DELIVERED (at least one node heard it, like Meshtastic's implicit broadcast ack) or ERROR after the ack delay.
+ */
+public class SimulatedMesh {
+    private final MeshSimulatorConfig mConfig;
+    private final Random mRandom;
+    private final ScheduledExecutorService mRadioExecutor;
+
+    private final List<SimulatedMeshService> mMeshServices = new CopyOnWriteArrayList<>();
+    private final Map<String, SimulatedMeshService> mMeshServicesById = new ConcurrentHashMap<>();
+
+    private long mChannelFreeAtMs;
+    private int mNextPacketId = 1;
+
+    private long mPacketsTransmitted;
+    private long mPacketsLost;
+    private long mAirtimeUsedMs;
+
+    public SimulatedMesh(MeshSimulatorConfig config) {
+        mConfig = config;
+        mRandom = new Random(config.seed);
+        mRadioExecutor = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+            Thread thread = new Thread(r);
+            thread.setName("SimulatedMesh.Radio");
+            return thread;
+        });
+    }
+
+    public void addMeshService(SimulatedMeshService meshService) {
+        mMeshServices.add(meshService);
+        mMeshServicesById.put(meshService.getMyId(), meshService);
+    }
+
+    public synchronized int nextPacketId() {
+        return mNextPacketId++;
+    }
+
+    public synchronized long getPacketsTransmitted() {
+        return mPacketsTransmitted;
+    }
+
+    public synchronized long getPacketsLost() {
+        return mPacketsLost;
+    }
+
+    public synchronized long getAirtimeUsedMs() {
+        return mAirtimeUsedMs;
+    }
+
+    public void shutdown() {
+        mRadioExecutor.shutdownNow();
+    }
+
+    synchronized void transmit(SimulatedMeshService sender, DataPacket packet, long airtimeMs) {
+        long currentTime = System.currentTimeMillis();
+        long transmitDoneTime = currentTime;
+        if (mConfig.simulateAirtime) {
+            long transmitStartTime = Math.max(currentTime, mChannelFreeAtMs);
+            transmitDoneTime = transmitStartTime + airtimeMs;
+            mChannelFreeAtMs = transmitDoneTime;
+            mAirtimeUsedMs += airtimeMs;
+        }
+        mPacketsTransmitted++;
+
+        boolean heard = false;
+        for (SimulatedMeshService receiver : getReceivers(sender, packet)) {
+            if (mRandom.nextDouble() < mConfig.packetLossRate) {
+                mPacketsLost++;
+                continue;
+            }
+
+            heard = true;
+            DataPacket receivedPacket = new DataPacket(packet.getTo(),
+                    packet.getBytes(),
+                    packet.getDataType(),
+                    packet.getFrom(),
+                    packet.getTime(),
+                    packet.getId(),
+                    MessageStatus.RECEIVED,
+                    packet.getHopLimit(),
+                    packet.getChannel());
+            long deliveryDelayMs = transmitDoneTime - currentTime + mConfig.latencyMs + nextJitterMs();
+            mRadioExecutor.schedule(() -> receiver.onPacketReceived(receivedPacket), deliveryDelayMs, TimeUnit.MILLISECONDS);
+        }
+
+        int packetId = packet.getId();
+        MessageStatus status = heard ? MessageStatus.DELIVERED : MessageStatus.ERROR;
+        long ackDelayMs = transmitDoneTime - currentTime + mConfig.ackDelayMs;
+        mRadioExecutor.schedule(() -> sender.onMessageStatusChanged(packetId, status), ackDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private List<SimulatedMeshService> getReceivers(SimulatedMeshService sender, DataPacket packet) {
+        List<SimulatedMeshService> receivers = new ArrayList<>();
+        if (DataPacket.ID_BROADCAST.equals(packet.getTo())) {
+            for (SimulatedMeshService meshService : mMeshServices) {
+                if (meshService != sender) {
+                    receivers.add(meshService);
+                }
+            }
+        } else {
+            SimulatedMeshService meshService = mMeshServicesById.get(packet.getTo());
+            if (meshService != null) {
+                receivers.add(meshService);
+            }
+        }
+        return receivers;
+    }
+
+    private long nextJitterMs() {
+        if (mConfig.latencyJitterMs <= 0) {
+            return 0;
+        }
+        return (long) (mRandom.nextDouble() * mConfig.latencyJitterMs);
+    }
+}
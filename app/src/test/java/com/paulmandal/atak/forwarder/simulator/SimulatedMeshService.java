@@ -0,0 +1,69 @@
+package com.paulmandal.atak.forwarder.simulator;
+
+import android.content.Intent;
+import android.os.Parcelable;
+
+import com.geeksville.mesh.DataPacket;
+import com.geeksville.mesh.IMeshService;
+import com.geeksville.mesh.MessageStatus;
+import com.paulmandal.atak.forwarder.comm.meshtastic.AirtimeScheduler;
+import com.paulmandal.atak.forwarder.comm.meshtastic.MeshServiceConstants;
+
+/**
+ * In-process stand-in for the Meshtastic app's IMeshService. Sends go out over the SimulatedMesh, received packets and
+ * message status changes come back as the same Intents the real service broadcasts.
+ */
+public class SimulatedMeshService extends IMeshService.Default {
+    private final SimulatedMesh mSimulatedMesh;
+    private final SimulatedNodeContext mNodeContext;
+    private final AirtimeScheduler mAirtimeScheduler;
+    private final String mMeshId;
+
+    public SimulatedMeshService(SimulatedMesh simulatedMesh,
+                                SimulatedNodeContext nodeContext,
+                                AirtimeScheduler airtimeScheduler,
+                                String meshId) {
+        mSimulatedMesh = simulatedMesh;
+        mNodeContext = nodeContext;
+        mAirtimeScheduler = airtimeScheduler;
+        mMeshId = meshId;
+    }
+
+    @Override
+    public String getMyId() {
+        return mMeshId;
+    }
+
+    @Override
+    public int getPacketId() {
+        return mSimulatedMesh.nextPacketId();
+    }
+
+    @Override
+    public String connectionState() {
+        return MeshServiceConstants.STATE_CONNECTED;
+    }
+
+    @Override
+    public void send(DataPacket packet) {
+        // The real service fills in the id through the inout parcel
+        packet.setId(mSimulatedMesh.nextPacketId());
+        packet.setFrom(mMeshId);
+        packet.setStatus(MessageStatus.ENROUTE);
+
+        mSimulatedMesh.transmit(this, packet, mAirtimeScheduler.estimateAirtimeMs(packet.getBytes().length));
+    }
+
+    void onPacketReceived(DataPacket packet) {
+        Intent intent = new Intent(MeshServiceConstants.ACTION_RECEIVED_ATAK_FORWARDER);
+        intent.putExtra(MeshServiceConstants.EXTRA_PAYLOAD, packet);
+        mNodeContext.sendBroadcast(intent);
+    }
+
+    void onMessageStatusChanged(int packetId, MessageStatus status) {
+        Intent intent = new Intent(MeshServiceConstants.ACTION_MESSAGE_STATUS);
+        intent.putExtra(MeshServiceConstants.EXTRA_PACKET_ID, packetId);
+        intent.putExtra(MeshServiceConstants.EXTRA_STATUS, (Parcelable) status);
+        mNodeContext.sendBroadcast(intent);
+    }
+}
@@ -0,0 +1,248 @@
+package com.paulmandal.atak.forwarder.simulator;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.atakmap.comms.CommsMapComponent;
+import com.atakmap.comms.CotDispatcher;
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.geeksville.mesh.ConfigProtos;
+import com.paulmandal.atak.forwarder.channel.UserTracker;
+import com.paulmandal.atak.forwarder.comm.CotMessageCache;
+import com.paulmandal.atak.forwarder.comm.InboundExecutor;
+import com.paulmandal.atak.forwarder.comm.PayloadCompressor;
+import com.paulmandal.atak.forwarder.comm.PliDeltaDecoder;
+import com.paulmandal.atak.forwarder.comm.PliDeltaEncoder;
+import com.paulmandal.atak.forwarder.comm.meshtastic.AirtimeScheduler;
+import com.paulmandal.atak.forwarder.comm.meshtastic.ChunkFramer;
+import com.paulmandal.atak.forwarder.comm.meshtastic.CommandQueueWorker;
+import com.paulmandal.atak.forwarder.comm.meshtastic.ConnectionStateHandler;
+import com.paulmandal.atak.forwarder.comm.meshtastic.DeviceConfigObserver;
+import com.paulmandal.atak.forwarder.comm.meshtastic.DeviceConnectionHandler;
+import com.paulmandal.atak.forwarder.comm.meshtastic.InboundMeshMessageHandler;
+import com.paulmandal.atak.forwarder.comm.meshtastic.MeshDeviceConfigurationController;
+import com.paulmandal.atak.forwarder.comm.meshtastic.MeshEventDispatcher;
+import com.paulmandal.atak.forwarder.comm.meshtastic.MeshSender;
+import com.paulmandal.atak.forwarder.comm.meshtastic.MeshServiceController;
+import com.paulmandal.atak.forwarder.comm.meshtastic.MeshtasticDevice;
+import com.paulmandal.atak.forwarder.comm.meshtastic.ReassemblyTable;
+import com.paulmandal.atak.forwarder.comm.queue.CommandQueue;
+import com.paulmandal.atak.forwarder.comm.queue.commands.QueuedCommandFactory;
+import com.paulmandal.atak.forwarder.cotutils.CotComparer;
+import com.paulmandal.atak.forwarder.cotutils.CotFingerprinter;
+import com.paulmandal.atak.forwarder.handlers.InboundMessageHandler;
+import com.paulmandal.atak.forwarder.handlers.OutboundMessageHandler;
+import com.paulmandal.atak.forwarder.helpers.Logger;
+import com.paulmandal.atak.forwarder.loadgen.CotStreamSynthesizer;
+import com.paulmandal.atak.forwarder.loadgen.LoadGenerator;
+import com.paulmandal.atak.forwarder.loadgen.LoadMetrics;
+import com.paulmandal.atak.forwarder.loadgen.LoadProfile;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
+import com.paulmandal.atak.libcotshrink.pub.api.CotShrinker;
+import com.paulmandal.atak.libcotshrink.pub.api.CotShrinkerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * One ATAK + Meshtastic device pair, wired the same way ForwarderMapComponent wires the plugin. Only the things that
+ * talk to the Android system or the real Meshtastic app are swapped out: the service binding, device connection /
+ * configuration state and ATAK's CoT dispatchers.
+ */
+public class SimulatedNode {
+    private final String mMeshId;
+    private final HandlerThread mUiThread;
+    private final SimulatedNodeContext mNodeContext;
+    private final List<Destroyable> mDestroyables = new ArrayList<>();
+
+    private final ConnectionStateHandler mConnectionStateHandler;
+    private final CommandQueue mCommandQueue;
+    private final MeshSender mMeshSender;
+    private final OutboundMessageHandler mOutboundMessageHandler;
+    private final LoadMetrics mLoadMetrics;
+    private final LoadGenerator mLoadGenerator;
+
+    public SimulatedNode(Context baseContext,
+                         SimulatedMesh simulatedMesh,
+                         SimulationStats simulationStats,
+                         MeshSimulatorConfig config,
+                         int nodeIndex) {
+        mMeshId = String.format("!%08x", nodeIndex + 1);
+
+        mUiThread = new HandlerThread("SimulatedNode." + mMeshId);
+        mUiThread.start();
+        Handler uiThreadHandler = new Handler(mUiThread.getLooper());
+        mNodeContext = new SimulatedNodeContext(baseContext, uiThreadHandler);
+
+        SharedPreferences sharedPreferences = baseContext.getSharedPreferences("simulated-node-" + nodeIndex, Context.MODE_PRIVATE);
+        sharedPreferences.edit()
+                .clear()
+                .putBoolean(PreferencesKeys.KEY_ENABLE_LOGGING, false)
+                .putString(PreferencesKeys.KEY_REGION, config.regionCode)
+                .putString(PreferencesKeys.KEY_CHANNEL_MODE, config.channelMode)
+                .putString(PreferencesKeys.KEY_AIRTIME_BUDGET_PERCENT, config.airtimeBudgetPercent)
+                .putString(PreferencesKeys.KEY_SEND_WINDOW_SIZE, config.sendWindowSize)
+                .putBoolean(PreferencesKeys.KEY_PLI_DELTA_ENCODING, config.pliDeltaEncoding)
+                .putBoolean(PreferencesKeys.KEY_PAYLOAD_COMPRESSION, config.payloadCompression)
+                .commit();
+
+        List<Destroyable> destroyables = mDestroyables;
+        Logger logger = new Logger(destroyables, sharedPreferences, uiThreadHandler);
+        InboundExecutor inboundExecutor = new InboundExecutor(destroyables, logger);
+
+        CotFingerprinter cotFingerprinter = new CotFingerprinter();
+        CotComparer cotComparer = new CotComparer();
+        CommandQueue commandQueue = new CommandQueue(uiThreadHandler, cotComparer);
+        mCommandQueue = commandQueue;
+        ChunkFramer chunkFramer = new ChunkFramer();
+        QueuedCommandFactory queuedCommandFactory = new QueuedCommandFactory();
+        CotShrinker cotShrinker = new CotShrinkerFactory().createCotShrinker();
+
+        AirtimeScheduler airtimeScheduler = new AirtimeScheduler(destroyables, sharedPreferences);
+        SimulatedMeshService meshService = new SimulatedMeshService(simulatedMesh, mNodeContext, airtimeScheduler, mMeshId);
+        simulatedMesh.addMeshService(meshService);
+
+        MeshServiceController meshServiceController = mock(MeshServiceController.class);
+        when(meshServiceController.getMeshService()).thenReturn(meshService);
+        when(meshServiceController.getConnectionState()).thenReturn(MeshServiceController.ServiceConnectionState.CONNECTED);
+
+        mConnectionStateHandler = new ConnectionStateHandler(logger,
+                mock(MeshDeviceConfigurationController.class),
+                meshServiceController,
+                mock(DeviceConnectionHandler.class),
+                mock(DeviceConfigObserver.class),
+                new MeshtasticDevice("Simulated " + mMeshId, mMeshId, MeshtasticDevice.DeviceType.USB),
+                ConfigProtos.Config.LoRaConfig.RegionCode.forNumber(Integer.parseInt(config.regionCode)),
+                false);
+
+        MeshEventDispatcher meshEventDispatcher = new MeshEventDispatcher(mNodeContext,
+                destroyables,
+                logger,
+                mConnectionStateHandler,
+                inboundExecutor,
+                chunkFramer);
+
+        mMeshSender = new MeshSender(destroyables,
+                sharedPreferences,
+                uiThreadHandler,
+                logger,
+                mConnectionStateHandler,
+                meshEventDispatcher,
+                meshServiceController,
+                mock(UserTracker.class),
+                chunkFramer,
+                airtimeScheduler,
+                Executors.newSingleThreadScheduledExecutor());
+
+        PayloadCompressor payloadCompressor = new PayloadCompressor(destroyables, sharedPreferences);
+        new CommandQueueWorker(destroyables,
+                mConnectionStateHandler,
+                commandQueue,
+                mMeshSender,
+                new PliDeltaEncoder(destroyables, sharedPreferences, cotShrinker, cotComparer),
+                payloadCompressor,
+                Executors.newSingleThreadScheduledExecutor());
+
+        mLoadMetrics = new LoadMetrics(commandQueue, mMeshSender);
+
+        ReassemblyTable reassemblyTable = new ReassemblyTable(logger, chunkFramer);
+        InboundMeshMessageHandler inboundMeshMessageHandler = new InboundMeshMessageHandler(meshEventDispatcher,
+                uiThreadHandler,
+                logger,
+                chunkFramer,
+                reassemblyTable);
+
+        CotDispatcher internalCotDispatcher = mock(CotDispatcher.class);
+        doAnswer(invocation -> {
+            CotEvent cotEvent = invocation.getArgument(0);
+            long currentTime = System.currentTimeMillis();
+            simulationStats.onMessageDelivered(mMeshId, cotEvent.getUID(), currentTime);
+            mLoadMetrics.onCotDelivered(cotEvent, currentTime);
+            return null;
+        }).when(internalCotDispatcher).dispatch(any(CotEvent.class));
+        new InboundMessageHandler(internalCotDispatcher,
+                mock(CotDispatcher.class),
+                inboundMeshMessageHandler,
+                cotShrinker,
+                new PliDeltaDecoder(cotShrinker),
+                payloadCompressor,
+                cotEvent -> {},
+                inboundExecutor,
+                logger);
+
+        CotMessageCache cotMessageCache = new CotMessageCache(destroyables, sharedPreferences, cotComparer);
+        mOutboundMessageHandler = new OutboundMessageHandler(destroyables,
+                mock(CommsMapComponent.class),
+                mConnectionStateHandler,
+                commandQueue,
+                queuedCommandFactory,
+                cotMessageCache,
+                cotShrinker,
+                cotFingerprinter,
+                logger,
+                Executors.newSingleThreadExecutor());
+
+        mLoadGenerator = new LoadGenerator(destroyables,
+                mOutboundMessageHandler,
+                new CotStreamSynthesizer(cotShrinker, mMeshId.substring(1)),
+                mLoadMetrics,
+                logger,
+                Executors.newSingleThreadScheduledExecutor());
+    }
+
+    public String getMeshId() {
+        return mMeshId;
+    }
+
+    /**
+     * Walks the connection state machine to DEVICE_CONNECTED the way the service binding and device callbacks would
+     */
+    public void connect() {
+        mMeshSender.onServiceConnectionStateChanged(MeshServiceController.ServiceConnectionState.CONNECTED);
+        mConnectionStateHandler.onServiceConnectionStateChanged(MeshServiceController.ServiceConnectionState.CONNECTED);
+        mConnectionStateHandler.onDeviceConnectionStateChanged(DeviceConnectionHandler.DeviceConnectionState.CONNECTED);
+        mConnectionStateHandler.onConfigurationStateChanged(MeshDeviceConfigurationController.ConfigurationState.READY);
+    }
+
+    /**
+     * Hands an event to the plugin exactly like ATAK does when it sends CoT out
+     */
+    public void send(CotEvent cotEvent) {
+        mOutboundMessageHandler.logSend(cotEvent, (String[]) null);
+    }
+
+    public void startLoad(LoadProfile loadProfile) {
+        mLoadGenerator.start(loadProfile);
+    }
+
+    public boolean isLoadRunning() {
+        return mLoadGenerator.isRunning();
+    }
+
+    public LoadMetrics getLoadMetrics() {
+        return mLoadMetrics;
+    }
+
+    /**
+     * Nothing left to send: the queue is drained and no message is waiting on the radio
+     */
+    public boolean isIdle() {
+        return !mOutboundMessageHandler.hasPendingSends() && mCommandQueue.getQueueSize() == 0 && !mMeshSender.isSendingMessage();
+    }
+
+    public void destroy() {
+        for (Destroyable destroyable : mDestroyables) {
+            destroyable.onDestroy(mNodeContext, null);
+        }
+        mUiThread.quitSafely();
+    }
+}
@@ -0,0 +1,47 @@
+package com.paulmandal.atak.forwarder.simulator;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A node's private Intent bus: receivers registered through this Context only hear broadcasts sent by the same node's
+ * SimulatedMeshService, and they are delivered on the node's UI thread like the system would
+ */
+public class SimulatedNodeContext extends ContextWrapper {
+    private final Handler mUiThreadHandler;
+
+    private final Map<BroadcastReceiver, IntentFilter> mReceivers = new ConcurrentHashMap<>();
+
+    public SimulatedNodeContext(Context base, Handler uiThreadHandler) {
+        super(base);
+        mUiThreadHandler = uiThreadHandler;
+    }
+
+    @Override
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        mReceivers.put(receiver, filter);
+        return null;
+    }
+
+    @Override
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+        mReceivers.remove(receiver);
+    }
+
+    @Override
+    public void sendBroadcast(Intent intent) {
+        for (Map.Entry<BroadcastReceiver, IntentFilter> entry : mReceivers.entrySet()) {
+            if (entry.getValue().matchAction(intent.getAction())) {
+                BroadcastReceiver receiver = entry.getKey();
+                mUiThreadHandler.post(() -> receiver.onReceive(this, intent));
+            }
+        }
+    }
+}
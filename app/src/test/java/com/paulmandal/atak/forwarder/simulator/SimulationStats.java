@@ -0,0 +1,143 @@
+package com.paulmandal.atak.forwarder.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * End-to-end bookkeeping keyed by CoT UID: when each message was handed to the OutboundMessageHandler and when each
+ * other node dispatched it to ATAK. A delivery counts as out of order if the receiver already got a later message from
+ * the same sender.
+ */
+public class SimulationStats {
+    private final MeshSimulatorConfig mConfig;
+    private final SimulatedMesh mSimulatedMesh;
+
+    private final Map<String, SentMessage> mSentMessages = new HashMap<>();
+    private final Map<String, Integer> mSentCountsBySender = new HashMap<>();
+    private final Set<String> mDeliveries = new HashSet<>();
+    private final Map<String, Integer> mLastSequenceByLink = new HashMap<>();
+    private final List<Long> mLatenciesMs = new ArrayList<>();
+
+    private int mOutOfOrderDeliveries;
+
+    private long mFirstSendTime;
+    private long mLastDeliveryTime;
+
+    public SimulationStats(MeshSimulatorConfig config, SimulatedMesh simulatedMesh) {
+        mConfig = config;
+        mSimulatedMesh = simulatedMesh;
+    }
+
+    public synchronized void onMessageSent(String senderMeshId, String uid, long currentTime) {
+        if (mSentMessages.isEmpty()) {
+            mFirstSendTime = currentTime;
+        }
+
+        Integer sentCount = mSentCountsBySender.get(senderMeshId);
+        int sequence = sentCount == null ? 0 : sentCount;
+        mSentCountsBySender.put(senderMeshId, sequence + 1);
+        mSentMessages.put(uid, new SentMessage(senderMeshId, sequence, currentTime));
+    }
+
+    public synchronized void onMessageDelivered(String receiverMeshId, String uid, long currentTime) {
+        SentMessage sentMessage = mSentMessages.get(uid);
+        if (sentMessage == null || !mDeliveries.add(receiverMeshId + "#" + uid)) {
+            // Not one of ours, or a duplicate
+            return;
+        }
+
+        String link = sentMessage.senderMeshId + ">" + receiverMeshId;
+        Integer lastSequence = mLastSequenceByLink.get(link);
+        if (lastSequence != null && lastSequence > sentMessage.sequence) {
+            mOutOfOrderDeliveries++;
+        } else {
+            mLastSequenceByLink.put(link, sentMessage.sequence);
+        }
+
+        mLatenciesMs.add(currentTime - sentMessage.sendTime);
+        mLastDeliveryTime = currentTime;
+        notifyAll();
+    }
+
+    public synchronized int getMessagesSent() {
+        return mSentMessages.size();
+    }
+
+    public synchronized int getDeliveries() {
+        return mDeliveries.size();
+    }
+
+    public synchronized int getExpectedDeliveries() {
+        return mSentMessages.size() * (mConfig.nodeCount - 1);
+    }
+
+    public synchronized double getDeliveryRatio() {
+        int expectedDeliveries = getExpectedDeliveries();
+        return expectedDeliveries == 0 ? 0 : (double) mDeliveries.size() / expectedDeliveries;
+    }
+
+    public synchronized int getOutOfOrderDeliveries() {
+        return mOutOfOrderDeliveries;
+    }
+
+    /**
+     * Blocks until every sent message reached every other node or the timeout passes
+     */
+    public synchronized void awaitDeliveries(int expectedDeliveries, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long remainingMs = timeoutMs;
+        while (mDeliveries.size() < expectedDeliveries && remainingMs > 0) {
+            wait(remainingMs);
+            remainingMs = deadline - System.currentTimeMillis();
+        }
+    }
+
+    public synchronized long getLatencyPercentileMs(double percentile) {
+        if (mLatenciesMs.isEmpty()) {
+            return -1;
+        }
+
+        List<Long> sortedLatencies = new ArrayList<>(mLatenciesMs);
+        Collections.sort(sortedLatencies);
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.size()) - 1;
+        return sortedLatencies.get(Math.max(0, Math.min(index, sortedLatencies.size() - 1)));
+    }
+
+    public synchronized String buildReport() {
+        long durationMs = Math.max(1, mLastDeliveryTime - mFirstSendTime);
+
+        return String.format(Locale.US,
+                "Mesh simulation (%s)%n"
+                        + "  messages sent:       %d%n"
+                        + "  deliveries:          %d / %d (ratio %.3f, %d out of order)%n"
+                        + "  throughput:          %.2f msgs/sec delivered over %dms%n"
+                        + "  latency p50 / p99:   %dms / %dms%n"
+                        + "  packets transmitted: %d (%d lost at receivers)%n"
+                        + "  channel airtime:     %dms",
+                mConfig,
+                mSentMessages.size(),
+                mDeliveries.size(), getExpectedDeliveries(), getDeliveryRatio(), mOutOfOrderDeliveries,
+                mDeliveries.size() * 1000.0 / durationMs, durationMs,
+                getLatencyPercentileMs(50), getLatencyPercentileMs(99),
+                mSimulatedMesh.getPacketsTransmitted(), mSimulatedMesh.getPacketsLost(),
+                mSimulatedMesh.getAirtimeUsedMs());
+    }
+
+    private static class SentMessage {
+        public final String senderMeshId;
+        public final int sequence;
+        public final long sendTime;
+
+        public SentMessage(String senderMeshId, int sequence, long sendTime) {
+            this.senderMeshId = senderMeshId;
+            this.sequence = sequence;
+            this.sendTime = sendTime;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.paulmandal.atak.forwarder.benchmarks;
+
+import com.paulmandal.atak.forwarder.ForwarderConstants;
+import com.paulmandal.atak.forwarder.comm.meshtastic.ChunkFramer;
+import com.paulmandal.atak.forwarder.comm.meshtastic.MessageChunk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * ChunkFramer against the byte-by-byte framing MeshSender and InboundMeshMessageHandler used before it
+ */
+@State(Scope.Thread)
+public class ChunkFramingBenchmark {
+    private static final int CHUNK_LENGTH = ForwarderConstants.MESHTASTIC_MESSAGE_CHUNK_LENGTH;
+
+    @Param({"1", "5", "10", "15"})
+    public int chunks;
+
+    private ChunkFramer mChunkFramer;
+    private byte[] mMessage;
+    private byte[][] mPackets;
+
+    @Setup
+    public void setup() {
+        mChunkFramer = new ChunkFramer();
+
+        // Last chunk is partially full, like most real messages
+        mMessage = new byte[chunks * CHUNK_LENGTH - CHUNK_LENGTH / 3];
+        new Random(42).nextBytes(mMessage);
+        mPackets = mChunkFramer.frame(0, mMessage, CHUNK_LENGTH);
+    }
+
+    @Benchmark
+    public byte[][] frame() {
+        return mChunkFramer.frame(0, mMessage, CHUNK_LENGTH);
+    }
+
+    @Benchmark
+    public byte[][] frameByteLoop() {
+        int chunkCount = (int) Math.ceil((double) mMessage.length / (double) CHUNK_LENGTH);
+
+        byte[][] messages = new byte[chunkCount][];
+        for (int i = 0; i < chunkCount; i++) {
+            int start = i * CHUNK_LENGTH;
+            int end = Math.min((i + 1) * CHUNK_LENGTH, mMessage.length);
+            int length = end - start;
+
+            messages[i] = new byte[length + 1];
+            messages[i][0] = (byte) (i << 4 | chunkCount);
+
+            for (int idx = 1, j = start; j < end; j++, idx++) {
+                messages[i][idx] = mMessage[j];
+            }
+        }
+        return messages;
+    }
+
+    @Benchmark
+    public byte[] reassemble() {
+        MessageChunk[] pieces = new MessageChunk[mPackets.length];
+        for (byte[] packet : mPackets) {
+            MessageChunk messageChunk = mChunkFramer.toMessageChunk(packet);
+            pieces[messageChunk.index] = messageChunk;
+        }
+        return mChunkFramer.reassemble(pieces);
+    }
+
+    @Benchmark
+    public byte[] reassembleByteLoop() {
+        byte[][] messagePieces = new byte[mPackets.length][];
+        int totalLength = 0;
+        for (byte[] packet : mPackets) {
+            int messageIndex = packet[0] >> 4 & 0x0f;
+
+            // Strip the header
+            byte[] chunk = new byte[packet.length - 1];
+            for (int idx = 0, i = 1; i < packet.length; i++, idx++) {
+                chunk[idx] = packet[i];
+            }
+            messagePieces[messageIndex] = chunk;
+            totalLength += chunk.length;
+        }
+
+        byte[] message = new byte[totalLength];
+        for (int idx = 0, i = 0; i < messagePieces.length; i++) {
+            for (int j = 0; j < messagePieces[i].length; j++, idx++) {
+                message[idx] = messagePieces[i][j];
+            }
+        }
+        return message;
+    }
+}
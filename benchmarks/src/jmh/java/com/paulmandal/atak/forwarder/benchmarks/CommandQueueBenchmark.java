@@ -0,0 +1,73 @@
+package com.paulmandal.atak.forwarder.benchmarks;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.paulmandal.atak.forwarder.comm.MessageType;
+import com.paulmandal.atak.forwarder.comm.queue.CommandQueue;
+import com.paulmandal.atak.forwarder.comm.queue.commands.QueuedCommand;
+import com.paulmandal.atak.forwarder.comm.queue.commands.QueuedCommandFactory;
+import com.paulmandal.atak.forwarder.comm.queue.commands.SendMessageCommand;
+import com.paulmandal.atak.forwarder.cotutils.CotComparer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Queue operations at a steady depth: every benchmark op leaves the queue the same size it found it
+ */
+@State(Scope.Thread)
+public class CommandQueueBenchmark {
+    private static final int[] PRIORITIES = {QueuedCommand.PRIORITY_LOW, QueuedCommand.PRIORITY_MEDIUM, QueuedCommand.PRIORITY_HIGH, QueuedCommand.PRIORITY_HIGHEST};
+
+    @Param({"10", "1000", "10000"})
+    public int queueDepth;
+
+    private CommandQueue mCommandQueue;
+    private QueuedCommandFactory mQueuedCommandFactory;
+
+    private CotEvent[] mNewEvents;
+    private CotEvent[] mQueuedEvents;
+    private int mIndex;
+
+    @Setup
+    public void setup() {
+        mCommandQueue = new CommandQueue(null, new CotComparer());
+        mQueuedCommandFactory = new QueuedCommandFactory();
+
+        List<CotEvent> queuedEvents = CotCorpus.loadDistinctEvents(queueDepth);
+        mQueuedEvents = queuedEvents.toArray(new CotEvent[0]);
+        for (int i = 0; i < mQueuedEvents.length; i++) {
+            mCommandQueue.queueSendMessage(createCommand(mQueuedEvents[i], i), false);
+        }
+
+        List<CotEvent> newEvents = CotCorpus.loadDistinctEvents(queueDepth);
+        for (CotEvent cotEvent : newEvents) {
+            cotEvent.setUID(cotEvent.getUID() + "-new");
+        }
+        mNewEvents = newEvents.toArray(new CotEvent[0]);
+    }
+
+    @Benchmark
+    public QueuedCommand enqueueAndPop() {
+        mIndex = (mIndex + 1) % mNewEvents.length;
+        mCommandQueue.queueSendMessage(createCommand(mNewEvents[mIndex], mIndex), false);
+        return mCommandQueue.popHighestPriorityCommand(true);
+    }
+
+    /**
+     * Re-queues an update for something already in the queue, which coalesces into the queued command
+     */
+    @Benchmark
+    public void enqueueSimilar() {
+        mIndex = (mIndex + 1) % mQueuedEvents.length;
+        mCommandQueue.queueSendMessage(createCommand(mQueuedEvents[mIndex], mIndex), true);
+    }
+
+    private SendMessageCommand createCommand(CotEvent cotEvent, int index) {
+        return mQueuedCommandFactory.createSendMessageCommand(PRIORITIES[index % PRIORITIES.length], cotEvent, new byte[0], null, MessageType.fromCotEventType(cotEvent.getType()));
+    }
+}
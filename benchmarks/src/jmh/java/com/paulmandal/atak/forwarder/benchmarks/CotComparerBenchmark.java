@@ -0,0 +1,72 @@
+package com.paulmandal.atak.forwarder.benchmarks;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.paulmandal.atak.forwarder.cotutils.CotComparer;
+import com.paulmandal.atak.forwarder.cotutils.CotFingerprinter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+@State(Scope.Thread)
+public class CotComparerBenchmark {
+    private CotComparer mCotComparer;
+    private CotFingerprinter mCotFingerprinter;
+
+    // Two separately parsed copies of the corpus so equal events are never the same instance
+    private CotEvent[] mLhs;
+    private CotEvent[] mRhs;
+    private long[] mLhsFingerprints;
+    private long[] mRhsFingerprints;
+
+    @Setup
+    public void setup() {
+        mCotFingerprinter = new CotFingerprinter();
+        mCotComparer = new CotComparer();
+
+        List<CotEvent> lhs = CotCorpus.loadEvents();
+        List<CotEvent> rhs = CotCorpus.loadEvents();
+        mLhs = lhs.toArray(new CotEvent[0]);
+        mRhs = rhs.toArray(new CotEvent[0]);
+
+        mLhsFingerprints = new long[mLhs.length];
+        mRhsFingerprints = new long[mRhs.length];
+        for (int i = 0; i < mLhs.length; i++) {
+            mLhsFingerprints[i] = mCotFingerprinter.fingerprint(mLhs[i]);
+            mRhsFingerprints[i] = mCotFingerprinter.fingerprint(mRhs[i]);
+        }
+    }
+
+    @Benchmark
+    public void equalEvents(Blackhole blackhole) {
+        for (int i = 0; i < mLhs.length; i++) {
+            blackhole.consume(mCotComparer.areCotEventsEqual(mLhs[i], mRhs[i]));
+        }
+    }
+
+    @Benchmark
+    public void differentEvents(Blackhole blackhole) {
+        for (int i = 0; i < mLhs.length; i++) {
+            blackhole.consume(mCotComparer.areCotEventsEqual(mLhs[i], mRhs[(i + 1) % mRhs.length]));
+        }
+    }
+
+    @Benchmark
+    public void equalEventsWithKnownFingerprints(Blackhole blackhole) {
+        for (int i = 0; i < mLhs.length; i++) {
+            blackhole.consume(mCotComparer.areCotEventsEqual(mLhs[i], mLhsFingerprints[i], mRhs[i], mRhsFingerprints[i]));
+        }
+    }
+
+    @Benchmark
+    public void differentEventsWithKnownFingerprints(Blackhole blackhole) {
+        for (int i = 0; i < mLhs.length; i++) {
+            int j = (i + 1) % mRhs.length;
+            blackhole.consume(mCotComparer.areCotEventsEqual(mLhs[i], mLhsFingerprints[i], mRhs[j], mRhsFingerprints[j]));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.paulmandal.atak.forwarder.benchmarks;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Real-world CoT used by the benchmarks: map markers, self PLIs, GeoChat, a route and a freehand drawing
+ */
+public class CotCorpus {
+    private static final String CORPUS_RESOURCE = "/cot-corpus.xml";
+
+    public static List<String> loadXml() {
+        List<String> events = new ArrayList<>();
+        try (InputStream inputStream = CotCorpus.class.getResourceAsStream(CORPUS_RESOURCE);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                events.add(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return events;
+    }
+
+    public static List<CotEvent> loadEvents() {
+        List<CotEvent> events = new ArrayList<>();
+        for (String xml : loadXml()) {
+            events.add(CotEvent.parse(xml));
+        }
+        return events;
+    }
+
+    /**
+     * @return count events cycling through the corpus, each with a unique uid so none of them are duplicates
+     */
+    public static List<CotEvent> loadDistinctEvents(int count) {
+        List<String> corpus = loadXml();
+        List<CotEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CotEvent cotEvent = CotEvent.parse(corpus.get(i % corpus.size()));
+            cotEvent.setUID(cotEvent.getUID() + "-" + i);
+            events.add(cotEvent);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,63 @@
+package com.paulmandal.atak.forwarder.benchmarks;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.paulmandal.atak.forwarder.comm.CotMessageCache;
+import com.paulmandal.atak.forwarder.cotutils.CotComparer;
+import com.paulmandal.atak.forwarder.cotutils.CotFingerprinter;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@State(Scope.Thread)
+public class CotMessageCacheBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int cacheSize;
+
+    private CotFingerprinter mCotFingerprinter;
+    private CotMessageCache mCotMessageCache;
+
+    // Freshly parsed copies of cached events (hits) and events that were never cached (misses)
+    private CotEvent[] mCachedCopies;
+    private CotEvent[] mUncachedEvents;
+    private int mIndex;
+
+    @Setup
+    public void setup() {
+        mCotFingerprinter = new CotFingerprinter();
+        mCotMessageCache = new CotMessageCache(new ArrayList<Destroyable>(), new DefaultSharedPreferences(), new CotComparer());
+
+        List<CotEvent> cachedEvents = CotCorpus.loadDistinctEvents(cacheSize);
+        for (CotEvent cotEvent : cachedEvents) {
+            mCotMessageCache.cacheEvent(cotEvent, mCotFingerprinter.fingerprint(cotEvent));
+        }
+
+        mCachedCopies = CotCorpus.loadDistinctEvents(cacheSize).toArray(new CotEvent[0]);
+
+        List<CotEvent> uncachedEvents = CotCorpus.loadDistinctEvents(cacheSize);
+        for (CotEvent cotEvent : uncachedEvents) {
+            cotEvent.setUID(cotEvent.getUID() + "-uncached");
+        }
+        mUncachedEvents = uncachedEvents.toArray(new CotEvent[0]);
+    }
+
+    @Benchmark
+    public boolean checkIfRecentlySentHit() {
+        mIndex = (mIndex + 1) % mCachedCopies.length;
+        CotEvent cotEvent = mCachedCopies[mIndex];
+        return mCotMessageCache.checkIfRecentlySent(cotEvent, mCotFingerprinter.fingerprint(cotEvent));
+    }
+
+    @Benchmark
+    public boolean checkIfRecentlySentMiss() {
+        mIndex = (mIndex + 1) % mUncachedEvents.length;
+        CotEvent cotEvent = mUncachedEvents[mIndex];
+        return mCotMessageCache.checkIfRecentlySent(cotEvent, mCotFingerprinter.fingerprint(cotEvent));
+    }
+}
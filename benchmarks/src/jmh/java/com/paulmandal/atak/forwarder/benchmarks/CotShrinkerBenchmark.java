@@ -0,0 +1,61 @@
+package com.paulmandal.atak.forwarder.benchmarks;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.paulmandal.atak.libcotshrink.pub.api.CotShrinker;
+import com.paulmandal.atak.libcotshrink.pub.api.CotShrinkerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+@State(Scope.Thread)
+public class CotShrinkerBenchmark {
+    private CotShrinker mCotShrinker;
+
+    private CotEvent[] mCotEvents;
+    private byte[][] mShrunkEvents;
+
+    @Setup
+    public void setup() {
+        mCotShrinker = new CotShrinkerFactory().createCotShrinker();
+
+        List<CotEvent> cotEvents = CotCorpus.loadEvents();
+        mCotEvents = cotEvents.toArray(new CotEvent[0]);
+        mShrunkEvents = new byte[mCotEvents.length][];
+        for (int i = 0; i < mCotEvents.length; i++) {
+            mShrunkEvents[i] = mCotShrinker.toByteArray(mCotEvents[i]);
+        }
+    }
+
+    @Benchmark
+    public void toByteArray(Blackhole blackhole) {
+        for (CotEvent cotEvent : mCotEvents) {
+            blackhole.consume(mCotShrinker.toByteArray(cotEvent));
+        }
+    }
+
+    @Benchmark
+    public void toByteArrayLossy(Blackhole blackhole) {
+        for (CotEvent cotEvent : mCotEvents) {
+            blackhole.consume(mCotShrinker.toByteArrayLossy(cotEvent));
+        }
+    }
+
+    @Benchmark
+    public void toCotEvent(Blackhole blackhole) {
+        for (byte[] shrunkEvent : mShrunkEvents) {
+            blackhole.consume(mCotShrinker.toCotEvent(shrunkEvent));
+        }
+    }
+
+    @Benchmark
+    public void roundTrip(Blackhole blackhole) {
+        for (CotEvent cotEvent : mCotEvents) {
+            blackhole.consume(mCotShrinker.toCotEvent(mCotShrinker.toByteArray(cotEvent)));
+        }
+    }
+}
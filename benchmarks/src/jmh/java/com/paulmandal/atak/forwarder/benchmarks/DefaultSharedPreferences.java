@@ -0,0 +1,81 @@
+package com.paulmandal.atak.forwarder.benchmarks;
+
+import android.content.SharedPreferences;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only SharedPreferences that hands back the caller's default for anything not overridden, so classes under test
+ * run with the plugin's default settings
+ */
+public class DefaultSharedPreferences implements SharedPreferences {
+    private final Map<String, Object> mOverrides = new HashMap<>();
+
+    public DefaultSharedPreferences override(String key, Object value) {
+        mOverrides.put(key, value);
+        return this;
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        return Collections.unmodifiableMap(mOverrides);
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        return get(key, defValue);
+    }
+
+    @Override
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+        return get(key, defValues);
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        return get(key, defValue);
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        return get(key, defValue);
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        return get(key, defValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        return get(key, defValue);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return mOverrides.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        throw new UnsupportedOperationException("Benchmark preferences are read-only");
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        // Nothing ever changes
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        // Nothing ever changes
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(String key, T defValue) {
+        return mOverrides.containsKey(key) ? (T) mOverrides.get(key) : defValue;
+    }
+}
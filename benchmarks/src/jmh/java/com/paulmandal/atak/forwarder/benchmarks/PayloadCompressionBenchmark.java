@@ -0,0 +1,103 @@
+package com.paulmandal.atak.forwarder.benchmarks;
+
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.paulmandal.atak.forwarder.comm.MessageType;
+import com.paulmandal.atak.forwarder.comm.PayloadCompressor;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
+import com.paulmandal.atak.libcotshrink.pub.api.CotShrinker;
+import com.paulmandal.atak.libcotshrink.pub.api.CotShrinkerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * CPU cost of the PayloadCompressor stage per message type. Bytes saved, with and without the preset dictionary, are
+ * printed once per fork since JMH only reports times.
+ */
+@State(Scope.Thread)
+public class PayloadCompressionBenchmark {
+    @Param({"PLI", "CHAT", "OTHER"})
+    public String messageType;
+
+    private PayloadCompressor mPayloadCompressor;
+    private Deflater mDeflater;
+
+    private byte[][] mShrunkEvents;
+    private byte[][] mCompressedEvents;
+
+    @Setup
+    public void setup() {
+        mPayloadCompressor = new PayloadCompressor(new ArrayList<Destroyable>(),
+                new DefaultSharedPreferences().override(PreferencesKeys.KEY_PAYLOAD_COMPRESSION, true));
+        mDeflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+
+        CotShrinker cotShrinker = new CotShrinkerFactory().createCotShrinker();
+        MessageType type = MessageType.valueOf(messageType);
+        List<byte[]> shrunkEvents = new ArrayList<>();
+        for (CotEvent cotEvent : CotCorpus.loadEvents()) {
+            if (MessageType.fromCotEventType(cotEvent.getType()) == type) {
+                shrunkEvents.add(cotShrinker.toByteArrayLossy(cotEvent));
+            }
+        }
+        mShrunkEvents = shrunkEvents.toArray(new byte[0][]);
+
+        mCompressedEvents = new byte[mShrunkEvents.length][];
+        long shrunkBytes = 0;
+        long compressedBytes = 0;
+        long noDictionaryBytes = 0;
+        for (int i = 0; i < mShrunkEvents.length; i++) {
+            mCompressedEvents[i] = mPayloadCompressor.compress(mShrunkEvents[i]);
+            shrunkBytes += mShrunkEvents[i].length;
+            compressedBytes += mCompressedEvents[i].length;
+            noDictionaryBytes += Math.min(mShrunkEvents[i].length, 1 + compressWithoutDictionary(mShrunkEvents[i]).length);
+        }
+        System.out.println(messageType + ": " + mShrunkEvents.length + " msgs, shrunk " + shrunkBytes + " bytes, compressed "
+                + compressedBytes + " bytes, without dictionary " + noDictionaryBytes + " bytes");
+    }
+
+    @Benchmark
+    public void compress(Blackhole blackhole) {
+        for (byte[] shrunkEvent : mShrunkEvents) {
+            blackhole.consume(mPayloadCompressor.compress(shrunkEvent));
+        }
+    }
+
+    @Benchmark
+    public void compressNoDictionary(Blackhole blackhole) {
+        for (byte[] shrunkEvent : mShrunkEvents) {
+            blackhole.consume(compressWithoutDictionary(shrunkEvent));
+        }
+    }
+
+    @Benchmark
+    public void decompress(Blackhole blackhole) {
+        for (byte[] compressedEvent : mCompressedEvents) {
+            if (PayloadCompressor.isCompressed(compressedEvent)) {
+                blackhole.consume(mPayloadCompressor.decompress(compressedEvent));
+            }
+        }
+    }
+
+    private byte[] compressWithoutDictionary(byte[] message) {
+        mDeflater.reset();
+        mDeflater.setInput(message);
+        mDeflater.finish();
+        byte[] buffer = new byte[message.length + 64];
+        int length = 0;
+        while (!mDeflater.finished()) {
+            length += mDeflater.deflate(buffer, length, buffer.length - length);
+        }
+        byte[] compressed = new byte[length];
+        System.arraycopy(buffer, 0, compressed, 0, length);
+        return compressed;
+    }
+}
@@ -0,0 +1,77 @@
+package com.paulmandal.atak.forwarder.benchmarks;
+
+import com.paulmandal.atak.forwarder.ForwarderConstants;
+import com.paulmandal.atak.forwarder.comm.meshtastic.ChunkFramer;
+import com.paulmandal.atak.forwarder.comm.meshtastic.InboundMessageChunk;
+import com.paulmandal.atak.forwarder.comm.meshtastic.ReassemblyTable;
+import com.paulmandal.atak.forwarder.helpers.Logger;
+import com.paulmandal.atak.forwarder.plugin.Destroyable;
+import com.paulmandal.atak.forwarder.preferences.PreferencesKeys;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Feeds whole messages through the ReassemblyTable, with several senders interleaved and chunks arriving out of order
+ */
+@State(Scope.Thread)
+public class ReassemblyBenchmark {
+    private static final int CHUNK_LENGTH = ForwarderConstants.MESHTASTIC_MESSAGE_CHUNK_LENGTH;
+    private static final int SENDERS = 8;
+
+    @Param({"1", "5", "15", "40"})
+    public int chunks;
+
+    private ChunkFramer mChunkFramer;
+    private ReassemblyTable mReassemblyTable;
+
+    private String[] mSenderIds;
+    private byte[][][] mPacketsBySender;
+    private int[] mArrivalOrder;
+    private long mTime;
+
+    @Setup
+    public void setup() {
+        mChunkFramer = new ChunkFramer();
+        // With logging off and no log listeners the Logger never reaches android.util.Log or the UI thread handler
+        Logger logger = new Logger(new ArrayList<Destroyable>(),
+                new DefaultSharedPreferences().override(PreferencesKeys.KEY_ENABLE_LOGGING, false),
+                null);
+        mReassemblyTable = new ReassemblyTable(logger, mChunkFramer);
+
+        Random random = new Random(42);
+        mSenderIds = new String[SENDERS];
+        mPacketsBySender = new byte[SENDERS][][];
+        for (int i = 0; i < SENDERS; i++) {
+            mSenderIds[i] = "!" + Integer.toHexString(0x10000000 + i);
+
+            byte[] message = new byte[chunks * CHUNK_LENGTH - CHUNK_LENGTH / 3];
+            random.nextBytes(message);
+            mPacketsBySender[i] = mChunkFramer.frame(i, message, CHUNK_LENGTH);
+        }
+
+        // Reverse order within each message so nothing completes until the last chunk lands
+        mArrivalOrder = new int[chunks];
+        for (int i = 0; i < chunks; i++) {
+            mArrivalOrder[i] = chunks - 1 - i;
+        }
+    }
+
+    @Benchmark
+    public void reassembleInterleaved(Blackhole blackhole) {
+        mTime += 1000;
+        for (int chunkIndex : mArrivalOrder) {
+            for (int sender = 0; sender < SENDERS; sender++) {
+                InboundMessageChunk messageChunk = mChunkFramer.toMessageChunk(mPacketsBySender[sender][chunkIndex]);
+                blackhole.consume(mReassemblyTable.addChunk(mSenderIds[sender], messageChunk, mTime));
+            }
+        }
+    }
+}